@@ -2,11 +2,10 @@ package org.madesimple.small;
 
 import java.io.FileInputStream;
 import java.nio.file.Paths;
-import java.util.Observable;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import org.madesimple.small.agent.Agent;
+import org.madesimple.small.environment.EnvironmentEvent;
 import org.madesimple.small.environment.EnvironmentRegister;
 import org.madesimple.small.environment.EnvironmentService;
 import org.madesimple.small.environment.TurnBasedEnvironment;
@@ -18,8 +17,10 @@ import org.madesimple.small.experiment.Simulation;
 import org.madesimple.small.experiment.Simulator;
 import org.madesimple.small.experiment.TurnBasedExperiment;
 import org.madesimple.small.experiment.observer.ToPrintStreamObserver;
+import org.madesimple.small.utility.Configurable;
 import org.madesimple.small.utility.Configuration;
 import org.madesimple.small.utility.Factory;
+import org.madesimple.small.utility.RandomStream;
 import org.madesimple.small.visualisation.Visualiser;
 
 import javax.swing.*;
@@ -71,12 +72,13 @@ public class Small {
         Thread th = new Thread(() -> {
             MountainCarState state = new MountainCarState();
             MountainCarAction[] actions = MountainCarAction.values();
+            RandomStream random = RandomStream.current();
             while (true) {
                 try {
                     TimeUnit.MICROSECONDS.sleep(50);
 
-                    env.move(state, actions[ThreadLocalRandom.current().nextInt(actions.length)].ordinal());
-                    visualiser.update(env, state);
+                    env.move(state, actions[random.nextInt(actions.length)].ordinal());
+                    visualiser.on(new EnvironmentEvent(env, EnvironmentEvent.Type.MOVED, state));
                 } catch (InterruptedException e) {
                 }
             }
@@ -107,19 +109,23 @@ public class Small {
 
                 if (properties.getBoolean("Experiment.Visualise")) {
                     Visualiser visualiser = register.getVisualiser();
-                    if (visualiser != null && evaluation instanceof Observable) {
-                        ((Observable) evaluation).addObserver(visualiser);
+                    if (visualiser != null && evaluation.events() != null) {
+                        evaluation.events().subscribe(visualiser, properties.getInteger("Visualiser.Every", 1), true);
                         generateFrame(properties, visualiser);
                     }
                 }
 
                 // Create and return the simulation
                 Simulation simulation = (Simulation) properties.getInstance("Experiment.Simulation");
+                if (simulation instanceof Configurable) {
+                    ((Configurable) simulation).setConfiguration(properties);
+                }
                 simulation.setExperiment(experiment);
+                simulation.setRegister(register);
                 simulation.setEnvironment(environment);
                 simulation.setEvaluation(evaluation);
                 simulation.setAgents(agents);
-                simulation.addObserver(new ToPrintStreamObserver(System.out));
+                simulation.observations().subscribe(new ToPrintStreamObserver(System.out));
 
                 return simulation;
             } catch (Exception e) {
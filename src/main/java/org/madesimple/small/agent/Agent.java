@@ -74,4 +74,11 @@ public interface Agent extends Configurable {
      * @return Amount of reward
      */
     double accumulativeReward(Environment environment);
+
+    /**
+     * Release any threads or other resources held by the agent; called when a run ends. The agent may be initialised
+     * again afterwards.
+     */
+    default void close() {
+    }
 }
\ No newline at end of file
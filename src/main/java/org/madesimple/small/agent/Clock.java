@@ -0,0 +1,98 @@
+package org.madesimple.small.agent;
+
+/**
+ * <p>
+ * A Clock counts the steps and episodes an agent has learnt from and gives the time that is passed to its
+ * {@link Strategy}, so that decaying exploration parameters advance. Time is measured in either steps or completed
+ * episodes; an episode is only counted if at least one step was taken during it.
+ * </p>
+ * <pre>
+ * Agent.Clock = steps
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class Clock {
+
+    public enum Unit {
+        STEPS, EPISODES
+    }
+
+    private final Unit unit;
+    private       int  steps;
+    private       int  episodes;
+    private       int  episodeSteps;
+
+    public Clock(Unit unit) {
+        this.unit = unit;
+        reset();
+    }
+
+    /**
+     * Set the clock back to zero.
+     */
+    public void reset() {
+        steps = 0;
+        episodes = 0;
+        episodeSteps = 0;
+    }
+
+    /**
+     * Advance the clock by a step.
+     */
+    public void tick() {
+        steps++;
+        episodeSteps++;
+    }
+
+    /**
+     * Mark the end of an episode; ignored if no steps were taken since the last one.
+     */
+    public void episode() {
+        if (episodeSteps > 0) {
+            episodes++;
+            episodeSteps = 0;
+        }
+    }
+
+    /**
+     * @return Number of steps taken
+     */
+    public int steps() {
+        return steps;
+    }
+
+    /**
+     * @return Number of episodes completed
+     */
+    public int episodes() {
+        return episodes;
+    }
+
+    /**
+     * @return Number of steps taken since the last episode was counted
+     */
+    public int episodeSteps() {
+        return episodeSteps;
+    }
+
+    /**
+     * Set the clock to a time read from it earlier, such as one held in a checkpoint.
+     *
+     * @param steps        Number of steps taken
+     * @param episodes     Number of episodes completed
+     * @param episodeSteps Number of steps taken since the last episode was counted
+     */
+    public void set(int steps, int episodes, int episodeSteps) {
+        this.steps = steps;
+        this.episodes = episodes;
+        this.episodeSteps = episodeSteps;
+    }
+
+    /**
+     * @return The current time in the unit of the clock
+     */
+    public int time() {
+        return unit == Unit.STEPS ? steps : episodes;
+    }
+}
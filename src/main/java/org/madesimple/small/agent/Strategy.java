@@ -1,5 +1,6 @@
 package org.madesimple.small.agent;
 
+import org.madesimple.small.agent.strategy.Argmax;
 import org.madesimple.small.utility.Configurable;
 
 /**
@@ -21,4 +22,30 @@ public interface Strategy extends Configurable {
      * @return The index action that has been selected
      */
     int select(double[] actionValuePairs, int time);
+
+    /**
+     * Select one of the indices of the given array for the state with row key <em>state</em>. Strategies that keep
+     * statistics per state should override this; the default ignores the state.
+     *
+     * @param state            Row key of the state the values belong to
+     * @param actionValuePairs An array of values for the index action choice
+     * @param time             Time step
+     * @return The index action that has been selected
+     */
+    default int select(int state, double[] actionValuePairs, int time) {
+        return select(actionValuePairs, time);
+    }
+
+    /**
+     * Calculates the expected value of the given array under the probabilities with which {@link #select(double[],
+     * int)} would choose each index. Strategies that explore should override this; the default assumes the greedy
+     * index is always chosen.
+     *
+     * @param actionValuePairs An array of values for the index action choice
+     * @param time             Time step
+     * @return The expected value
+     */
+    default double expectation(double[] actionValuePairs, int time) {
+        return Argmax.max(actionValuePairs);
+    }
 }
@@ -1,5 +1,6 @@
 package org.madesimple.small.agent.learning;
 
+import org.madesimple.small.agent.Clock;
 import org.madesimple.small.environment.Environment;
 import org.madesimple.small.environment.State;
 import org.madesimple.small.utility.Configuration;
@@ -9,7 +10,12 @@ import java.io.File;
 /**
  * <pre>
  * Agent.LearningAlgorithm=org.madesimple.small.agent.learning.algorithm.Q
+ * ; Agent.Clock=steps
  * </pre>
+ * <p>
+ * The time given to the learning algorithm when selecting an action is read from a {@link Clock} which advances with
+ * every update and is not advanced in evaluation mode.
+ * </p>
  *
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
@@ -20,6 +26,7 @@ public class DiscreteLearningAgent extends LearningAgent {
     private   State             rewardState;
     private   int               action;
     private   boolean           retrieved;
+    private   Clock             clock;
     /**
      * Accumulative reward received since last reset.
      */
@@ -38,15 +45,19 @@ public class DiscreteLearningAgent extends LearningAgent {
     public void initialise() {
         if (!retrieved) {
             try {
-                // Initialise the learning algorithm
                 learning = (LearningAlgorithm) cfg.getInstance("Agent.LearningAlgorithm");
-                learning.setConfiguration(cfg);
-                learning.initialise();
             } catch (Exception e) {
                 throw new RuntimeException(e.getCause());
             }
+
+            // Initialise the learning algorithm
+            learning.setConfiguration(cfg);
+            learning.initialise();
         }
 
+        // Initialise the clock
+        clock = new Clock(Clock.Unit.valueOf(cfg.getString("Agent.Clock", "steps").toUpperCase()));
+
         // Clear the retrieved flag
         retrieved = false;
     }
@@ -56,6 +67,11 @@ public class DiscreteLearningAgent extends LearningAgent {
         // Reset the cumulative reward
         accumulativeReward = 0.0;
 
+        // Count the previous episode
+        if (!evaluationMode) {
+            clock.episode();
+        }
+
         // Commence the learning
         learning.commence(environment);
     }
@@ -74,7 +90,7 @@ public class DiscreteLearningAgent extends LearningAgent {
     @Override
     public int act(Environment environment, State state) {
         actionState.set(state);
-        action = learning.select(state, 0, evaluationMode);
+        action = learning.select(state, clock.time(), evaluationMode);
         return action;
     }
 
@@ -90,6 +106,7 @@ public class DiscreteLearningAgent extends LearningAgent {
     protected void update(Environment environment, State arrived, double reward) {
         rewardState.set(arrived);
         learning.update(actionState, action, rewardState, reward);
+        clock.tick();
         if (environment.isTerminal(this, arrived)) {
             learning.conclude();
         }
@@ -100,6 +117,27 @@ public class DiscreteLearningAgent extends LearningAgent {
         return accumulativeReward;
     }
 
+    @Override
+    public void close() {
+        if (learning != null) {
+            learning.close();
+        }
+    }
+
+    /**
+     * @return The learning algorithm of the agent, or null before it is initialised
+     */
+    public LearningAlgorithm getLearningAlgorithm() {
+        return learning;
+    }
+
+    /**
+     * @return The clock giving the learning algorithm its time, or null before the agent is initialised
+     */
+    public Clock getClock() {
+        return clock;
+    }
+
     public boolean savePolicy(File file) {
         return learning.savePolicy(file);
     }
@@ -75,6 +75,39 @@ public interface LearningAlgorithm extends Policy {
      */
     void conclude();
 
+    /**
+     * Give the algorithm the time of the updates that follow, for algorithms that select actions whilst updating, such
+     * as SARSA choosing its next action. Only needed when updates are not each preceded by a call to
+     * {@link #select(State, int)}; the default ignores it.
+     *
+     * @param time Time of the agent
+     */
+    default void setTime(int time) {
+    }
+
+    /**
+     * Release any threads or other resources held by the algorithm; called when the run of its agent ends. The
+     * algorithm may be initialised again afterwards.
+     */
+    default void close() {
+    }
+
+    /**
+     * <p>
+     * Copy what has been learnt so far into a new learning algorithm that selects actions as this one would. The
+     * snapshot shares no mutable state with this algorithm, so it can select actions on another thread whilst this
+     * one carries on learning. It should not be updated.
+     * </p>
+     * <p>
+     * The snapshot's strategy draws its random numbers from the stream bound to the thread that takes the snapshot.
+     * </p>
+     *
+     * @return Read only copy of this algorithm
+     */
+    default LearningAlgorithm snapshot() {
+        throw new RuntimeException(getClass().getSimpleName() + " does not support snapshots");
+    }
+
     /**
      * Load the strategy stored in <em>file</em>.
      *
@@ -0,0 +1,114 @@
+package org.madesimple.small.agent.learning.algorithm;
+
+import org.madesimple.small.agent.learning.LearningAlgorithm;
+import org.madesimple.small.agent.learning.storage.QTable;
+import org.madesimple.small.agent.learning.storage.qtable.ActionValueTable;
+import org.madesimple.small.agent.strategy.Argmax;
+import org.madesimple.small.environment.Environment;
+import org.madesimple.small.environment.State;
+import org.madesimple.small.utility.Configurable;
+import org.madesimple.small.utility.RandomStream;
+
+import java.io.File;
+
+/**
+ * <p>
+ * Double Q-Learning keeps two Q-Tables. Each update picks one of them at random and backs it up towards the value,
+ * according to the other table, of the action the picked table thinks is best. Separating the choice of action from
+ * its valuation removes the maximisation bias of Q-Learning. Actions are selected on the sum of the two tables.
+ * </p>
+ * <p>
+ * Double Q-Learning uses the Q-Learning settings; if <em>LearningAlgorithm.Q.Storage</em> is set both tables use it.
+ * The second table is saved alongside the policy file with a <code>.b</code> suffix.
+ * </p>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class DoubleQ extends Q {
+    protected QTable       qTableB;
+    protected double[]     sum;
+    protected RandomStream random;
+
+    public DoubleQ() {
+        super();
+        this.qTableB = new ActionValueTable();
+        this.sum = new double[0];
+    }
+
+    @Override
+    public void initialise() {
+        super.initialise();
+
+        if (cfg.hasProperty("LearningAlgorithm.Q.Storage")) {
+            try {
+                qTableB = (QTable) cfg.getInstance("LearningAlgorithm.Q.Storage");
+                if (qTableB instanceof Configurable) {
+                    ((Configurable) qTableB).setConfiguration(cfg);
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e.getMessage());
+            }
+        }
+        qTableB.setInitialValue(cfg.getDouble("LearningAlgorithm.Q.InitialValue"));
+        random = RandomStream.current();
+    }
+
+    @Override
+    public void commence(Environment environment) {
+        super.commence(environment);
+        qTableB.initialise(environment);
+    }
+
+    @Override
+    public int select(State state, int time, boolean greedy) {
+        int nActions = state.availableActions();
+        if (sum.length != nActions) {
+            sum = new double[nActions];
+        }
+
+        // Sum the two tables, reading each row before the next is fetched
+        System.arraycopy(qTable.get(qTable.key(state), nActions), 0, sum, 0, nActions);
+        double[] qValuesB = qTableB.get(qTableB.key(state), nActions);
+        for (int i = 0; i < nActions; i++) {
+            sum[i] += qValuesB[i];
+        }
+
+        if (greedy) {
+            return Argmax.select(sum);
+        } else {
+            return strategy.select(qTable.key(state), sum, time);
+        }
+    }
+
+    @Override
+    protected double backup(int s, int a, int s_, double r, boolean terminal, int nActions, double weight) {
+        if (random.nextBoolean()) {
+            return TemporalDifference.doubleQ(qTable, qTableB, s, a, s_, r, terminal, nActions, alpha * weight, gamma);
+        } else {
+            return TemporalDifference.doubleQ(qTableB, qTable, s, a, s_, r, terminal, nActions, alpha * weight, gamma);
+        }
+    }
+
+    @Override
+    public LearningAlgorithm snapshot() {
+        DoubleQ snapshot = new DoubleQ();
+        snapshot.cfg = cfg;
+        snapshot.alpha = alpha;
+        snapshot.gamma = gamma;
+        snapshot.strategy = newStrategy();
+        snapshot.qTable = qTable.copy();
+        snapshot.qTableB = qTableB.copy();
+        snapshot.random = RandomStream.current();
+        return snapshot;
+    }
+
+    @Override
+    public boolean savePolicy(File file) {
+        return qTable.save(file) && qTableB.save(new File(file.getPath() + ".b"));
+    }
+
+    @Override
+    public boolean loadPolicy(File file) {
+        return qTable.load(file) && qTableB.load(new File(file.getPath() + ".b"));
+    }
+}
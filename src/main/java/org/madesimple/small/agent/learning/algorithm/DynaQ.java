@@ -0,0 +1,153 @@
+package org.madesimple.small.agent.learning.algorithm;
+
+import org.madesimple.small.agent.learning.storage.Model;
+import org.madesimple.small.agent.learning.storage.qtable.ConcurrentActionValueTable;
+import org.madesimple.small.environment.State;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * <p>
+ * Dyna-Q learns from every real transition as Q-Learning does, records the transition in a learnt {@link Model} of
+ * the environment and then performs <em>PlanningSteps</em> further Q-Learning backups on transitions simulated by the
+ * model.
+ * </p>
+ * <p>
+ * When <em>Threaded</em> is true planning is performed by a background thread so that it does not stall the
+ * environment loop; each real step releases <em>PlanningSteps</em> backups to the planner, which is stopped when the
+ * run ends. The Q-Table must be safe to share between threads, so it is a {@link ConcurrentActionValueTable} and any
+ * other storage configured is rejected.
+ * </p>
+ * <p>
+ * In addition to the Q-Learning settings the following is needed in the configuration file:
+ * </p>
+ * <pre>
+ * ## Dyna-Q Learning Settings
+ * LearningAlgorithm.DynaQ.Model         = org.madesimple.small.agent.learning.storage.model.Deterministic
+ * LearningAlgorithm.DynaQ.PlanningSteps = 10
+ * LearningAlgorithm.DynaQ.Threaded      = false
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class DynaQ extends Q {
+    /**
+     * Maximum number of planning backups the planner thread may fall behind by.
+     */
+    private static final int MAX_PENDING = 1 << 16;
+
+    protected Model         model;
+    protected Model.Outcome outcome;
+    protected int           planningSteps;
+    protected boolean       threaded;
+    protected volatile int  nActions;
+
+    private Semaphore pending;
+    private Thread    planner;
+
+    public DynaQ() {
+        super();
+    }
+
+    @Override
+    public void initialise() {
+        stopPlanner();
+        super.initialise();
+
+        try {
+            model = (Model) cfg.getInstance("LearningAlgorithm.DynaQ.Model");
+            model.setConfiguration(cfg);
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage());
+        }
+
+        planningSteps = cfg.getInteger("LearningAlgorithm.DynaQ.PlanningSteps");
+        threaded = cfg.getBoolean("LearningAlgorithm.DynaQ.Threaded", false);
+        outcome = new Model.Outcome();
+        nActions = 0;
+
+        if (threaded && !cfg.hasProperty("LearningAlgorithm.Q.Storage")) {
+            qTable = new ConcurrentActionValueTable();
+            qTable.setInitialValue(cfg.getDouble("LearningAlgorithm.Q.InitialValue"));
+        }
+        if (threaded && !(qTable instanceof ConcurrentActionValueTable)) {
+            throw new RuntimeException("LearningAlgorithm.DynaQ.Threaded needs LearningAlgorithm.Q.Storage to be a " +
+                                       "ConcurrentActionValueTable");
+        }
+    }
+
+    @Override
+    public void close() {
+        stopPlanner();
+    }
+
+    @Override
+    public void update(State s, int a, State s_, double r) {
+        nActions = s.availableActions();
+        int key  = qTable.key(s);
+        int key_ = s_ != null ? qTable.key(s_) : 0;
+
+        // Learn from the real transition and remember it
+        backup(key, a, key_, r, s_ == null, nActions, 1.0d);
+        model.record(key, a, r, key_, s_ == null);
+
+        // Plan from simulated transitions
+        if (threaded) {
+            startPlanner();
+            if (pending.availablePermits() < MAX_PENDING) {
+                pending.release(planningSteps);
+            }
+        } else {
+            for (int i = 0; i < planningSteps; i++) {
+                plan(outcome);
+            }
+        }
+    }
+
+    /**
+     * Perform one backup on a transition simulated by the model.
+     *
+     * @param out Outcome to simulate into
+     */
+    protected void plan(Model.Outcome out) {
+        if (model.sample(out)) {
+            backup(out.state, out.action, out.next, out.reward, out.terminal, nActions, 1.0d);
+        }
+    }
+
+    private synchronized void startPlanner() {
+        if (planner != null) {
+            return;
+        }
+
+        pending = new Semaphore(0);
+        final Semaphore permits = pending;
+        planner = new Thread(() -> {
+            Model.Outcome out = new Model.Outcome();
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    permits.acquire();
+                    plan(out);
+                }
+            } catch (InterruptedException e) {
+                // Planning stopped...
+            }
+        }, "dyna-q-planner");
+        planner.setDaemon(true);
+        planner.start();
+    }
+
+    private synchronized void stopPlanner() {
+        if (planner == null) {
+            return;
+        }
+
+        planner.interrupt();
+        try {
+            planner.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        planner = null;
+    }
+}
@@ -0,0 +1,36 @@
+package org.madesimple.small.agent.learning.algorithm;
+
+import org.madesimple.small.environment.State;
+
+/**
+ * <p>
+ * Expected SARSA backs up towards the expected value of the next state under the behaviour strategy rather than the
+ * value of the single action that happens to be selected next, which removes the variance that the random selection
+ * adds to SARSA's updates. The expectation is calculated by {@link org.madesimple.small.agent.Strategy#expectation}
+ * in the same pass as the maximum or soft max it is built from.
+ * </p>
+ * <p>
+ * Expected SARSA uses the Q-Learning settings.
+ * </p>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class ExpectedSarsa extends Q {
+    protected int time;
+
+    public ExpectedSarsa() {
+        super();
+    }
+
+    @Override
+    public int select(State state, int time, boolean greedy) {
+        this.time = time;
+        return super.select(state, time, greedy);
+    }
+
+    @Override
+    protected double backup(int s, int a, int s_, double r, boolean terminal, int nActions, double weight) {
+        return TemporalDifference.expectedSarsa(qTable, strategy, time, s, a, s_, r, terminal, nActions,
+                                                alpha * weight, gamma);
+    }
+}
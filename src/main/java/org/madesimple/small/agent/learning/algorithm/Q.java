@@ -7,6 +7,7 @@ import org.madesimple.small.agent.strategy.Argmax;
 import org.madesimple.small.environment.Environment;
 import org.madesimple.small.environment.State;
 import org.madesimple.small.agent.learning.storage.qtable.ActionValueTable;
+import org.madesimple.small.utility.Configurable;
 import org.madesimple.small.utility.Configuration;
 
 import java.io.File;
@@ -37,6 +38,8 @@ import java.io.File;
  * LearningAlgorithm.Q.Gamma = 0.999
  * LearningAlgorithm.Q.Strategy = org.madesimple.small.agent.strategy.EpsilonGreedy
  * LearningAlgorithm.Q.InitialValue = 0.0d
+ * ; LearningAlgorithm.Q.Storage = org.madesimple.small.agent.learning.storage.qtable.DenseActionValueTable
+ * ; Discretiser.Bins = 20,20
  * </pre>
  *
  * @author Peter Scopes (peter.scopes@gmail.com)
@@ -71,26 +74,45 @@ public class Q implements LearningAlgorithm {
         gamma = cfg.getDouble("LearningAlgorithm.Q.Gamma");
 
         // Initialise the action-value table
+        if (cfg.hasProperty("LearningAlgorithm.Q.Storage")) {
+            try {
+                qTable = (QTable) cfg.getInstance("LearningAlgorithm.Q.Storage");
+                if (qTable instanceof Configurable) {
+                    ((Configurable) qTable).setConfiguration(cfg);
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e.getMessage());
+            }
+        }
         qTable.setInitialValue(cfg.getDouble("LearningAlgorithm.Q.InitialValue"));
 
         // Initialise the strategy
-        strategy = null;
+        strategy = newStrategy();
+    }
+
+    /**
+     * @return A new strategy configured from <em>LearningAlgorithm.Q.Strategy</em>, or null if it is not set
+     */
+    protected Strategy newStrategy() {
         if (cfg.hasProperty("LearningAlgorithm.Q.Strategy")) {
             try {
                 Object instance = cfg.getInstance("LearningAlgorithm.Q.Strategy");
                 if (instance instanceof Strategy) {
-                    strategy = (Strategy) instance;
+                    Strategy strategy = (Strategy) instance;
                     strategy.setConfiguration(cfg);
+                    return strategy;
                 }
             } catch (Exception e) {
                 throw new RuntimeException(e.getMessage());
             }
         }
+
+        return null;
     }
 
     @Override
     public void commence(Environment environment) {
-
+        qTable.initialise(environment);
     }
 
     @Override
@@ -105,12 +127,13 @@ public class Q implements LearningAlgorithm {
 
     @Override
     public int select(State state, int time, boolean greedy) {
-        double[] qValues = qTable.get(state.hashCode(), state.availableActions());
+        int      key     = qTable.key(state);
+        double[] qValues = qTable.get(key, state.availableActions());
 
         if (greedy) {
             return Argmax.select(qValues);
         } else {
-            return strategy.select(qValues, time);
+            return strategy.select(key, qValues, time);
         }
     }
 
@@ -121,17 +144,37 @@ public class Q implements LearningAlgorithm {
 
     @Override
     public void update(State s, int a, State s_, double r) {
-        // Get the last Q values
-        double[] lastQValues = qTable.get(s.hashCode(), s.availableActions());
+        int    key   = qTable.key(s);
+        double Delta = backup(key, a, s_ != null ? qTable.key(s_) : 0, r, s_ == null, s.availableActions(), 1.0d);
+        qTable.observe(key, s, alpha * Delta);
+    }
 
-        // Get the old and max Q values
-        double oldQ = lastQValues[a];
-        double maxQ = s_ != null ? Argmax.max(qTable.get(s_.hashCode(), s.availableActions())) : 0.0;
+    /**
+     * Perform a one-step Q-Learning backup on rows of the Q-Table.
+     *
+     * @param s        Row key of the state where the action was performed
+     * @param a        Action performed
+     * @param s_       Row key of the state transitioned to
+     * @param r        Numeric amount
+     * @param terminal True if <em>s_</em> is terminal
+     * @param nActions Number of columns
+     * @param weight   Multiplier of the step size
+     * @return TD error
+     */
+    protected double backup(int s, int a, int s_, double r, boolean terminal, int nActions, double weight) {
+        return TemporalDifference.q(qTable, s, a, s_, r, terminal, nActions, alpha * weight, gamma);
+    }
 
-        // Calculate the new Q value
-        double Delta = r + (gamma * maxQ) - oldQ;
-        double newQ  = oldQ + (alpha * Delta);
-        qTable.put(s.hashCode(), a, newQ, s.availableActions());
+    /**
+     * The snapshot of Q-Learning, and of the algorithms that act on its Q-Table alone, selects with a new strategy from
+     * a copy of the Q-Table.
+     */
+    @Override
+    public LearningAlgorithm snapshot() {
+        Q snapshot = new Q(alpha, gamma, newStrategy());
+        snapshot.cfg = cfg;
+        snapshot.qTable = qTable.copy();
+        return snapshot;
     }
 
     @Override
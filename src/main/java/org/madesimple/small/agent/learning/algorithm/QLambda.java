@@ -0,0 +1,100 @@
+package org.madesimple.small.agent.learning.algorithm;
+
+import org.madesimple.small.agent.Strategy;
+import org.madesimple.small.agent.learning.storage.EligibilityTraces;
+import org.madesimple.small.agent.strategy.Argmax;
+import org.madesimple.small.environment.Environment;
+import org.madesimple.small.environment.State;
+
+/**
+ * <p>
+ * Watkins's Q(&lambda;) extends {@link Q} with eligibility traces. Rewards are propagated back along the recently
+ * visited state-actions for as long as the agent follows the greedy policy; as soon as an exploratory action is
+ * selected the traces are cut. The traces are kept in a sparse {@link EligibilityTraces} set, so each update only
+ * touches state-actions whose trace is above the threshold.
+ * </p>
+ * <p>
+ * In addition to the Q-Learning settings the following is needed in the configuration file:
+ * </p>
+ * <pre>
+ * ## Q(lambda) Learning Settings
+ * LearningAlgorithm.Q.Lambda         = 0.9
+ * ; [replacing|accumulating]
+ * LearningAlgorithm.Q.Traces         = replacing
+ * LearningAlgorithm.Q.TraceThreshold = 0.01
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class QLambda extends Q {
+    protected double            lambda;
+    protected EligibilityTraces traces;
+
+    public QLambda() {
+        super();
+    }
+
+    public QLambda(double alpha, double gamma, double lambda, Strategy strategy, EligibilityTraces traces) {
+        super(alpha, gamma, strategy);
+        this.lambda = lambda;
+        this.traces = traces;
+    }
+
+    @Override
+    public void initialise() {
+        super.initialise();
+
+        lambda = cfg.getDouble("LearningAlgorithm.Q.Lambda");
+        traces = new EligibilityTraces(
+                EligibilityTraces.Type.valueOf(cfg.getString("LearningAlgorithm.Q.Traces").toUpperCase()),
+                cfg.getDouble("LearningAlgorithm.Q.TraceThreshold")
+        );
+    }
+
+    @Override
+    public void commence(Environment environment) {
+        super.commence(environment);
+        traces.clear();
+    }
+
+    @Override
+    public void conclude() {
+        traces.clear();
+    }
+
+    @Override
+    public void clearTransitions() {
+        traces.clear();
+    }
+
+    @Override
+    public int select(State state, int time, boolean greedy) {
+        int action = super.select(state, time, greedy);
+
+        // Cut the traces if the action is exploratory
+        double[] qValues = qTable.get(qTable.key(state), state.availableActions());
+        if (qValues[action] < Argmax.max(qValues)) {
+            traces.clear();
+        }
+
+        return action;
+    }
+
+    @Override
+    public void update(State s, int a, State s_, double r) {
+        int nActions = s.availableActions();
+
+        // Get the old and max Q values
+        int    key  = qTable.key(s);
+        double oldQ = qTable.get(key, nActions)[a];
+        double maxQ = s_ != null ? Argmax.max(qTable.get(qTable.key(s_), nActions)) : 0.0;
+
+        // Calculate the TD error
+        double Delta = r + (gamma * maxQ) - oldQ;
+
+        // Update every eligible state-action then decay the traces
+        traces.visit(key, a);
+        traces.apply(qTable, alpha * Delta, nActions);
+        traces.decay(gamma * lambda);
+    }
+}
@@ -0,0 +1,115 @@
+package org.madesimple.small.agent.learning.algorithm;
+
+import org.madesimple.small.agent.learning.storage.ReplayBuffer;
+import org.madesimple.small.environment.State;
+
+/**
+ * <p>
+ * Q-Learning with experience replay. Every transition is learnt from as usual and then stored in a
+ * {@link ReplayBuffer}; every <em>Frequency</em> updates a batch of <em>BatchSize</em> stored transitions is sampled
+ * and learnt from again. This gives far more learning per step of an expensive environment.
+ * </p>
+ * <p>
+ * In addition to the Q-Learning settings the following is needed in the configuration file:
+ * </p>
+ * <pre>
+ * ## Q-Learning with Experience Replay Settings
+ * LearningAlgorithm.Replay.Buffer    = org.madesimple.small.agent.learning.storage.replay.Uniform
+ * LearningAlgorithm.Replay.BatchSize = 32
+ * LearningAlgorithm.Replay.Frequency = 1
+ * ReplayBuffer.Capacity = 100000
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class QReplay extends Q {
+    protected ReplayBuffer buffer;
+    protected int          batchSize;
+    protected int          frequency;
+    protected int          steps;
+    protected int          lastSlot;
+    protected int[]        batch;
+    protected double[]     weights;
+    protected int[]        batchStates;
+    protected int[]        batchActions;
+    protected int[]        batchNextStates;
+    protected double[]     batchRewards;
+    protected boolean[]    batchTerminals;
+    protected double[]     batchErrors;
+
+    public QReplay() {
+        super();
+    }
+
+    @Override
+    public void initialise() {
+        super.initialise();
+
+        try {
+            buffer = (ReplayBuffer) cfg.getInstance("LearningAlgorithm.Replay.Buffer");
+            buffer.setConfiguration(cfg);
+            buffer.initialise(0);
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage());
+        }
+
+        batchSize = cfg.getInteger("LearningAlgorithm.Replay.BatchSize");
+        frequency = cfg.getInteger("LearningAlgorithm.Replay.Frequency");
+        batch = new int[batchSize];
+        weights = new double[batchSize];
+        batchStates = new int[batchSize];
+        batchActions = new int[batchSize];
+        batchNextStates = new int[batchSize];
+        batchRewards = new double[batchSize];
+        batchTerminals = new boolean[batchSize];
+        batchErrors = new double[batchSize];
+        steps = 0;
+        lastSlot = -1;
+    }
+
+    @Override
+    public void conclude() {
+        if (lastSlot != -1) {
+            buffer.terminate(lastSlot);
+        }
+    }
+
+    @Override
+    public void update(State s, int a, State s_, double r) {
+        int nActions = s.availableActions();
+        int key      = qTable.key(s);
+        int key_     = s_ != null ? qTable.key(s_) : 0;
+
+        // Learn from the real transition and remember it
+        backup(key, a, key_, r, s_ == null, nActions, 1.0d);
+        lastSlot = buffer.add(key, a, r, key_, s_ == null);
+
+        // Replay a batch of remembered transitions
+        if (++steps % frequency == 0) {
+            replay(nActions);
+        }
+    }
+
+    /**
+     * Sample a batch of transitions from the buffer and learn from them with a single batched backup.
+     *
+     * @param nActions Number of columns
+     */
+    protected void replay(int nActions) {
+        int n = buffer.sample(batch, weights, batchSize);
+        for (int i = 0; i < n; i++) {
+            int slot = batch[i];
+            batchStates[i] = buffer.state(slot);
+            batchActions[i] = buffer.action(slot);
+            batchNextStates[i] = buffer.nextState(slot);
+            batchRewards[i] = buffer.reward(slot);
+            batchTerminals[i] = buffer.isTerminal(slot);
+        }
+
+        TemporalDifference.q(qTable, batchStates, batchActions, batchNextStates, batchRewards, batchTerminals,
+                             weights, batchErrors, n, nActions, alpha, gamma);
+        for (int i = 0; i < n; i++) {
+            buffer.update(batch[i], batchErrors[i]);
+        }
+    }
+}
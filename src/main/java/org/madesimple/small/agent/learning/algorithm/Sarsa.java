@@ -7,6 +7,7 @@ import org.madesimple.small.agent.strategy.Argmax;
 import org.madesimple.small.environment.Environment;
 import org.madesimple.small.environment.State;
 import org.madesimple.small.agent.learning.storage.qtable.ActionValueTable;
+import org.madesimple.small.utility.Configurable;
 import org.madesimple.small.utility.Configuration;
 
 import java.io.File;
@@ -36,6 +37,8 @@ import java.io.File;
  * LearningAlgorithm.SARSA.Alpha     = 0.4
  * LearningAlgorithm.SARSA.Gamma     = 0.999
  * ; LearningAlgorithm.SARSA.NumStates = 2000
+ * ; LearningAlgorithm.SARSA.Storage   = org.madesimple.small.agent.learning.storage.qtable.DenseActionValueTable
+ * ; Discretiser.Bins                  = 20,20
  * </pre>
  *
  * @author Peter Scopes (peter.scopes@gmail.com)
@@ -50,6 +53,7 @@ public class Sarsa implements LearningAlgorithm {
     protected boolean hasPotentialState;
     protected State   potentialState;
     protected int     potentialAction;
+    protected int     time;
 
     public Sarsa() {
         this.qTable = new ActionValueTable();
@@ -74,25 +78,45 @@ public class Sarsa implements LearningAlgorithm {
         gamma = cfg.getDouble("LearningAlgorithm.SARSA.Gamma");
 
         // Initialise the action-value table
+        if (cfg.hasProperty("LearningAlgorithm.SARSA.Storage")) {
+            try {
+                qTable = (QTable) cfg.getInstance("LearningAlgorithm.SARSA.Storage");
+                if (qTable instanceof Configurable) {
+                    ((Configurable) qTable).setConfiguration(cfg);
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e.getMessage());
+            }
+        }
         qTable.setInitialValue(cfg.getDouble("LearningAlgorithm.SARSA.InitialValue"));
 
         // Initialise the strategy
-        strategy = null;
+        strategy = newStrategy();
+    }
+
+    /**
+     * @return A new strategy configured from <em>LearningAlgorithm.SARSA.Strategy</em>, or null if it is not set
+     */
+    protected Strategy newStrategy() {
         if (cfg.hasProperty("LearningAlgorithm.SARSA.Strategy")) {
             try {
                 Object instance = cfg.getInstance("LearningAlgorithm.SARSA.Strategy");
                 if (instance instanceof Strategy) {
-                    strategy = (Strategy) instance;
+                    Strategy strategy = (Strategy) instance;
                     strategy.setConfiguration(cfg);
+                    return strategy;
                 }
             } catch (Exception e) {
                 throw new RuntimeException(e.getMessage());
             }
         }
+
+        return null;
     }
 
     @Override
     public void commence(Environment environment) {
+        qTable.initialise(environment);
         clearTransitions();
     }
 
@@ -108,23 +132,32 @@ public class Sarsa implements LearningAlgorithm {
 
     @Override
     public int select(State state, int time, boolean greedy) {
-        if (greedy || !hasPotentialState || state.hashCode() != potentialState.hashCode()) {
-            return Argmax.select(qTable.get(state.hashCode(), state.availableActions()));
+        this.time = time;
+
+        int key = qTable.key(state);
+        if (greedy || !hasPotentialState || key != qTable.key(potentialState)) {
+            return Argmax.select(qTable.get(key, state.availableActions()));
         } else {
             return potentialAction;
         }
     }
 
     protected double selectPotential(State state, int time) {
-        double[] qValues = qTable.get(state.hashCode(), state.availableActions());
+        int      key     = qTable.key(state);
+        double[] qValues = qTable.get(key, state.availableActions());
 
         hasPotentialState = true;
         potentialState = state;
-        potentialAction = strategy.select(qValues, time);
+        potentialAction = strategy.select(key, qValues, time);
 
         return qValues[potentialAction];
     }
 
+    @Override
+    public void setTime(int time) {
+        this.time = time;
+    }
+
     @Override
     public void clearTransitions() {
         hasPotentialState = false;
@@ -134,18 +167,23 @@ public class Sarsa implements LearningAlgorithm {
 
     @Override
     public void update(State s, int a, State s_, double r) {
-        // Get the last Q values
-        double[] lastQValues = qTable.get(s.hashCode(), s.availableActions());
-
-        // Get the old and next Q values
-        double oldQ  = lastQValues[a];
-        double nextQ = s_ != null ? selectPotential(s_, 0) : 0.0;
+        int    key   = qTable.key(s);
+        double nextQ = s_ != null ? selectPotential(s_, time) : 0.0;
 
-        // Calculate the new Q value
-        double Delta = r + (gamma * nextQ) - oldQ;
-        double newQ  = oldQ + (alpha * Delta);
+        double Delta = TemporalDifference.sarsa(qTable, key, a, nextQ, r, s.availableActions(), alpha, gamma);
+        qTable.observe(key, s, alpha * Delta);
+    }
 
-        qTable.put(s.hashCode(), a, newQ, s.availableActions());
+    /**
+     * The snapshot of SARSA selects with a new strategy from a copy of the Q-Table. It has no potential action to keep
+     * to, as the actions it selects are learnt from by this algorithm rather than by the snapshot.
+     */
+    @Override
+    public LearningAlgorithm snapshot() {
+        Q snapshot = new Q(alpha, gamma, newStrategy());
+        snapshot.cfg = cfg;
+        snapshot.qTable = qTable.copy();
+        return snapshot;
     }
 
     @Override
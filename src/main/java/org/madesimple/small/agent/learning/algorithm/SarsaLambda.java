@@ -0,0 +1,81 @@
+package org.madesimple.small.agent.learning.algorithm;
+
+import org.madesimple.small.agent.Strategy;
+import org.madesimple.small.agent.learning.storage.EligibilityTraces;
+import org.madesimple.small.environment.State;
+
+/**
+ * <p>
+ * SARSA(&lambda;) extends {@link Sarsa} with eligibility traces so that each reward is propagated back along the
+ * recently visited state-actions instead of only the last one. The traces are kept in a sparse
+ * {@link EligibilityTraces} set, so each update only touches state-actions whose trace is above the threshold.
+ * </p>
+ * <p>
+ * In addition to the SARSA settings the following is needed in the configuration file:
+ * </p>
+ * <pre>
+ * ## SARSA(lambda) Learning Settings
+ * LearningAlgorithm.SARSA.Lambda         = 0.9
+ * ; [replacing|accumulating]
+ * LearningAlgorithm.SARSA.Traces         = replacing
+ * LearningAlgorithm.SARSA.TraceThreshold = 0.01
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class SarsaLambda extends Sarsa {
+    protected double            lambda;
+    protected EligibilityTraces traces;
+
+    public SarsaLambda() {
+        super();
+    }
+
+    public SarsaLambda(double alpha, double gamma, double lambda, Strategy strategy, EligibilityTraces traces) {
+        super(alpha, gamma, strategy);
+        this.lambda = lambda;
+        this.traces = traces;
+    }
+
+    @Override
+    public void initialise() {
+        super.initialise();
+
+        lambda = cfg.getDouble("LearningAlgorithm.SARSA.Lambda");
+        traces = new EligibilityTraces(
+                EligibilityTraces.Type.valueOf(cfg.getString("LearningAlgorithm.SARSA.Traces").toUpperCase()),
+                cfg.getDouble("LearningAlgorithm.SARSA.TraceThreshold")
+        );
+    }
+
+    @Override
+    public void conclude() {
+        traces.clear();
+    }
+
+    @Override
+    public void clearTransitions() {
+        super.clearTransitions();
+        if (traces != null) {
+            traces.clear();
+        }
+    }
+
+    @Override
+    public void update(State s, int a, State s_, double r) {
+        int nActions = s.availableActions();
+
+        // Get the old and next Q values
+        int    key   = qTable.key(s);
+        double oldQ  = qTable.get(key, nActions)[a];
+        double nextQ = s_ != null ? selectPotential(s_, time) : 0.0;
+
+        // Calculate the TD error
+        double Delta = r + (gamma * nextQ) - oldQ;
+
+        // Update every eligible state-action then decay the traces
+        traces.visit(key, a);
+        traces.apply(qTable, alpha * Delta, nActions);
+        traces.decay(gamma * lambda);
+    }
+}
@@ -0,0 +1,187 @@
+package org.madesimple.small.agent.learning.algorithm;
+
+import org.madesimple.small.agent.Strategy;
+import org.madesimple.small.agent.learning.storage.QTable;
+import org.madesimple.small.agent.strategy.Argmax;
+
+/**
+ * <p>
+ * Temporal Difference holds the one-step backups shared by the tabular learning algorithms. Each backup reads the
+ * rows it needs from a {@link QTable}, writes the new value for the performed action back through
+ * {@link QTable#put(int, int, double, int)} and returns the TD error. No temporary arrays are created.
+ * </p>
+ * <p>
+ * Rows returned by a Q-Table may be reused between calls (see
+ * {@link org.madesimple.small.agent.learning.storage.qtable.PartitionedActionValueTable}) so every value needed from a row
+ * is read before the next row is fetched.
+ * </p>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public final class TemporalDifference {
+
+    private TemporalDifference() {
+    }
+
+    /**
+     * Q-Learning backup: the target is the maximum value of the next state.
+     *
+     * @param qTable   Q-Table to update
+     * @param s        Row key of the state where the action was performed
+     * @param a        Action performed
+     * @param s_       Row key of the state transitioned to
+     * @param r        Numeric amount
+     * @param terminal True if <em>s_</em> is terminal
+     * @param nActions Number of columns
+     * @param alpha    Step size
+     * @param gamma    Discount factor
+     * @return TD error
+     */
+    public static double q(QTable qTable, int s, int a, int s_, double r, boolean terminal, int nActions,
+                           double alpha, double gamma) {
+        double oldQ = qTable.get(s, nActions)[a];
+        double maxQ = !terminal ? Argmax.max(qTable.get(s_, nActions)) : 0.0;
+
+        return apply(qTable, s, a, oldQ, r + (gamma * maxQ), nActions, alpha);
+    }
+
+    /**
+     * SARSA backup: the target is the value of the action that will be performed in the next state.
+     *
+     * @param qTable   Q-Table to update
+     * @param s        Row key of the state where the action was performed
+     * @param a        Action performed
+     * @param nextQ    Value of the next state-action, 0 if terminal
+     * @param r        Numeric amount
+     * @param nActions Number of columns
+     * @param alpha    Step size
+     * @param gamma    Discount factor
+     * @return TD error
+     */
+    public static double sarsa(QTable qTable, int s, int a, double nextQ, double r, int nActions,
+                               double alpha, double gamma) {
+        double oldQ = qTable.get(s, nActions)[a];
+
+        return apply(qTable, s, a, oldQ, r + (gamma * nextQ), nActions, alpha);
+    }
+
+    /**
+     * Expected SARSA backup: the target is the expected value of the next state under <em>strategy</em>.
+     *
+     * @param qTable   Q-Table to update
+     * @param strategy Behaviour strategy
+     * @param time     Time step of the strategy
+     * @param s        Row key of the state where the action was performed
+     * @param a        Action performed
+     * @param s_       Row key of the state transitioned to
+     * @param r        Numeric amount
+     * @param terminal True if <em>s_</em> is terminal
+     * @param nActions Number of columns
+     * @param alpha    Step size
+     * @param gamma    Discount factor
+     * @return TD error
+     */
+    public static double expectedSarsa(QTable qTable, Strategy strategy, int time, int s, int a, int s_, double r,
+                                       boolean terminal, int nActions, double alpha, double gamma) {
+        double oldQ  = qTable.get(s, nActions)[a];
+        double nextQ = !terminal ? strategy.expectation(qTable.get(s_, nActions), time) : 0.0;
+
+        return apply(qTable, s, a, oldQ, r + (gamma * nextQ), nActions, alpha);
+    }
+
+    /**
+     * Double Q-Learning backup: the next action is chosen greedily by <em>qTable</em> but valued by
+     * <em>evaluate</em>.
+     *
+     * @param qTable   Q-Table to update
+     * @param evaluate Q-Table used to value the next action
+     * @param s        Row key of the state where the action was performed
+     * @param a        Action performed
+     * @param s_       Row key of the state transitioned to
+     * @param r        Numeric amount
+     * @param terminal True if <em>s_</em> is terminal
+     * @param nActions Number of columns
+     * @param alpha    Step size
+     * @param gamma    Discount factor
+     * @return TD error
+     */
+    public static double doubleQ(QTable qTable, QTable evaluate, int s, int a, int s_, double r, boolean terminal,
+                                 int nActions, double alpha, double gamma) {
+        double oldQ  = qTable.get(s, nActions)[a];
+        double nextQ = 0.0;
+        if (!terminal) {
+            int a_ = Argmax.select(qTable.get(s_, nActions));
+            nextQ = evaluate.get(s_, nActions)[a_];
+        }
+
+        return apply(qTable, s, a, oldQ, r + (gamma * nextQ), nActions, alpha);
+    }
+
+    /**
+     * Q-Learning backups of a batch of transitions, for example sampled from a replay buffer or gathered from
+     * several workers. Transition <em>i</em> has its step size multiplied by <em>weights[i]</em> and its TD error
+     * written into <em>errors[i]</em>.
+     *
+     * @param qTable   Q-Table to update
+     * @param s        Row keys of the states where the actions were performed
+     * @param a        Actions performed
+     * @param s_       Row keys of the states transitioned to
+     * @param r        Numeric amounts
+     * @param terminal True where <em>s_</em> is terminal
+     * @param weights  Multipliers of the step size, or null for none
+     * @param errors   Array to write TD errors into, or null
+     * @param n        Number of transitions in the batch
+     * @param nActions Number of columns
+     * @param alpha    Step size
+     * @param gamma    Discount factor
+     */
+    public static void q(QTable qTable, int[] s, int[] a, int[] s_, double[] r, boolean[] terminal, double[] weights,
+                         double[] errors, int n, int nActions, double alpha, double gamma) {
+        for (int i = 0; i < n; i++) {
+            double weight = weights != null ? weights[i] : 1.0d;
+            double Delta  = q(qTable, s[i], a[i], s_[i], r[i], terminal[i], nActions, alpha * weight, gamma);
+            if (errors != null) {
+                errors[i] = Delta;
+            }
+        }
+    }
+
+    /**
+     * Expected SARSA backups of a batch of transitions; see
+     * {@link #q(QTable, int[], int[], int[], double[], boolean[], double[], double[], int, int, double, double)}.
+     *
+     * @param qTable   Q-Table to update
+     * @param strategy Behaviour strategy
+     * @param time     Time step of the strategy
+     * @param s        Row keys of the states where the actions were performed
+     * @param a        Actions performed
+     * @param s_       Row keys of the states transitioned to
+     * @param r        Numeric amounts
+     * @param terminal True where <em>s_</em> is terminal
+     * @param weights  Multipliers of the step size, or null for none
+     * @param errors   Array to write TD errors into, or null
+     * @param n        Number of transitions in the batch
+     * @param nActions Number of columns
+     * @param alpha    Step size
+     * @param gamma    Discount factor
+     */
+    public static void expectedSarsa(QTable qTable, Strategy strategy, int time, int[] s, int[] a, int[] s_,
+                                     double[] r, boolean[] terminal, double[] weights, double[] errors, int n,
+                                     int nActions, double alpha, double gamma) {
+        for (int i = 0; i < n; i++) {
+            double weight = weights != null ? weights[i] : 1.0d;
+            double Delta  = expectedSarsa(qTable, strategy, time, s[i], a[i], s_[i], r[i], terminal[i], nActions,
+                                          alpha * weight, gamma);
+            if (errors != null) {
+                errors[i] = Delta;
+            }
+        }
+    }
+
+    private static double apply(QTable qTable, int s, int a, double oldQ, double target, int nActions, double alpha) {
+        double Delta = target - oldQ;
+        qTable.put(s, a, oldQ + (alpha * Delta), nActions);
+
+        return Delta;
+    }
+}
@@ -2,6 +2,8 @@ package org.madesimple.small.agent.learning.algorithm;
 
 import org.madesimple.small.agent.Strategy;
 import org.madesimple.small.agent.learning.LearningAlgorithm;
+import org.madesimple.small.agent.learning.storage.EligibilityTraces;
+import org.madesimple.small.agent.learning.storage.ReplayBuffer;
 import org.madesimple.small.agent.learning.storage.TileCoding;
 import org.madesimple.small.agent.learning.storage.qtable.ActionValueTable;
 import org.madesimple.small.agent.strategy.Argmax;
@@ -22,11 +24,16 @@ import java.io.File;
  * TileCoding.NumTilings = 4
  * TileCoding.Sutton.NumTiles = 50
  * TileCoding.Whiteson.TilesPerFeature = 50,50
+ * ; For TileCode.QLambda and TileCode.SarsaLambda
+ * LearningAlgorithm.TileCode.Lambda = 0.9
+ * LearningAlgorithm.TileCode.Traces = replacing
+ * LearningAlgorithm.TileCode.TraceThreshold = 0.01
  * </pre>
  *
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
 public abstract class TileCode implements LearningAlgorithm {
+    protected Configuration    cfg;
     protected ActionValueTable qTable;
     protected double           alpha;
     protected double           gamma;
@@ -40,6 +47,7 @@ public abstract class TileCode implements LearningAlgorithm {
 
     @Override
     public void setConfiguration(Configuration cfg) {
+        this.cfg = cfg;
         try {
             this.alpha = cfg.getDouble("LearningAlgorithm.TileCode.Alpha");
             this.gamma = cfg.getDouble("LearningAlgorithm.TileCode.Gamma");
@@ -50,24 +58,94 @@ public abstract class TileCode implements LearningAlgorithm {
             tc.setConfiguration(cfg);
 
             // Instantiate and configure strategy
-            strategy = (Strategy) cfg.getInstance("LearningAlgorithm.TileCode.Strategy");
-            strategy.setConfiguration(cfg);
+            strategy = newStrategy();
+
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage());
+        }
+    }
 
+    /**
+     * @return A new strategy configured from <em>LearningAlgorithm.TileCode.Strategy</em>
+     */
+    protected Strategy newStrategy() {
+        try {
+            Strategy strategy = (Strategy) cfg.getInstance("LearningAlgorithm.TileCode.Strategy");
+            strategy.setConfiguration(cfg);
+            return strategy;
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage());
         }
     }
 
     protected double[] qValues(int[] ts, int m, int nActions) {
+        return qValues(ts, 0, m, nActions);
+    }
+
+    /**
+     * @param ts       Tiles of one or more states
+     * @param from     Index of the first tile of the state
+     * @param m        Number of tiles of the state
+     * @param nActions Number of columns
+     * @return Sum of the values of the tiles of the state for each action
+     */
+    protected double[] qValues(int[] ts, int from, int m, int nActions) {
         double[] Qs_ = new double[nActions];
         for (int a = 0; a < nActions; a++) {
-            for (int i = 0; i < m; i++) {
-                Qs_[a] += qTable.get(ts[i])[a];
+            for (int i = from; i < from + m; i++) {
+                Qs_[a] += qTable.get(ts[i], nActions)[a];
             }
         }
         return Qs_;
     }
 
+    /**
+     * Perform a one-step Q-Learning backup on the tiles of a transition.
+     *
+     * @param prevTiles Tiles of the state where the action was performed
+     * @param a         Action performed
+     * @param nextTiles Tiles of the state transitioned to
+     * @param r         Numeric amount
+     * @param terminal  True if the state transitioned to is terminal
+     * @param nActions  Number of columns
+     * @param weight    Multiplier of the step size
+     * @return TD error
+     */
+    protected double backup(int[] prevTiles, int a, int[] nextTiles, double r, boolean terminal, int nActions, double weight) {
+        return backup(prevTiles, 0, a, nextTiles, 0, r, terminal, nActions, weight);
+    }
+
+    /**
+     * Perform a one-step Q-Learning backup on the tiles of a transition held in arrays of tiles of many states.
+     *
+     * @param prevTiles Tiles of states including the state where the action was performed
+     * @param prevFrom  Index in <em>prevTiles</em> of the first tile of the state
+     * @param a         Action performed
+     * @param nextTiles Tiles of states including the state transitioned to
+     * @param nextFrom  Index in <em>nextTiles</em> of the first tile of the state transitioned to
+     * @param r         Numeric amount
+     * @param terminal  True if the state transitioned to is terminal
+     * @param nActions  Number of columns
+     * @param weight    Multiplier of the step size
+     * @return TD error
+     */
+    protected double backup(int[] prevTiles, int prevFrom, int a, int[] nextTiles, int nextFrom, double r,
+                            boolean terminal, int nActions, double weight) {
+        // Perform calculations
+        double m     = nTilings;
+        double Qsa   = qValues(prevTiles, prevFrom, nTilings, nActions)[a];
+        double Qs_a_ = !terminal ? Argmax.max(qValues(nextTiles, nextFrom, nTilings, nActions)) : 0.0d;
+        double error = r + (gamma * Qs_a_) - Qsa;
+
+        // Update the qValues
+        for (int i = prevFrom; i < prevFrom + nTilings; i++) {
+            double val = qTable.get(prevTiles[i])[a] + ((alpha * weight / m) * error);
+            qTable.put(prevTiles[i], a, val);
+        }
+
+        return error;
+    }
+
     @Override
     public void initialise() {
 
@@ -88,14 +166,39 @@ public abstract class TileCode implements LearningAlgorithm {
 
     }
 
+    /**
+     * The snapshot selects as {@link Q} does from a copy of the tile values and a copy of the tile coding, so that
+     * this algorithm can initialise its tile coding again, as it does whenever it commences, whilst the snapshot is in
+     * use.
+     */
+    @Override
+    public LearningAlgorithm snapshot() {
+        Q snapshot = new Q();
+        snapshot.cfg = cfg;
+        snapshot.qTable = qTable.copy();
+        snapshot.alpha = alpha;
+        snapshot.gamma = gamma;
+        snapshot.nTilings = nTilings;
+        snapshot.strategy = newStrategy();
+        snapshot.tc = tc.copy();
+        return snapshot;
+    }
+
+    /**
+     * Load the values of the tiles stored in <em>file</em>. The tile coding is not stored: the values only mean the
+     * same thing again if the tile coding is configured, and any random jitter drawn, as it was when they were saved.
+     */
     @Override
     public boolean loadPolicy(File file) {
-        throw new RuntimeException("Not yet implemented");
+        return qTable.load(file);
     }
 
+    /**
+     * Save the values of the tiles in <em>file</em>.
+     */
     @Override
     public boolean savePolicy(File file) {
-        throw new RuntimeException("Not yet implemented");
+        return qTable.save(file);
     }
 
     public static class Q extends TileCode {
@@ -126,17 +229,104 @@ public abstract class TileCode implements LearningAlgorithm {
             int[] prevTiles = tc.tiles((ContinuousState) s);
             int[] nextTiles = tc.tiles((ContinuousState) s_);
 
+            backup(prevTiles, a, nextTiles, r, false, s.availableActions(), 1.0d);
+        }
+    }
 
-            // Perform calculations
-            double m     = nTilings;
-            double Qsa   = qValues(prevTiles, nTilings, s.availableActions())[a];
-            double Qs_a_ = Argmax.max(qValues(nextTiles, nTilings, s_.availableActions()));
-            double error = r + (gamma * Qs_a_) - Qsa;
+    /**
+     * Q-Learning over tile codings with experience replay. Transitions are stored in a {@link ReplayBuffer} as copies
+     * of their feature vectors and are tiled again when they are replayed.
+     *
+     * @see org.madesimple.small.agent.learning.algorithm.QReplay
+     */
+    public static class QReplay extends Q {
+        protected ReplayBuffer buffer;
+        protected int          batchSize;
+        protected int          frequency;
+        protected int          steps;
+        protected int          lastSlot;
+        protected int[]        batch;
+        protected double[]     weights;
+        protected int          nFeatures;
+        protected double[]     features;
+        protected double[]     nextFeatures;
+        protected int[]        tiles;
+        protected int[]        nextTiles;
 
-            // Update the qValues
-            for (int i = 0; i < nTilings; i++) {
-                double val = qTable.get(prevTiles[i])[a] + ((alpha / m) * error);
-                qTable.put(prevTiles[i], a, val);
+        @Override
+        public void setConfiguration(Configuration cfg) {
+            super.setConfiguration(cfg);
+
+            try {
+                buffer = (ReplayBuffer) cfg.getInstance("LearningAlgorithm.Replay.Buffer");
+                buffer.setConfiguration(cfg);
+            } catch (Exception e) {
+                throw new RuntimeException(e.getMessage());
+            }
+
+            batchSize = cfg.getInteger("LearningAlgorithm.Replay.BatchSize");
+            frequency = cfg.getInteger("LearningAlgorithm.Replay.Frequency");
+            batch = new int[batchSize];
+            weights = new double[batchSize];
+            steps = 0;
+            lastSlot = -1;
+        }
+
+        @Override
+        public void commence(Environment environment) {
+            super.commence(environment);
+
+            if (!buffer.isInitialised()) {
+                nFeatures = ((ContinuousEnvironment) environment).countBounds();
+                buffer.initialise(nFeatures);
+                features = new double[batchSize * nFeatures];
+                nextFeatures = new double[batchSize * nFeatures];
+                tiles = new int[batchSize * nTilings];
+                nextTiles = new int[batchSize * nTilings];
+            }
+        }
+
+        @Override
+        public void conclude() {
+            if (lastSlot != -1) {
+                buffer.terminate(lastSlot);
+            }
+        }
+
+        @Override
+        public void update(State s, int a, State s_, double r) {
+            double[] tuple  = ((ContinuousState) s).tuple();
+            double[] tuple_ = ((ContinuousState) s_).tuple();
+
+            // Learn from the real transition and remember it
+            backup(tc.tiles(tuple), a, tc.tiles(tuple_), r, false, s.availableActions(), 1.0d);
+            lastSlot = buffer.add(tuple, a, r, tuple_, false);
+
+            // Replay a batch of remembered transitions
+            if (++steps % frequency == 0) {
+                replay(s.availableActions());
+            }
+        }
+
+        /**
+         * Sample a batch of transitions from the buffer, tile them in one call and learn from them.
+         *
+         * @param nActions Number of columns
+         */
+        protected void replay(int nActions) {
+            int n = buffer.sample(batch, weights, batchSize);
+            for (int i = 0; i < n; i++) {
+                buffer.features(batch[i], features, i * nFeatures);
+                buffer.nextFeatures(batch[i], nextFeatures, i * nFeatures);
+            }
+            tc.tiles(features, nFeatures, n, tiles);
+            tc.tiles(nextFeatures, nFeatures, n, nextTiles);
+
+            for (int i = 0; i < n; i++) {
+                int    slot  = batch[i];
+                double error = backup(tiles, i * nTilings, buffer.action(slot), nextTiles, i * nTilings,
+                                      buffer.reward(slot), buffer.isTerminal(slot), nActions, weights[i]);
+                buffer.update(slot, error);
             }
         }
     }
@@ -145,9 +335,11 @@ public abstract class TileCode implements LearningAlgorithm {
         private boolean hasPotentialState;
         private State   potentialState;
         private int     potentialAction;
+        protected int   time;
 
         @Override
         public int select(State state, int time, boolean greedy) {
+            this.time = time;
             if (greedy || !hasPotentialState || state.hashCode() != potentialState.hashCode()) {
                 return Argmax.select(qTable.get(state.hashCode(), state.availableActions()));
             } else {
@@ -155,7 +347,7 @@ public abstract class TileCode implements LearningAlgorithm {
             }
         }
 
-        private double selectPotential(State state, int time) {
+        protected double selectPotential(State state, int time) {
             // Get all the tiles of this state representation
             int[] tiles = tc.tiles((ContinuousState) state);
 
@@ -184,7 +376,7 @@ public abstract class TileCode implements LearningAlgorithm {
             // Perform calculations
             double m     = nTilings;
             double Qsa   = qValues(prevTiles, nTilings, s.availableActions())[a];
-            double Qs_a_ = s_ != null ? selectPotential(s_, 0) : 0.0d;
+            double Qs_a_ = s_ != null ? selectPotential(s_, time) : 0.0d;
             double error = r + (gamma * Qs_a_) - Qsa;
 
             // Update the qValues
@@ -194,4 +386,130 @@ public abstract class TileCode implements LearningAlgorithm {
             }
         }
     }
+
+    /**
+     * Watkins's Q(&lambda;) over tile codings. Traces are kept per tile-action and cut whenever an exploratory action
+     * is selected.
+     */
+    public static class QLambda extends Q {
+        protected double            lambda;
+        protected EligibilityTraces traces;
+
+        @Override
+        public void setConfiguration(Configuration cfg) {
+            super.setConfiguration(cfg);
+
+            lambda = cfg.getDouble("LearningAlgorithm.TileCode.Lambda");
+            traces = new EligibilityTraces(
+                    EligibilityTraces.Type.valueOf(cfg.getString("LearningAlgorithm.TileCode.Traces").toUpperCase()),
+                    cfg.getDouble("LearningAlgorithm.TileCode.TraceThreshold")
+            );
+        }
+
+        @Override
+        public void commence(Environment environment) {
+            super.commence(environment);
+            traces.clear();
+        }
+
+        @Override
+        public void conclude() {
+            traces.clear();
+        }
+
+        @Override
+        public void clearTransitions() {
+            traces.clear();
+        }
+
+        @Override
+        public int select(State state, int time, boolean greedy) {
+            // Get all the tiles of this state representation
+            int[]    tiles   = tc.tiles((ContinuousState) state);
+            double[] qValues = qValues(tiles, nTilings, state.availableActions());
+
+            // Select the action, cutting the traces if it is exploratory
+            int action = greedy ? Argmax.select(qValues) : strategy.select(qValues, time);
+            if (qValues[action] < Argmax.max(qValues)) {
+                traces.clear();
+            }
+
+            return action;
+        }
+
+        @Override
+        public void update(State s, int a, State s_, double r) {
+            int nActions = s.availableActions();
+
+            // Find tiles
+            int[] prevTiles = tc.tiles((ContinuousState) s);
+            int[] nextTiles = tc.tiles((ContinuousState) s_);
+
+            // Perform calculations
+            double m     = nTilings;
+            double Qsa   = qValues(prevTiles, nTilings, nActions)[a];
+            double Qs_a_ = Argmax.max(qValues(nextTiles, nTilings, s_.availableActions()));
+            double error = r + (gamma * Qs_a_) - Qsa;
+
+            // Update every eligible tile-action then decay the traces
+            for (int i = 0; i < nTilings; i++) {
+                traces.visit(prevTiles[i], a);
+            }
+            traces.apply(qTable, (alpha / m) * error, nActions);
+            traces.decay(gamma * lambda);
+        }
+    }
+
+    /**
+     * SARSA(&lambda;) over tile codings. Traces are kept per tile-action.
+     */
+    public static class SarsaLambda extends Sarsa {
+        protected double            lambda;
+        protected EligibilityTraces traces;
+
+        @Override
+        public void setConfiguration(Configuration cfg) {
+            super.setConfiguration(cfg);
+
+            lambda = cfg.getDouble("LearningAlgorithm.TileCode.Lambda");
+            traces = new EligibilityTraces(
+                    EligibilityTraces.Type.valueOf(cfg.getString("LearningAlgorithm.TileCode.Traces").toUpperCase()),
+                    cfg.getDouble("LearningAlgorithm.TileCode.TraceThreshold")
+            );
+        }
+
+        @Override
+        public void conclude() {
+            traces.clear();
+        }
+
+        @Override
+        public void clearTransitions() {
+            super.clearTransitions();
+            if (traces != null) {
+                traces.clear();
+            }
+        }
+
+        @Override
+        public void update(State s, int a, State s_, double r) {
+            int nActions = s.availableActions();
+
+            // Find tiles
+            int[] prevTiles = tc.tiles((ContinuousState) s);
+
+            // Perform calculations
+            double m     = nTilings;
+            double Qsa   = qValues(prevTiles, nTilings, nActions)[a];
+            double Qs_a_ = s_ != null ? selectPotential(s_, time) : 0.0d;
+            double error = r + (gamma * Qs_a_) - Qsa;
+
+            // Update every eligible tile-action then decay the traces
+            for (int i = 0; i < nTilings; i++) {
+                traces.visit(prevTiles[i], a);
+            }
+            traces.apply(qTable, (alpha / m) * error, nActions);
+            traces.decay(gamma * lambda);
+        }
+    }
 }
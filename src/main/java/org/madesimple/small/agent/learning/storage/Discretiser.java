@@ -0,0 +1,116 @@
+package org.madesimple.small.agent.learning.storage;
+
+import org.madesimple.small.environment.ContinuousEnvironment;
+import org.madesimple.small.environment.ContinuousState;
+import org.madesimple.small.utility.Configurable;
+import org.madesimple.small.utility.Configuration;
+
+/**
+ * <p>
+ * A Discretiser divides the bounded feature space of a {@link ContinuousEnvironment} into a uniform grid and maps
+ * each continuous state to the index of the cell it falls in. Feature <em>i</em> is split into <em>Bins[i]</em>
+ * equal intervals between its lower and upper bound; values outside the bounds are clamped to the first or last
+ * interval. Cells are numbered in mixed radix, so the indices run from 0 to {@link #size()} - 1 and can be used as
+ * row keys of a dense table.
+ * </p>
+ * <p>
+ * If a single bin count is given it is used for every feature; otherwise there must be one per feature.
+ * </p>
+ * <pre>
+ * Discretiser.Bins = 20,20
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class Discretiser implements Configurable {
+    private int[] configured;
+
+    /**
+     * Number of intervals of each feature.
+     */
+    private int[] bins;
+
+    /**
+     * Lower bound of each feature.
+     */
+    private double[] lowerBounds;
+
+    /**
+     * Number of intervals per unit of each feature.
+     */
+    private double[] scales;
+
+    /**
+     * Place value of each feature in the mixed radix cell index.
+     */
+    private int[] strides;
+
+    /**
+     * Number of cells in the grid.
+     */
+    private int size;
+
+    @Override
+    public void setConfiguration(Configuration cfg) {
+        configured = cfg.getIntegerArray("Discretiser.Bins");
+    }
+
+    /**
+     * Fit the grid to the bounds of <em>environment</em>.
+     *
+     * @param environment environment to discretise
+     */
+    public void initialise(ContinuousEnvironment environment) {
+        int      nFeatures = environment.countBounds();
+        double[] lower     = environment.lowerBounds();
+        double[] upper     = environment.upperBounds();
+        if (configured.length != 1 && configured.length != nFeatures) {
+            throw new RuntimeException("Discretiser.Bins gives " + configured.length + " bin counts for " + nFeatures +
+                                       " features; give one, or one per feature");
+        }
+
+        bins = new int[nFeatures];
+        lowerBounds = new double[nFeatures];
+        scales = new double[nFeatures];
+        strides = new int[nFeatures];
+
+        long cells = 1;
+        for (int i = nFeatures - 1; i >= 0; i--) {
+            bins[i] = Math.max(1, configured.length == 1 ? configured[0] : configured[i]);
+            lowerBounds[i] = lower[i];
+            scales[i] = upper[i] > lower[i] ? bins[i] / (upper[i] - lower[i]) : 0.0d;
+            strides[i] = (int) cells;
+            cells *= bins[i];
+            if (cells > Integer.MAX_VALUE) {
+                throw new RuntimeException("Discretised state space is too large: " + cells + " cells");
+            }
+        }
+        size = (int) cells;
+    }
+
+    /**
+     * @param state state to discretise
+     * @return Index of the cell <em>state</em> falls in
+     */
+    public int index(ContinuousState state) {
+        int index = 0;
+        for (int i = 0; i < bins.length; i++) {
+            int bin = (int) ((state.tuple(i) - lowerBounds[i]) * scales[i]);
+            if (bin < 0) {
+                bin = 0;
+            } else if (bin >= bins[i]) {
+                bin = bins[i] - 1;
+            }
+            index += bin * strides[i];
+        }
+
+        return index;
+    }
+
+    /**
+     * @return Number of cells in the grid
+     */
+    public int size() {
+        return size;
+    }
+}
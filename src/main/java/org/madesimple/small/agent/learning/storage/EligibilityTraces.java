@@ -0,0 +1,143 @@
+package org.madesimple.small.agent.learning.storage;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Eligibility Traces keeps the eligibility of recently visited state-action pairs as a compact sparse set: parallel
+ * primitive arrays of state keys, actions and trace values. Traces are decayed after every update and pruned once they
+ * fall below a threshold, so an update only touches the state-actions that were visited recently rather than the whole
+ * Q-Table.
+ * </p>
+ * <p>
+ * Two types of trace are supported:
+ * </p>
+ * <dl>
+ * <dt>Replacing</dt><dd>a visit sets the trace to 1</dd>
+ * <dt>Accumulating</dt><dd>a visit adds 1 to the trace</dd>
+ * </dl>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class EligibilityTraces {
+
+    public enum Type {
+        REPLACING, ACCUMULATING
+    }
+
+    private Type     type;
+    private double   threshold;
+    private int[]    states;
+    private int[]    actions;
+    private double[] values;
+    private int      size;
+
+    /**
+     * @param type      Type of trace
+     * @param threshold Traces below this value are removed
+     */
+    public EligibilityTraces(Type type, double threshold) {
+        this.type = type;
+        this.threshold = threshold;
+        this.states = new int[64];
+        this.actions = new int[64];
+        this.values = new double[64];
+        clear();
+    }
+
+    /**
+     * Remove all traces.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return Number of active traces
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Mark <em>action</em> in <em>state</em> as visited.
+     *
+     * @param state  Row key of the state
+     * @param action Action performed
+     */
+    public void visit(int state, int action) {
+        for (int i = 0; i < size; i++) {
+            if (states[i] == state && actions[i] == action) {
+                values[i] = type == Type.ACCUMULATING ? values[i] + 1.0d : 1.0d;
+                return;
+            }
+        }
+
+        if (size == states.length) {
+            states = Arrays.copyOf(states, size * 2);
+            actions = Arrays.copyOf(actions, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        states[size] = state;
+        actions[size] = action;
+        values[size] = 1.0d;
+        size++;
+    }
+
+    /**
+     * Add <em>step</em> multiplied by its trace to the value of every eligible state-action in <em>qTable</em>.
+     *
+     * @param qTable   Q-Table to update
+     * @param step     Step size multiplied by the TD error
+     * @param nActions Number of columns
+     */
+    public void apply(QTable qTable, double step, int nActions) {
+        for (int i = 0; i < size; i++) {
+            double oldQ = qTable.get(states[i], nActions)[actions[i]];
+            qTable.put(states[i], actions[i], oldQ + step * values[i], nActions);
+        }
+    }
+
+    /**
+     * Multiply every trace by <em>factor</em> and remove those that fall below the threshold.
+     *
+     * @param factor Decay factor, normally gamma * lambda
+     */
+    public void decay(double factor) {
+        for (int i = 0; i < size; ) {
+            values[i] *= factor;
+            if (values[i] < threshold) {
+                size--;
+                states[i] = states[size];
+                actions[i] = actions[size];
+                values[i] = values[size];
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * @param i Index of the active trace
+     * @return Row key of the state
+     */
+    public int state(int i) {
+        return states[i];
+    }
+
+    /**
+     * @param i Index of the active trace
+     * @return Action
+     */
+    public int action(int i) {
+        return actions[i];
+    }
+
+    /**
+     * @param i Index of the active trace
+     * @return Trace value
+     */
+    public double value(int i) {
+        return values[i];
+    }
+}
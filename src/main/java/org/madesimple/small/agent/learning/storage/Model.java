@@ -0,0 +1,152 @@
+package org.madesimple.small.agent.learning.storage;
+
+import org.madesimple.small.utility.Configurable;
+import org.madesimple.small.utility.Configuration;
+import org.madesimple.small.utility.RandomStream;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * A Model is a learnt model of an environment's dynamics, built from the transitions an agent experiences, that a
+ * planning algorithm can use to simulate experience. States are identified by their Q-Table row key. Every observed
+ * state-action is given a dense index; how the outcome of a state-action is stored and simulated is decided by the
+ * extending class.
+ * </p>
+ * <p>
+ * All public methods are synchronised so that the model can be recorded to by one thread whilst another plans from it.
+ * </p>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public abstract class Model implements Configurable {
+
+    /**
+     * A simulated transition. Planners should hold and reuse a single instance.
+     */
+    public static class Outcome {
+        public int     state;
+        public int     action;
+        public double  reward;
+        public int     next;
+        public boolean terminal;
+    }
+
+    private   Map<Long, Integer> index;
+    protected int[]              states;
+    protected int[]              actions;
+    protected int                size;
+    protected RandomStream       random;
+
+    public Model() {
+        index = new HashMap<>();
+        reset();
+    }
+
+    @Override
+    public void setConfiguration(Configuration cfg) {
+        // Nothing to do...
+    }
+
+    /**
+     * Forget everything the model has learnt.
+     */
+    public synchronized void reset() {
+        index.clear();
+        states = new int[64];
+        actions = new int[64];
+        size = 0;
+        random = RandomStream.current();
+        resize(64);
+    }
+
+    /**
+     * @return Number of observed state-actions
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Record an observed transition.
+     *
+     * @param s        Row key of the state where the action was performed
+     * @param a        Action performed
+     * @param r        Numeric amount
+     * @param s_       Row key of the state transitioned to
+     * @param terminal True if <em>s_</em> is terminal
+     */
+    public synchronized void record(int s, int a, double r, int s_, boolean terminal) {
+        long    pair = ((long) s << 32) | (a & 0xffffffffL);
+        Integer i    = index.get(pair);
+        if (i == null) {
+            if (size == states.length) {
+                states = Arrays.copyOf(states, size * 2);
+                actions = Arrays.copyOf(actions, size * 2);
+                resize(size * 2);
+            }
+            i = size++;
+            index.put(pair, i);
+            states[i] = s;
+            actions[i] = a;
+            added(i);
+        }
+
+        record(i, r, s_, terminal);
+    }
+
+    /**
+     * Simulate a transition from a uniformly chosen observed state-action.
+     *
+     * @param out Outcome to write the simulated transition into
+     * @return True if a transition was simulated, false if nothing has been observed
+     */
+    public synchronized boolean sample(Outcome out) {
+        if (size == 0) {
+            return false;
+        }
+
+        int i = random.nextInt(size);
+        out.state = states[i];
+        out.action = actions[i];
+        simulate(i, out);
+
+        return true;
+    }
+
+    /**
+     * Grow the outcome storage to hold <em>capacity</em> state-actions.
+     *
+     * @param capacity Number of state-actions
+     */
+    protected abstract void resize(int capacity);
+
+    /**
+     * Called when a state-action is first observed and given index <em>i</em>.
+     *
+     * @param i Index of the state-action
+     */
+    protected void added(int i) {
+    }
+
+    /**
+     * Record the outcome of the state-action with index <em>i</em>.
+     *
+     * @param i        Index of the state-action
+     * @param r        Numeric amount
+     * @param s_       Row key of the state transitioned to
+     * @param terminal True if <em>s_</em> is terminal
+     */
+    protected abstract void record(int i, double r, int s_, boolean terminal);
+
+    /**
+     * Write a simulated reward, next state and terminal flag for the state-action with index <em>i</em> into
+     * <em>out</em>.
+     *
+     * @param i   Index of the state-action
+     * @param out Outcome to write into
+     */
+    protected abstract void simulate(int i, Outcome out);
+}
@@ -1,5 +1,8 @@
 package org.madesimple.small.agent.learning.storage;
 
+import org.madesimple.small.environment.Environment;
+import org.madesimple.small.environment.State;
+
 import java.io.File;
 
 /**
@@ -18,6 +21,20 @@ public interface QTable {
      */
     void reset();
 
+    /**
+     * Prepare the Q-Table for <em>environment</em>. Tables that size themselves from the environment should do so
+     * here; existing entries must persist if it is called again.
+     *
+     * @param environment Environment the table will be used in
+     */
+    void initialise(Environment environment);
+
+    /**
+     * @param state State to find the row of
+     * @return Row of <em>state</em>
+     */
+    int key(State state);
+
     /**
      *
      * @param state    Row to update
@@ -27,6 +44,17 @@ public interface QTable {
      */
     void put(int state, int action, double value, int nActions);
 
+    /**
+     * Tell the table that an update of the values of <em>state</em>, whose row is <em>key</em>, changed one of them by
+     * <em>change</em>. Tables that adapt to where their values change override this; the default ignores it.
+     *
+     * @param key    Row updated
+     * @param state  State the row was updated for
+     * @param change Change in value
+     */
+    default void observe(int key, State state, double change) {
+    }
+
     /**
      *
      * @param state    Row to get
@@ -35,6 +63,14 @@ public interface QTable {
      */
     double[] get(int state, int nActions);
 
+    /**
+     * Copy the Q-Table, including any binding to an environment, so that the copy can be read and updated
+     * independently of the original.
+     *
+     * @return Deep copy of the Q-Table
+     */
+    QTable copy();
+
     /**
      * Load the strategy stored in <em>file</em>.
      *
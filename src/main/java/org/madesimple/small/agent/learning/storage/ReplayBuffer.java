@@ -0,0 +1,214 @@
+package org.madesimple.small.agent.learning.storage;
+
+import org.madesimple.small.utility.Configurable;
+import org.madesimple.small.utility.Configuration;
+import org.madesimple.small.utility.RandomStream;
+
+/**
+ * <p>
+ * A Replay Buffer is a fixed capacity ring of transitions that a learning algorithm can sample from to repeat its
+ * updates. Transitions are held in parallel primitive arrays, one slot per transition, so adding and sampling does not
+ * create any objects. A transition is either keyed by the Q-Table row of its states or, for continuous environments,
+ * by copies of their feature vectors.
+ * </p>
+ * <pre>
+ * ReplayBuffer.Capacity = 100000
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public abstract class ReplayBuffer implements Configurable {
+    protected int          capacity;
+    protected int          nFeatures;
+    protected int[]        states;
+    protected int[]        actions;
+    protected double[]     rewards;
+    protected int[]        nextStates;
+    protected boolean[]    terminals;
+    protected double[]     features;
+    protected double[]     nextFeatures;
+    protected int          next;
+    protected int          size;
+    protected RandomStream random;
+
+    public ReplayBuffer() {
+    }
+
+    @Override
+    public void setConfiguration(Configuration cfg) {
+        capacity = cfg.getInteger("ReplayBuffer.Capacity");
+    }
+
+    /**
+     * Allocate the buffer and forget all transitions.
+     *
+     * @param nFeatures Number of features per state, 0 if transitions are only keyed
+     */
+    public void initialise(int nFeatures) {
+        this.nFeatures = nFeatures;
+        states = new int[capacity];
+        actions = new int[capacity];
+        rewards = new double[capacity];
+        nextStates = new int[capacity];
+        terminals = new boolean[capacity];
+        features = new double[capacity * nFeatures];
+        nextFeatures = new double[capacity * nFeatures];
+        next = 0;
+        size = 0;
+        random = RandomStream.current();
+    }
+
+    /**
+     * @return True if {@link #initialise(int)} has been called
+     */
+    public boolean isInitialised() {
+        return states != null;
+    }
+
+    /**
+     * Add a keyed transition, overwriting the oldest once the buffer is full.
+     *
+     * @param s        Row key of the state where the action was performed
+     * @param a        Action performed
+     * @param r        Numeric amount
+     * @param s_       Row key of the state transitioned to
+     * @param terminal True if <em>s_</em> is terminal
+     * @return Slot of the transition
+     */
+    public int add(int s, int a, double r, int s_, boolean terminal) {
+        int slot = next;
+        states[slot] = s;
+        actions[slot] = a;
+        rewards[slot] = r;
+        nextStates[slot] = s_;
+        terminals[slot] = terminal;
+
+        next = (next + 1) % capacity;
+        size = Math.min(capacity, size + 1);
+        added(slot);
+
+        return slot;
+    }
+
+    /**
+     * Add a transition described by feature vectors, overwriting the oldest once the buffer is full.
+     *
+     * @param s        Features of the state where the action was performed
+     * @param a        Action performed
+     * @param r        Numeric amount
+     * @param s_       Features of the state transitioned to
+     * @param terminal True if <em>s_</em> is terminal
+     * @return Slot of the transition
+     */
+    public int add(double[] s, int a, double r, double[] s_, boolean terminal) {
+        System.arraycopy(s, 0, features, next * nFeatures, nFeatures);
+        System.arraycopy(s_, 0, nextFeatures, next * nFeatures, nFeatures);
+
+        return add(0, a, r, 0, terminal);
+    }
+
+    /**
+     * Mark the transition in <em>slot</em> as arriving in a terminal state.
+     *
+     * @param slot Slot of the transition
+     */
+    public void terminate(int slot) {
+        terminals[slot] = true;
+    }
+
+    /**
+     * Called once a transition has been written to <em>slot</em>.
+     *
+     * @param slot Slot of the transition
+     */
+    protected void added(int slot) {
+    }
+
+    /**
+     * Fill <em>slots</em> with up to <em>n</em> sampled transitions and <em>weights</em> with the importance weight of
+     * each.
+     *
+     * @param slots   Sampled slots
+     * @param weights Importance weight of each sampled slot
+     * @param n       Number of samples wanted
+     * @return Number of samples taken
+     */
+    public abstract int sample(int[] slots, double[] weights, int n);
+
+    /**
+     * Inform the buffer of the TD error of the transition in <em>slot</em> after it has been replayed.
+     *
+     * @param slot  Slot of the transition
+     * @param error TD error
+     */
+    public void update(int slot, double error) {
+    }
+
+    /**
+     * @return Number of transitions held
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Maximum number of transitions held
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    public int state(int slot) {
+        return states[slot];
+    }
+
+    public int action(int slot) {
+        return actions[slot];
+    }
+
+    public double reward(int slot) {
+        return rewards[slot];
+    }
+
+    public int nextState(int slot) {
+        return nextStates[slot];
+    }
+
+    public boolean isTerminal(int slot) {
+        return terminals[slot];
+    }
+
+    /**
+     * @param slot Slot of the transition
+     * @param out  Array to copy the features of the state into
+     */
+    public void features(int slot, double[] out) {
+        features(slot, out, 0);
+    }
+
+    /**
+     * @param slot Slot of the transition
+     * @param out  Array to copy the features of the state into
+     * @param from Index in <em>out</em> of the first feature
+     */
+    public void features(int slot, double[] out, int from) {
+        System.arraycopy(features, slot * nFeatures, out, from, nFeatures);
+    }
+
+    /**
+     * @param slot Slot of the transition
+     * @param out  Array to copy the features of the next state into
+     */
+    public void nextFeatures(int slot, double[] out) {
+        nextFeatures(slot, out, 0);
+    }
+
+    /**
+     * @param slot Slot of the transition
+     * @param out  Array to copy the features of the next state into
+     * @param from Index in <em>out</em> of the first feature
+     */
+    public void nextFeatures(int slot, double[] out, int from) {
+        System.arraycopy(nextFeatures, slot * nFeatures, out, from, nFeatures);
+    }
+}
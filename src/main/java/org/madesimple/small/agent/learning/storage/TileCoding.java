@@ -4,12 +4,14 @@ import org.madesimple.small.environment.ContinuousEnvironment;
 import org.madesimple.small.environment.ContinuousState;
 import org.madesimple.small.utility.Configurable;
 import org.madesimple.small.utility.Configuration;
+import org.madesimple.small.utility.RandomStream;
 
 /**
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
 public abstract class TileCoding implements Configurable {
-    protected int nTilings;
+    protected int          nTilings;
+    protected RandomStream random;
 
     public TileCoding() {
     }
@@ -17,9 +19,45 @@ public abstract class TileCoding implements Configurable {
     @Override
     public void setConfiguration(Configuration cfg) {
         nTilings = cfg.getInteger("TileCoding.NumTilings");
+        random = RandomStream.current();
     }
 
     public abstract void initialise(ContinuousEnvironment environment);
 
-    public abstract int[] tiles(ContinuousState state);
+    /**
+     * Copy the tile coding, including its geometry as last initialised, so that the copy can tile states on another
+     * thread whilst the original is initialised again. A copy that is itself initialised again draws from the stream
+     * bound to the thread that took the copy.
+     *
+     * @return Deep copy of the tile coding
+     */
+    public abstract TileCoding copy();
+
+    public int[] tiles(ContinuousState state) {
+        return tiles(state.tuple());
+    }
+
+    /**
+     * @param tuple Features of a state
+     * @return Tiles the state falls in, one per tiling
+     */
+    public abstract int[] tiles(double[] tuple);
+
+    /**
+     * Tile a batch of states. The features of state <em>s</em> are
+     * <code>features[s * nFeatures, (s + 1) * nFeatures)</code> and its tiles are written to
+     * <code>out[s * nTilings, (s + 1) * nTilings)</code>.
+     *
+     * @param features  Features of the states, one state after another
+     * @param nFeatures Number of features per state
+     * @param nStates   Number of states
+     * @param out       Array to write the tiles into
+     */
+    public void tiles(double[] features, int nFeatures, int nStates, int[] out) {
+        double[] tuple = new double[nFeatures];
+        for (int s = 0; s < nStates; s++) {
+            System.arraycopy(features, s * nFeatures, tuple, 0, nFeatures);
+            System.arraycopy(tiles(tuple), 0, out, s * nTilings, nTilings);
+        }
+    }
 }
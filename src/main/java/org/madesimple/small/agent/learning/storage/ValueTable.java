@@ -51,7 +51,7 @@ public class ValueTable {
     }
 
     public boolean save(File file) {
-        try (PrintStream ps = new PrintStream(file)) {
+        try (PrintStream ps = new PrintStream(new BufferedOutputStream(new FileOutputStream(file)))) {
             for (int key : table.keySet()) {
                 ps.printf("%d\t%f", key, table.get(key));
                 ps.println();
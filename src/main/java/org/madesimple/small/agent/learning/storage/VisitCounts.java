@@ -0,0 +1,148 @@
+package org.madesimple.small.agent.learning.storage;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Visit Counts records how many times each action has been taken in each state, keyed by the same row keys as a
+ * {@link QTable}. Rows are found through an open addressing hash of the state keys and the counts of every row are
+ * kept in a single flat array, so once the table has grown to hold the states visited, looking up and counting a
+ * visit does not allocate.
+ * </p>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class VisitCounts {
+    private static final int EMPTY = -1;
+
+    /**
+     * Hash slots holding the state key and row index of each row.
+     */
+    private int[] slotKeys;
+    private int[] slotRows;
+
+    /**
+     * Offset into {@link #counts} and total count of each row.
+     */
+    private int[] offsets;
+    private int[] totals;
+    private int[] counts;
+    private int   nRows;
+    private int   nCounts;
+
+    public VisitCounts() {
+        reset();
+    }
+
+    /**
+     * Forget every visit.
+     */
+    public void reset() {
+        slotKeys = new int[64];
+        slotRows = new int[64];
+        Arrays.fill(slotRows, EMPTY);
+        offsets = new int[32];
+        totals = new int[32];
+        counts = new int[128];
+        nRows = 0;
+        nCounts = 0;
+    }
+
+    /**
+     * @param state    Row key of the state
+     * @param nActions Number of actions available in the state
+     * @return Row index of the state, created if the state has not been seen
+     */
+    public int row(int state, int nActions) {
+        int mask = slotKeys.length - 1;
+        int slot = mix(state) & mask;
+        while (slotRows[slot] != EMPTY) {
+            if (slotKeys[slot] == state) {
+                return slotRows[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // Add the row
+        if (nRows == offsets.length) {
+            offsets = Arrays.copyOf(offsets, nRows * 2);
+            totals = Arrays.copyOf(totals, nRows * 2);
+        }
+        while (nCounts + nActions > counts.length) {
+            counts = Arrays.copyOf(counts, counts.length * 2);
+        }
+        int row = nRows++;
+        offsets[row] = nCounts;
+        totals[row] = 0;
+        nCounts += nActions;
+
+        slotKeys[slot] = state;
+        slotRows[slot] = row;
+        if (2 * nRows > slotKeys.length) {
+            rehash();
+        }
+
+        return row;
+    }
+
+    /**
+     * @param row    Row index
+     * @param action Action
+     * @return Number of times <em>action</em> has been taken in the state of <em>row</em>
+     */
+    public int count(int row, int action) {
+        return counts[offsets[row] + action];
+    }
+
+    /**
+     * @param row Row index
+     * @return Number of times any action has been taken in the state of <em>row</em>
+     */
+    public int total(int row) {
+        return totals[row];
+    }
+
+    /**
+     * Count a visit to <em>action</em> in the state of <em>row</em>.
+     *
+     * @param row    Row index
+     * @param action Action
+     */
+    public void increment(int row, int action) {
+        counts[offsets[row] + action]++;
+        totals[row]++;
+    }
+
+    /**
+     * @return Number of states seen
+     */
+    public int size() {
+        return nRows;
+    }
+
+    private void rehash() {
+        int[] oldKeys = slotKeys;
+        int[] oldRows = slotRows;
+
+        slotKeys = new int[oldKeys.length * 2];
+        slotRows = new int[oldRows.length * 2];
+        Arrays.fill(slotRows, EMPTY);
+
+        int mask = slotKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldRows[i] != EMPTY) {
+                int slot = mix(oldKeys[i]) & mask;
+                while (slotRows[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                slotKeys[slot] = oldKeys[i];
+                slotRows[slot] = oldRows[i];
+            }
+        }
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,83 @@
+package org.madesimple.small.agent.learning.storage.model;
+
+import org.madesimple.small.agent.learning.storage.Model;
+
+import java.util.Arrays;
+
+/**
+ * Counts the outcomes of each state-action: the simulated reward is the mean observed reward and the simulated next
+ * state is drawn in proportion to how often it was observed.
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class CountBased extends Model {
+    private double[]    rewardSums;
+    private int[]       totals;
+    private int[]       nNexts;
+    private int[][]     nexts;
+    private int[][]     counts;
+    private boolean[][] terminals;
+
+    public CountBased() {
+        super();
+    }
+
+    @Override
+    protected void resize(int capacity) {
+        rewardSums = rewardSums == null ? new double[capacity] : Arrays.copyOf(rewardSums, capacity);
+        totals = totals == null ? new int[capacity] : Arrays.copyOf(totals, capacity);
+        nNexts = nNexts == null ? new int[capacity] : Arrays.copyOf(nNexts, capacity);
+        nexts = nexts == null ? new int[capacity][] : Arrays.copyOf(nexts, capacity);
+        counts = counts == null ? new int[capacity][] : Arrays.copyOf(counts, capacity);
+        terminals = terminals == null ? new boolean[capacity][] : Arrays.copyOf(terminals, capacity);
+    }
+
+    @Override
+    protected void added(int i) {
+        rewardSums[i] = 0.0d;
+        totals[i] = 0;
+        nNexts[i] = 0;
+        nexts[i] = new int[2];
+        counts[i] = new int[2];
+        terminals[i] = new boolean[2];
+    }
+
+    @Override
+    protected void record(int i, double r, int s_, boolean terminal) {
+        rewardSums[i] += r;
+        totals[i]++;
+
+        // Count the next state
+        for (int j = 0; j < nNexts[i]; j++) {
+            if (nexts[i][j] == s_) {
+                counts[i][j]++;
+                terminals[i][j] = terminal;
+                return;
+            }
+        }
+        if (nNexts[i] == nexts[i].length) {
+            nexts[i] = Arrays.copyOf(nexts[i], nNexts[i] * 2);
+            counts[i] = Arrays.copyOf(counts[i], nNexts[i] * 2);
+            terminals[i] = Arrays.copyOf(terminals[i], nNexts[i] * 2);
+        }
+        nexts[i][nNexts[i]] = s_;
+        counts[i][nNexts[i]] = 1;
+        terminals[i][nNexts[i]] = terminal;
+        nNexts[i]++;
+    }
+
+    @Override
+    protected void simulate(int i, Outcome out) {
+        out.reward = rewardSums[i] / totals[i];
+
+        int draw = random.nextInt(totals[i]);
+        for (int j = 0; j < nNexts[i]; j++) {
+            draw -= counts[i][j];
+            if (draw < 0) {
+                out.next = nexts[i][j];
+                out.terminal = terminals[i][j];
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.madesimple.small.agent.learning.storage.model;
+
+import org.madesimple.small.agent.learning.storage.Model;
+
+import java.util.Arrays;
+
+/**
+ * Assumes the environment is deterministic: each state-action simulates the last outcome that was observed for it.
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class Deterministic extends Model {
+    private double[]  rewards;
+    private int[]     nexts;
+    private boolean[] terminals;
+
+    public Deterministic() {
+        super();
+    }
+
+    @Override
+    protected void resize(int capacity) {
+        rewards = rewards == null ? new double[capacity] : Arrays.copyOf(rewards, capacity);
+        nexts = nexts == null ? new int[capacity] : Arrays.copyOf(nexts, capacity);
+        terminals = terminals == null ? new boolean[capacity] : Arrays.copyOf(terminals, capacity);
+    }
+
+    @Override
+    protected void record(int i, double r, int s_, boolean terminal) {
+        rewards[i] = r;
+        nexts[i] = s_;
+        terminals[i] = terminal;
+    }
+
+    @Override
+    protected void simulate(int i, Outcome out) {
+        out.reward = rewards[i];
+        out.next = nexts[i];
+        out.terminal = terminals[i];
+    }
+}
@@ -1,6 +1,8 @@
 package org.madesimple.small.agent.learning.storage.qtable;
 
 import org.madesimple.small.agent.learning.storage.QTable;
+import org.madesimple.small.environment.Environment;
+import org.madesimple.small.environment.State;
 
 import java.io.*;
 import java.util.Arrays;
@@ -73,6 +75,14 @@ public class ActionValueTable implements QTable {
         table.clear();
     }
 
+    public void initialise(Environment environment) {
+        // Nothing to do...
+    }
+
+    public int key(State state) {
+        return state.hashCode();
+    }
+
     public void put(int state, int action, double value) {
         table.get(state).values[action] = value;
     }
@@ -89,7 +99,8 @@ public class ActionValueTable implements QTable {
     }
 
     public double[] get(int state) {
-        return table.get(state).values;
+        ActionValues actionValues = table.get(state);
+        return actionValues != null ? actionValues.values : null;
     }
 
     public double[] get(int state, int nActions) {
@@ -103,6 +114,18 @@ public class ActionValueTable implements QTable {
         return actionValues.values;
     }
 
+    public ActionValueTable copy() {
+        ActionValueTable copy = new ActionValueTable(table.size());
+        copy.initialValue = initialValue;
+        for (Map.Entry<Integer, ActionValues> entry : table.entrySet()) {
+            ActionValues actionValues = new ActionValues(0, initialValue);
+            actionValues.values = entry.getValue().values.clone();
+            copy.table.put(entry.getKey(), actionValues);
+        }
+
+        return copy;
+    }
+
     /**
      * <p>
      * Writes the contents of the table to <em>file</em>. Overwrites existing data.
@@ -116,7 +139,7 @@ public class ActionValueTable implements QTable {
      * @return True on success, false on failure
      */
     public boolean save(File file) {
-        try (PrintStream ps = new PrintStream(file)) {
+        try (PrintStream ps = new PrintStream(new BufferedOutputStream(new FileOutputStream(file)))) {
             for (int key : table.keySet()) {
                 ps.print(key);
                 for (double value : table.get(key).values) {
@@ -0,0 +1,144 @@
+package org.madesimple.small.agent.learning.storage.qtable;
+
+import org.madesimple.small.agent.learning.storage.QTable;
+import org.madesimple.small.environment.Environment;
+import org.madesimple.small.environment.State;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>
+ * Concurrent Action Value Table is an {@link ActionValueTable} that can be read and updated by several threads at
+ * once, for example an agent acting in its environment whilst a planner updates the same table in the background.
+ * </p>
+ * <p>
+ * Rows are created atomically, but updates to a value are not: if two threads update the same entry at the same time
+ * one of the updates may be lost. Asynchronous learning algorithms tolerate this.
+ * </p>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class ConcurrentActionValueTable implements QTable {
+    /**
+     * Initial value entries will receive.
+     */
+    private volatile double initialValue;
+
+    /**
+     * Mapping of state has to action-value pairs.
+     */
+    private Map<Integer, double[]> table;
+
+    public ConcurrentActionValueTable() {
+        this(10);
+    }
+
+    public ConcurrentActionValueTable(int nStates) {
+        table = new ConcurrentHashMap<>(nStates);
+        reset();
+    }
+
+    @Override
+    public void setInitialValue(double initialValue) {
+        this.initialValue = initialValue;
+    }
+
+    @Override
+    public void reset() {
+        table.clear();
+    }
+
+    @Override
+    public void initialise(Environment environment) {
+        // Nothing to do...
+    }
+
+    @Override
+    public int key(State state) {
+        return state.hashCode();
+    }
+
+    @Override
+    public void put(int state, int action, double value, int nActions) {
+        get(state, nActions)[action] = value;
+    }
+
+    @Override
+    public double[] get(int state, int nActions) {
+        double[] values = table.get(state);
+        if (values == null) {
+            values = table.computeIfAbsent(state, s -> {
+                double[] row = new double[nActions];
+                Arrays.fill(row, initialValue);
+                return row;
+            });
+        }
+
+        return values;
+    }
+
+    @Override
+    public ConcurrentActionValueTable copy() {
+        ConcurrentActionValueTable copy = new ConcurrentActionValueTable(table.size());
+        copy.initialValue = initialValue;
+        for (Map.Entry<Integer, double[]> entry : table.entrySet()) {
+            copy.table.put(entry.getKey(), entry.getValue().clone());
+        }
+
+        return copy;
+    }
+
+    /**
+     * Writes the contents of the table to <em>file</em> in the same format as {@link ActionValueTable#save(File)}.
+     *
+     * @param file file to save ConcurrentActionValueTable data
+     * @return True on success, false on failure
+     */
+    @Override
+    public boolean save(File file) {
+        try (PrintStream ps = new PrintStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            for (Map.Entry<Integer, double[]> entry : table.entrySet()) {
+                ps.print(entry.getKey());
+                for (double value : entry.getValue()) {
+                    ps.print("\t" + value);
+                }
+
+                ps.println();
+            }
+
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads from <em>file</em> in the same format as {@link ActionValueTable#load(File)}.
+     *
+     * @param file file to load ConcurrentActionValueTable
+     * @return True on success, false on failure
+     */
+    @Override
+    public boolean load(File file) {
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line;
+
+            while ((line = br.readLine()) != null) {
+                String[] parts  = line.split("\t");
+                double[] values = new double[parts.length - 1];
+
+                for (int i = 1; i < parts.length; i++) {
+                    values[i - 1] = Double.parseDouble(parts[i]);
+                }
+
+                table.put(Integer.parseInt(parts[0]), values);
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
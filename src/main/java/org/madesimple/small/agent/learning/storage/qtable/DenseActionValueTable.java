@@ -0,0 +1,370 @@
+package org.madesimple.small.agent.learning.storage.qtable;
+
+import org.madesimple.small.agent.learning.storage.Discretiser;
+import org.madesimple.small.agent.learning.storage.QTable;
+import org.madesimple.small.environment.ContinuousEnvironment;
+import org.madesimple.small.environment.ContinuousState;
+import org.madesimple.small.environment.DiscreteEnvironment;
+import org.madesimple.small.environment.DiscreteState;
+import org.madesimple.small.environment.Environment;
+import org.madesimple.small.environment.State;
+import org.madesimple.small.utility.Configurable;
+import org.madesimple.small.utility.Configuration;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Dense Action Value Table is an implementation of a Q-Table for environments whose state space is known up front.
+ * When the environment is a {@link DiscreteEnvironment} the table allocates one row of <code>nActions</code> values
+ * for every state up front and indexes each state by the mixed radix of its tuple, so a lookup is a multiply-add and
+ * an array load with no per-state allocation. As with {@link ActionValueTable}, {@link #get(int, int)} returns the
+ * live row of the state.
+ * </p>
+ * <p>
+ * The lower bounds of the environment are inclusive and the upper bounds exclusive, i.e. feature <em>i</em> takes
+ * <code>upperBounds()[i] - lowerBounds()[i]</code> values.
+ * </p>
+ * <p>
+ * When the environment is a {@link ContinuousEnvironment} and <em>Discretiser.Bins</em> is configured, states are
+ * mapped to the cells of a uniform grid by a {@link Discretiser} and the table holds one row per cell.
+ * </p>
+ * <p>
+ * Otherwise, or if the table is used before {@link #initialise(Environment)} is called, the table falls back to the
+ * hashed {@link ActionValueTable}. The choice is fixed on first use until the table is {@link #reset()}.
+ * </p>
+ * <pre>
+ * Discretiser.Bins = 20,20
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class DenseActionValueTable implements QTable, Configurable {
+    /**
+     * Initial value entries will receive.
+     */
+    private double initialValue;
+
+    /**
+     * Table used when the state space is not bounded.
+     */
+    private ActionValueTable hashed;
+
+    /**
+     * True once the table has decided whether it is dense or hashed.
+     */
+    private boolean bound;
+
+    /**
+     * True if the table is dense.
+     */
+    private boolean dense;
+
+    /**
+     * Inclusive lower bound of each feature.
+     */
+    private int[] lowerBounds;
+
+    /**
+     * Place value of each feature in the mixed radix state index.
+     */
+    private int[] strides;
+
+    /**
+     * Discretiser of continuous states, null if states are discrete.
+     */
+    private Discretiser discretiser;
+
+    /**
+     * Number of states in the bounded state space.
+     */
+    private int nStates;
+
+    /**
+     * Number of actions per state.
+     */
+    private int nActions;
+
+    /**
+     * Action values, one row per state.
+     */
+    private double[][] values;
+
+    /**
+     * Rows loaded before the table was bound.
+     */
+    private Map<Integer, double[]> loaded;
+
+    public DenseActionValueTable() {
+        hashed = new ActionValueTable();
+        loaded = new HashMap<>();
+        reset();
+    }
+
+    @Override
+    public void setConfiguration(Configuration cfg) {
+        discretiser = null;
+        if (cfg.hasProperty("Discretiser.Bins")) {
+            discretiser = new Discretiser();
+            discretiser.setConfiguration(cfg);
+        }
+    }
+
+    @Override
+    public void setInitialValue(double initialValue) {
+        this.initialValue = initialValue;
+        hashed.setInitialValue(initialValue);
+    }
+
+    @Override
+    public void reset() {
+        hashed.reset();
+        bound = false;
+        dense = false;
+        lowerBounds = null;
+        strides = null;
+        nStates = 0;
+        nActions = 0;
+        values = null;
+    }
+
+    @Override
+    public void initialise(Environment environment) {
+        if (bound) {
+            return;
+        }
+        bound = true;
+
+        if (environment instanceof ContinuousEnvironment && discretiser != null) {
+            discretiser.initialise((ContinuousEnvironment) environment);
+            this.nStates = discretiser.size();
+            this.dense = true;
+            return;
+        }
+        if (!(environment instanceof DiscreteEnvironment)) {
+            return;
+        }
+
+        DiscreteEnvironment discrete = (DiscreteEnvironment) environment;
+        int[]               lower    = discrete.lowerBounds();
+        int[]               upper    = discrete.upperBounds();
+        int[]               strides  = new int[discrete.countBounds()];
+        long                size     = 1;
+        for (int i = strides.length - 1; i >= 0; i--) {
+            strides[i] = (int) size;
+            size *= Math.max(1, upper[i] - lower[i]);
+            if (size > Integer.MAX_VALUE) {
+                return;
+            }
+        }
+
+        this.lowerBounds = lower;
+        this.strides = strides;
+        this.nStates = (int) size;
+        this.dense = true;
+    }
+
+    /**
+     * @return True if the table is indexing states by mixed radix or by discretised cell
+     */
+    public boolean isDense() {
+        return dense;
+    }
+
+    @Override
+    public int key(State state) {
+        bound = true;
+        if (!dense) {
+            return state.hashCode();
+        }
+        if (strides == null) {
+            return discretiser.index((ContinuousState) state);
+        }
+
+        DiscreteState discrete = (DiscreteState) state;
+        int           index    = 0;
+        for (int i = 0; i < strides.length; i++) {
+            index += (discrete.tuple(i) - lowerBounds[i]) * strides[i];
+        }
+
+        return index;
+    }
+
+    @Override
+    public void put(int state, int action, double value, int nActions) {
+        if (!dense) {
+            hashed.put(state, action, value, nActions);
+            return;
+        }
+
+        allocate(nActions);
+        values[state][action] = value;
+    }
+
+    @Override
+    public double[] get(int state, int nActions) {
+        if (!dense) {
+            return hashed.get(state, nActions);
+        }
+
+        allocate(nActions);
+        return values[state];
+    }
+
+    /**
+     * @param state  Row to get
+     * @param action Column to get
+     * @return Q Value of action in state
+     */
+    public double value(int state, int action) {
+        if (!dense) {
+            double[] row = hashed.get(state);
+            return row != null ? row[action] : initialValue;
+        }
+
+        return values != null && action < nActions ? values[state][action] : initialValue;
+    }
+
+    /**
+     * The copy shares the discretiser and the bounds, which are not changed once the table is bound.
+     */
+    @Override
+    public DenseActionValueTable copy() {
+        DenseActionValueTable copy = new DenseActionValueTable();
+        copy.initialValue = initialValue;
+        copy.hashed = hashed.copy();
+        copy.bound = bound;
+        copy.dense = dense;
+        copy.lowerBounds = lowerBounds;
+        copy.strides = strides;
+        copy.discretiser = discretiser;
+        copy.nStates = nStates;
+        copy.nActions = nActions;
+        if (values != null) {
+            copy.values = new double[nStates][];
+            for (int s = 0; s < nStates; s++) {
+                copy.values[s] = values[s].clone();
+            }
+        }
+        for (Map.Entry<Integer, double[]> entry : loaded.entrySet()) {
+            copy.loaded.put(entry.getKey(), entry.getValue().clone());
+        }
+
+        return copy;
+    }
+
+    /**
+     * Ensures every dense row has room for <em>nActions</em> columns, preserving existing values.
+     *
+     * @param nActions Number of columns
+     */
+    private void allocate(int nActions) {
+        if (nActions <= this.nActions) {
+            return;
+        }
+
+        double[][] values = new double[nStates][nActions];
+        for (int s = 0; s < nStates; s++) {
+            Arrays.fill(values[s], this.nActions, nActions, initialValue);
+            if (this.values != null) {
+                System.arraycopy(this.values[s], 0, values[s], 0, this.nActions);
+            }
+        }
+
+        this.values = values;
+        this.nActions = nActions;
+        applyLoaded();
+    }
+
+    /**
+     * Copies any rows read by {@link #load(File)} into the dense rows.
+     */
+    private void applyLoaded() {
+        for (Map.Entry<Integer, double[]> entry : loaded.entrySet()) {
+            int s = entry.getKey();
+            if (s >= 0 && s < nStates) {
+                double[] loadedRow = entry.getValue();
+                System.arraycopy(loadedRow, 0, values[s], 0, Math.min(nActions, loadedRow.length));
+            }
+        }
+        loaded.clear();
+    }
+
+    /**
+     * <p>
+     * Writes the contents of the table to <em>file</em> in the same format as {@link ActionValueTable#save(File)}. In
+     * dense mode the first column is the mixed radix index of the state or its discretised cell.
+     * </p>
+     *
+     * @param file file to save DenseActionValueTable data
+     * @return True on success, false on failure
+     */
+    @Override
+    public boolean save(File file) {
+        if (!dense) {
+            return hashed.save(file);
+        }
+
+        try (PrintStream ps = new PrintStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            for (int s = 0; s < nStates; s++) {
+                ps.print(s);
+                for (int a = 0; a < nActions; a++) {
+                    ps.print("\t" + values[s][a]);
+                }
+
+                ps.println();
+            }
+
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * <p>
+     * Reads from <em>file</em>. If the table has not been bound yet the rows are held until it is, and are then
+     * copied into the dense rows; otherwise they are written straight into the table.
+     * </p>
+     *
+     * @param file file to load DenseActionValueTable
+     * @return True on success, false on failure
+     */
+    @Override
+    public boolean load(File file) {
+        if (bound && !dense) {
+            return hashed.load(file);
+        }
+
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line;
+
+            while ((line = br.readLine()) != null) {
+                String[] parts     = line.split("\t");
+                int      key       = Integer.parseInt(parts[0]);
+                double[] loadedRow = new double[parts.length - 1];
+
+                for (int i = 1; i < parts.length; i++) {
+                    loadedRow[i - 1] = Double.parseDouble(parts[i]);
+                }
+
+                loaded.put(key, loadedRow);
+            }
+        } catch (IOException e) {
+            return false;
+        }
+
+        if (!bound) {
+            // Keep a hashed copy in case the table is never bound to a discrete environment
+            return hashed.load(file);
+        }
+        if (values != null) {
+            applyLoaded();
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,548 @@
+package org.madesimple.small.agent.learning.storage.qtable;
+
+import org.madesimple.small.agent.learning.storage.QTable;
+import org.madesimple.small.environment.ContinuousEnvironment;
+import org.madesimple.small.environment.ContinuousState;
+import org.madesimple.small.environment.Environment;
+import org.madesimple.small.environment.State;
+import org.madesimple.small.utility.Configurable;
+import org.madesimple.small.utility.Configuration;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * <p>
+ * Partitioned Action Value Table is a Q-Table for a {@link ContinuousEnvironment} that aggregates states into the
+ * cells of an adaptive kd-tree. The tree starts as a coarse uniform grid of <code>2^InitialDepth</code> cells over
+ * the bounds of the environment, made by halving each feature in turn, and a cell is only split further, at the
+ * midpoint of one feature, once the updates made to it show that its value is not flat.
+ * </p>
+ * <p>
+ * The learning algorithm reports each update with {@link #observe(int, State, double)}, giving the state it updated.
+ * Every <em>MinVisits</em> updates to a cell the mean change in value of the states in the lower and upper half of
+ * each feature are compared. If they differ by at least <em>SplitThreshold</em> times the mean absolute change the
+ * cell is split along the feature where they differ most, otherwise its statistics are cleared. Both children start
+ * with the values of their parent. Regions of the state space that are rarely visited, or whose value is flat,
+ * therefore stay coarse.
+ * </p>
+ * <p>
+ * The key of a state is the index of the leaf containing it. Nodes, cell bounds, statistics and action values are
+ * kept in flat arrays indexed by node, so a lookup is a walk down the tree with no allocation. A key handed out
+ * before its cell was split still names a valid row but the row is no longer read; storages that hold on to keys,
+ * such as a replay buffer or a model, should not be combined with this table.
+ * </p>
+ * <p>
+ * <em>Note:</em> {@link #get(int, int)} returns a row buffer that is reused by the next call to <code>get</code>;
+ * read what you need from it before looking up another state.
+ * </p>
+ * <pre>
+ * Partition.InitialDepth   = 7
+ * Partition.MinVisits      = 300
+ * Partition.SplitThreshold = 0.6
+ * Partition.MaxDepth       = 16
+ * Partition.MaxLeaves      = 4096
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class PartitionedActionValueTable implements QTable, Configurable {
+    private static final int LEAF = -1;
+
+    private int    initialDepth   = 7;
+    private int    minVisits      = 300;
+    private double splitThreshold = 0.6d;
+    private int    maxDepth       = 16;
+    private int    maxLeaves      = 4096;
+
+    /**
+     * Initial value entries will receive.
+     */
+    private double initialValue;
+
+    /**
+     * True once the table has been fitted to the bounds of an environment.
+     */
+    private boolean bound;
+
+    private int nFeatures;
+    private int nActions;
+    private int nNodes;
+    private int nLeaves;
+
+    /**
+     * Feature each node is split on, or {@link #LEAF}.
+     */
+    private int[] splitFeature;
+
+    /**
+     * Value of the split feature at which a node is split.
+     */
+    private double[] splitValue;
+
+    /**
+     * Index of the lower child of each node; the upper child follows it.
+     */
+    private int[] children;
+    private int[] depths;
+
+    /**
+     * Bounds of the cell of each node, <code>nFeatures</code> per node.
+     */
+    private double[] lowerBounds;
+    private double[] upperBounds;
+
+    /**
+     * Number of updates to each leaf and sum of the absolute changes they made since its statistics were last
+     * cleared.
+     */
+    private int[]    visits;
+    private double[] errors;
+
+    /**
+     * Sum and count of the changes in value made in the lower and upper half of each feature, <code>nFeatures</code>
+     * per node.
+     */
+    private double[] lowerChange;
+    private double[] upperChange;
+    private int[]    lowerCount;
+    private int[]    upperCount;
+
+    /**
+     * Action values, row major by node.
+     */
+    private double[] values;
+
+    /**
+     * Row returned by {@link #get(int, int)}.
+     */
+    private double[] row;
+
+    /**
+     * Nodes read by {@link #load(File)} before the table was bound, in the format written by {@link #save(File)}.
+     */
+    private double[][] loaded;
+
+    public PartitionedActionValueTable() {
+        reset();
+    }
+
+    @Override
+    public void setConfiguration(Configuration cfg) {
+        if (cfg.hasProperty("Partition.InitialDepth")) {
+            initialDepth = cfg.getInteger("Partition.InitialDepth");
+        }
+        if (cfg.hasProperty("Partition.MinVisits")) {
+            minVisits = cfg.getInteger("Partition.MinVisits");
+        }
+        if (cfg.hasProperty("Partition.SplitThreshold")) {
+            splitThreshold = cfg.getDouble("Partition.SplitThreshold");
+        }
+        if (cfg.hasProperty("Partition.MaxDepth")) {
+            maxDepth = cfg.getInteger("Partition.MaxDepth");
+        }
+        if (cfg.hasProperty("Partition.MaxLeaves")) {
+            maxLeaves = cfg.getInteger("Partition.MaxLeaves");
+        }
+    }
+
+    @Override
+    public void setInitialValue(double initialValue) {
+        this.initialValue = initialValue;
+    }
+
+    @Override
+    public void reset() {
+        bound = false;
+        nFeatures = 0;
+        nActions = 0;
+        nNodes = 0;
+        nLeaves = 0;
+        splitFeature = null;
+        splitValue = null;
+        children = null;
+        depths = null;
+        visits = null;
+        errors = null;
+        lowerBounds = null;
+        upperBounds = null;
+        lowerChange = null;
+        upperChange = null;
+        lowerCount = null;
+        upperCount = null;
+        values = null;
+        row = null;
+    }
+
+    @Override
+    public void initialise(Environment environment) {
+        if (bound) {
+            return;
+        }
+        if (!(environment instanceof ContinuousEnvironment)) {
+            throw new RuntimeException("PartitionedActionValueTable requires a continuous environment");
+        }
+        bound = true;
+
+        ContinuousEnvironment continuous = (ContinuousEnvironment) environment;
+        nFeatures = continuous.countBounds();
+        grow(64);
+
+        // The root covers the whole state space
+        nNodes = 1;
+        nLeaves = 1;
+        splitFeature[0] = LEAF;
+        depths[0] = 0;
+        System.arraycopy(continuous.lowerBounds(), 0, lowerBounds, 0, nFeatures);
+        System.arraycopy(continuous.upperBounds(), 0, upperBounds, 0, nFeatures);
+        clearStatistics(0);
+
+        // Start from a coarse uniform grid, splitting the features in turn
+        for (int depth = 0; depth < initialDepth && loaded == null; depth++) {
+            int feature = depth % nFeatures;
+            for (int node = 0, n = nNodes; node < n; node++) {
+                if (splitFeature[node] == LEAF) {
+                    int o = node * nFeatures + feature;
+                    split(node, feature, 0.5d * (lowerBounds[o] + upperBounds[o]));
+                }
+            }
+        }
+
+        if (loaded != null) {
+            applyLoaded();
+        }
+    }
+
+    /**
+     * @return Number of cells the state space is partitioned into
+     */
+    public int countLeaves() {
+        return nLeaves;
+    }
+
+    @Override
+    public int key(State state) {
+        ContinuousState continuous = (ContinuousState) state;
+
+        int node = 0;
+        while (splitFeature[node] != LEAF) {
+            int feature = splitFeature[node];
+            node = children[node] + (continuous.tuple(feature) < splitValue[node] ? 0 : 1);
+        }
+
+        return node;
+    }
+
+    @Override
+    public void put(int state, int action, double value, int nActions) {
+        allocate(nActions);
+
+        values[state * this.nActions + action] = value;
+    }
+
+    @Override
+    public double[] get(int state, int nActions) {
+        allocate(nActions);
+        System.arraycopy(values, state * this.nActions, row, 0, this.nActions);
+        return row;
+    }
+
+    @Override
+    public PartitionedActionValueTable copy() {
+        PartitionedActionValueTable copy = new PartitionedActionValueTable();
+        copy.initialDepth = initialDepth;
+        copy.minVisits = minVisits;
+        copy.splitThreshold = splitThreshold;
+        copy.maxDepth = maxDepth;
+        copy.maxLeaves = maxLeaves;
+        copy.initialValue = initialValue;
+        copy.bound = bound;
+        copy.nFeatures = nFeatures;
+        copy.nActions = nActions;
+        copy.nNodes = nNodes;
+        copy.nLeaves = nLeaves;
+        if (splitFeature != null) {
+            copy.splitFeature = splitFeature.clone();
+            copy.splitValue = splitValue.clone();
+            copy.children = children.clone();
+            copy.depths = depths.clone();
+            copy.visits = visits.clone();
+            copy.errors = errors.clone();
+            copy.lowerBounds = lowerBounds.clone();
+            copy.upperBounds = upperBounds.clone();
+            copy.lowerChange = lowerChange.clone();
+            copy.upperChange = upperChange.clone();
+            copy.lowerCount = lowerCount.clone();
+            copy.upperCount = upperCount.clone();
+        }
+        if (values != null) {
+            copy.values = values.clone();
+            copy.row = new double[row.length];
+        }
+        if (loaded != null) {
+            copy.loaded = new double[loaded.length][];
+            for (int i = 0; i < loaded.length; i++) {
+                copy.loaded[i] = loaded[i].clone();
+            }
+        }
+
+        return copy;
+    }
+
+    /**
+     * Record a change in the value of <em>leaf</em> made at the features of <em>state</em>, and decide whether to
+     * split the leaf once it has been updated <em>MinVisits</em> times.
+     *
+     * @param leaf   Leaf updated
+     * @param state  State the leaf was updated for
+     * @param change Change in value
+     */
+    @Override
+    public void observe(int leaf, State state, double change) {
+        if (splitFeature[leaf] != LEAF) {
+            return;
+        }
+
+        ContinuousState continuous = (ContinuousState) state;
+        int             offset     = leaf * nFeatures;
+        for (int i = 0; i < nFeatures; i++) {
+            double middle = 0.5d * (lowerBounds[offset + i] + upperBounds[offset + i]);
+            if (continuous.tuple(i) < middle) {
+                lowerChange[offset + i] += change;
+                lowerCount[offset + i]++;
+            } else {
+                upperChange[offset + i] += change;
+                upperCount[offset + i]++;
+            }
+        }
+
+        errors[leaf] += Math.abs(change);
+        if (++visits[leaf] < minVisits) {
+            return;
+        }
+
+        // Find the feature whose halves disagree the most, relative to the mean size of the changes
+        int    feature    = LEAF;
+        double difference = splitThreshold * errors[leaf] / visits[leaf];
+        for (int i = 0; i < nFeatures; i++) {
+            int o = offset + i;
+            if (lowerCount[o] == 0 || upperCount[o] == 0) {
+                continue;
+            }
+
+            double d = Math.abs((lowerChange[o] / lowerCount[o]) - (upperChange[o] / upperCount[o]));
+            if (d > difference) {
+                feature = i;
+                difference = d;
+            }
+        }
+
+        if (feature != LEAF && depths[leaf] < maxDepth && nLeaves < maxLeaves) {
+            split(leaf, feature, 0.5d * (lowerBounds[offset + feature] + upperBounds[offset + feature]));
+        } else {
+            clearStatistics(leaf);
+        }
+    }
+
+    /**
+     * Split <em>leaf</em> into two children at <em>value</em> of <em>feature</em>.
+     *
+     * @param leaf    Leaf to split
+     * @param feature Feature to split on
+     * @param value   Value of the feature where the lower child ends and the upper child begins
+     */
+    private void split(int leaf, int feature, double value) {
+        if (nNodes + 2 > splitFeature.length) {
+            grow(splitFeature.length * 2);
+        }
+
+        int lower = nNodes;
+        nNodes += 2;
+        nLeaves++;
+
+        splitFeature[leaf] = feature;
+        splitValue[leaf] = value;
+        children[leaf] = lower;
+
+        for (int child = lower; child < lower + 2; child++) {
+            splitFeature[child] = LEAF;
+            depths[child] = depths[leaf] + 1;
+            System.arraycopy(lowerBounds, leaf * nFeatures, lowerBounds, child * nFeatures, nFeatures);
+            System.arraycopy(upperBounds, leaf * nFeatures, upperBounds, child * nFeatures, nFeatures);
+            if (values != null) {
+                System.arraycopy(values, leaf * nActions, values, child * nActions, nActions);
+            }
+            clearStatistics(child);
+        }
+        upperBounds[lower * nFeatures + feature] = value;
+        lowerBounds[(lower + 1) * nFeatures + feature] = value;
+    }
+
+    private void clearStatistics(int node) {
+        int offset = node * nFeatures;
+        visits[node] = 0;
+        errors[node] = 0.0d;
+        Arrays.fill(lowerChange, offset, offset + nFeatures, 0.0d);
+        Arrays.fill(upperChange, offset, offset + nFeatures, 0.0d);
+        Arrays.fill(lowerCount, offset, offset + nFeatures, 0);
+        Arrays.fill(upperCount, offset, offset + nFeatures, 0);
+    }
+
+    /**
+     * Ensures there is room for <em>capacity</em> nodes, preserving existing nodes.
+     *
+     * @param capacity Number of nodes
+     */
+    private void grow(int capacity) {
+        int size = capacity * nFeatures;
+
+        splitFeature = splitFeature == null ? new int[capacity] : Arrays.copyOf(splitFeature, capacity);
+        splitValue = splitValue == null ? new double[capacity] : Arrays.copyOf(splitValue, capacity);
+        children = children == null ? new int[capacity] : Arrays.copyOf(children, capacity);
+        depths = depths == null ? new int[capacity] : Arrays.copyOf(depths, capacity);
+        visits = visits == null ? new int[capacity] : Arrays.copyOf(visits, capacity);
+        errors = errors == null ? new double[capacity] : Arrays.copyOf(errors, capacity);
+        lowerBounds = lowerBounds == null ? new double[size] : Arrays.copyOf(lowerBounds, size);
+        upperBounds = upperBounds == null ? new double[size] : Arrays.copyOf(upperBounds, size);
+        lowerChange = lowerChange == null ? new double[size] : Arrays.copyOf(lowerChange, size);
+        upperChange = upperChange == null ? new double[size] : Arrays.copyOf(upperChange, size);
+        lowerCount = lowerCount == null ? new int[size] : Arrays.copyOf(lowerCount, size);
+        upperCount = upperCount == null ? new int[size] : Arrays.copyOf(upperCount, size);
+
+        if (values != null) {
+            int old = values.length;
+            values = Arrays.copyOf(values, capacity * nActions);
+            Arrays.fill(values, old, values.length, initialValue);
+        }
+    }
+
+    /**
+     * Ensures every node has room for <em>nActions</em> columns, preserving existing values.
+     *
+     * @param nActions Number of columns
+     */
+    private void allocate(int nActions) {
+        if (nActions <= this.nActions) {
+            return;
+        }
+
+        double[] values = new double[splitFeature.length * nActions];
+        Arrays.fill(values, initialValue);
+        if (this.values != null) {
+            for (int s = 0; s < nNodes; s++) {
+                System.arraycopy(this.values, s * this.nActions, values, s * nActions, this.nActions);
+            }
+        }
+
+        this.values = values;
+        this.row = new double[nActions];
+        this.nActions = nActions;
+    }
+
+    /**
+     * Rebuilds the tree read by {@link #load(File)} beneath the root of the bound table.
+     */
+    private void applyLoaded() {
+        double[][] nodes = loaded;
+        loaded = null;
+
+        int width = 0;
+        for (double[] node : nodes) {
+            width = Math.max(width, node.length - 4);
+        }
+        allocate(width);
+
+        // Replay the splits in the order their children were created
+        List<double[]> splits = new ArrayList<>();
+        for (double[] node : nodes) {
+            if ((int) node[1] != LEAF) {
+                splits.add(node);
+            }
+        }
+        splits.sort(Comparator.comparingDouble(node -> node[3]));
+        for (double[] node : splits) {
+            int index = (int) node[0];
+            if (index < nNodes && splitFeature[index] == LEAF) {
+                split(index, (int) node[1], node[2]);
+            }
+        }
+
+        for (double[] node : nodes) {
+            int index = (int) node[0];
+            if (index < nNodes) {
+                System.arraycopy(node, 4, values, index * nActions, Math.min(nActions, node.length - 4));
+            }
+        }
+    }
+
+    /**
+     * <p>
+     * Writes the tree to <em>file</em>, one node per line in the order they were created:
+     * <code>node, split feature, split value, lower child</code> followed by the action values of the node.
+     * </p>
+     *
+     * @param file file to save PartitionedActionValueTable data
+     * @return True on success, false on failure
+     */
+    @Override
+    public boolean save(File file) {
+        try (PrintStream ps = new PrintStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            for (int s = 0; s < nNodes; s++) {
+                ps.print(s + "\t" + splitFeature[s] + "\t" + splitValue[s] + "\t" + children[s]);
+                for (int a = 0; a < nActions; a++) {
+                    ps.print("\t" + values[s * nActions + a]);
+                }
+
+                ps.println();
+            }
+
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * <p>
+     * Reads a tree written by {@link #save(File)}. If the table has not been bound yet the tree is rebuilt when it
+     * is; otherwise the current tree is replaced straight away.
+     * </p>
+     *
+     * @param file file to load PartitionedActionValueTable
+     * @return True on success, false on failure
+     */
+    @Override
+    public boolean load(File file) {
+        List<double[]> nodes = new ArrayList<>();
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            String line;
+
+            while ((line = br.readLine()) != null) {
+                String[] parts = line.split("\t");
+                double[] node  = new double[parts.length];
+                for (int i = 0; i < parts.length; i++) {
+                    node[i] = Double.parseDouble(parts[i]);
+                }
+
+                nodes.add(node);
+            }
+        } catch (IOException | NumberFormatException e) {
+            return false;
+        }
+
+        loaded = nodes.toArray(new double[nodes.size()][]);
+        if (bound) {
+            // Start again from the root
+            nNodes = 1;
+            nLeaves = 1;
+            splitFeature[0] = LEAF;
+            clearStatistics(0);
+            applyLoaded();
+        }
+
+        return true;
+    }
+}
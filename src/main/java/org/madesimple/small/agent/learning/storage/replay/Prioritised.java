@@ -0,0 +1,116 @@
+package org.madesimple.small.agent.learning.storage.replay;
+
+import org.madesimple.small.agent.learning.storage.ReplayBuffer;
+import org.madesimple.small.utility.Configuration;
+
+/**
+ * <p>
+ * Samples transitions in proportion to their priority, <code>(|error| + &epsilon;)<sup>&alpha;</sup></code>, where
+ * <em>error</em> is the TD error of the transition when it was last replayed. New transitions receive the highest
+ * priority seen so far so that they are replayed at least once. Priorities are kept in a sum-tree so that sampling and
+ * updating are both <code>O(log capacity)</code>.
+ * </p>
+ * <p>
+ * The bias introduced by prioritised sampling is corrected with importance weights
+ * <code>(size * P(i))<sup>-&beta;</sup></code>, normalised by the largest weight in the batch. The priority of a
+ * sampled transition is clamped to no less than <code>&epsilon;<sup>&alpha;</sup></code>, the smallest priority an
+ * update can give, so that rounding in the sum-tree can never produce a zero probability and an infinite weight.
+ * </p>
+ * <pre>
+ * ReplayBuffer.Prioritised.Alpha   = 0.6
+ * ReplayBuffer.Prioritised.Beta    = 0.4
+ * ReplayBuffer.Prioritised.Epsilon = 0.01
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class Prioritised extends ReplayBuffer {
+    private double   alpha;
+    private double   beta;
+    private double   epsilon;
+    private double   maxPriority;
+    private double   minPriority;
+    /**
+     * Sum-tree of priorities; node 1 is the root and the leaf of slot <em>i</em> is node <code>capacity + i</code>.
+     */
+    private double[] tree;
+
+    public Prioritised() {
+    }
+
+    @Override
+    public void setConfiguration(Configuration cfg) {
+        super.setConfiguration(cfg);
+        alpha = cfg.getDouble("ReplayBuffer.Prioritised.Alpha");
+        beta = cfg.getDouble("ReplayBuffer.Prioritised.Beta");
+        epsilon = cfg.getDouble("ReplayBuffer.Prioritised.Epsilon");
+        minPriority = Math.max(Math.pow(epsilon, alpha), Double.MIN_NORMAL);
+    }
+
+    @Override
+    public void initialise(int nFeatures) {
+        super.initialise(nFeatures);
+        tree = new double[2 * capacity];
+        maxPriority = 1.0d;
+    }
+
+    @Override
+    protected void added(int slot) {
+        prioritise(slot, maxPriority);
+    }
+
+    @Override
+    public void update(int slot, double error) {
+        double priority = Math.pow(Math.abs(error) + epsilon, alpha);
+        maxPriority = Math.max(maxPriority, priority);
+        prioritise(slot, priority);
+    }
+
+    private void prioritise(int slot, double priority) {
+        int node = capacity + slot;
+        tree[node] = priority;
+        for (node >>= 1; node >= 1; node >>= 1) {
+            tree[node] = tree[2 * node] + tree[2 * node + 1];
+        }
+    }
+
+    @Override
+    public int sample(int[] slots, double[] weights, int n) {
+        double total = tree[1];
+        if (size == 0 || total <= 0.0d) {
+            return 0;
+        }
+
+        // Draw the uniforms for the whole batch up front, using weights as the buffer
+        random.fill(weights, 0, n);
+
+        // Stratify the samples across the total priority
+        double segment   = total / n;
+        double maxWeight = 0.0d;
+        for (int i = 0; i < n; i++) {
+            double target = segment * (i + weights[i]);
+            int    node   = 1;
+            while (node < capacity) {
+                int left = 2 * node;
+                if (target < tree[left] || tree[left + 1] <= 0.0d) {
+                    node = left;
+                } else {
+                    target -= tree[left];
+                    node = left + 1;
+                }
+            }
+
+            slots[i] = node - capacity;
+            double priority = Math.max(tree[node], minPriority);
+            weights[i] = Math.pow(size * (priority / Math.max(total, priority)), -beta);
+            maxWeight = Math.max(maxWeight, weights[i]);
+        }
+
+        // Normalise the weights
+        for (int i = 0; i < n; i++) {
+            weights[i] /= maxWeight;
+        }
+
+        return n;
+    }
+}
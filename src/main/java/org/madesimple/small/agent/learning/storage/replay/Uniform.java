@@ -0,0 +1,28 @@
+package org.madesimple.small.agent.learning.storage.replay;
+
+import org.madesimple.small.agent.learning.storage.ReplayBuffer;
+
+import java.util.Arrays;
+
+/**
+ * Samples every held transition with equal probability.
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class Uniform extends ReplayBuffer {
+
+    public Uniform() {
+    }
+
+    @Override
+    public int sample(int[] slots, double[] weights, int n) {
+        if (size == 0) {
+            return 0;
+        }
+
+        random.fill(slots, 0, n, size);
+        Arrays.fill(weights, 0, n, 1.0d);
+
+        return n;
+    }
+}
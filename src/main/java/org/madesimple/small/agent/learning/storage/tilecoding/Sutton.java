@@ -2,10 +2,12 @@ package org.madesimple.small.agent.learning.storage.tilecoding;
 
 import org.madesimple.small.agent.learning.storage.TileCoding;
 import org.madesimple.small.environment.ContinuousEnvironment;
-import org.madesimple.small.environment.ContinuousState;
 import org.madesimple.small.utility.Configuration;
+import org.madesimple.small.utility.RandomStream;
 
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * <p>
@@ -37,6 +39,24 @@ import java.util.concurrent.ThreadLocalRandom;
  * It is recommended by the UNH folks that number of tilings be a power
  * of 2, e.g., 16.
  * </p>
+ * <p>
+ * The table of random numbers used by the hashing is generated from
+ * <em>HashSeed</em> once per JVM and shared, read only, by every instance, so
+ * the same seed always gives the same tiles whichever thread asks first. The
+ * memory size defaults to <code>NumTiles^features * NumTilings</code>; when
+ * <em>PowerOfTwo</em> is set it is rounded up to a power of two and tiles are
+ * reduced with a mask instead of a remainder. When <em>CountCollisions</em> is
+ * set each tile also records a check hash of the coordinates that produced it,
+ * as the UNH collision table does, so that {@link #collisions()} and
+ * {@link #occupied()} can be used to size <em>MemorySize</em> from data.
+ * </p>
+ * <pre>
+ * TileCoding.Sutton.NumTiles          = 50
+ * ; TileCoding.Sutton.MemorySize      = 65536
+ * ; TileCoding.Sutton.PowerOfTwo      = false
+ * ; TileCoding.Sutton.HashSeed        = 0
+ * ; TileCoding.Sutton.CountCollisions = false
+ * </pre>
  *
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
@@ -44,14 +64,31 @@ public class Sutton extends TileCoding {
     private static final int  MAX_NUM_VARS   = 20;
     private static final int  MAX_NUM_COORDS = 100;
     private static final long MAX_LONG_INT   = Long.MAX_VALUE;
+    private static final int  RNDSEQ_SIZE    = 2048;
 
-    private static long[] rndseq;
+    /**
+     * Tables of random numbers by seed; a table is never written once it is published.
+     */
+    private static final ConcurrentMap<Long, long[]> RNDSEQS = new ConcurrentHashMap<>();
 
+    private long[]   rndseq;
     private int      nTiles;
+    private int      configuredMemorySize;
+    private boolean  powerOfTwo;
     private int      memorySize;
+    private int      memoryMask;
     private double[] minimumValues;
     private double[] tileSpacings;
 
+    /**
+     * Check hash of the coordinates last seen at each tile, or -1; null unless collisions are counted.
+     */
+    private long[]  checks;
+    private long    calls;
+    private long    collisions;
+    private int     occupied;
+    private boolean countCollisions;
+
     public Sutton() {
     }
 
@@ -59,11 +96,50 @@ public class Sutton extends TileCoding {
     public void setConfiguration(Configuration cfg) {
         super.setConfiguration(cfg);
         nTiles = cfg.getInteger("TileCoding.Sutton.NumTiles");
+        configuredMemorySize = cfg.hasProperty("TileCoding.Sutton.MemorySize") ?
+                               cfg.getInteger("TileCoding.Sutton.MemorySize") : 0;
+        powerOfTwo = cfg.getBoolean("TileCoding.Sutton.PowerOfTwo", false);
+        countCollisions = cfg.getBoolean("TileCoding.Sutton.CountCollisions", false);
+
+        long seed = cfg.hasProperty("TileCoding.Sutton.HashSeed") ? cfg.getInteger("TileCoding.Sutton.HashSeed") : 0L;
+        rndseq = RNDSEQS.computeIfAbsent(seed, Sutton::rndseq);
+    }
+
+    /**
+     * @param seed seed
+     * @return A new table of random 32 bit numbers for hashing
+     */
+    private static long[] rndseq(long seed) {
+        RandomStream random = new RandomStream(seed);
+        long[]       table  = new long[RNDSEQ_SIZE];
+        for (int k = 0; k < RNDSEQ_SIZE; k++) {
+            table[k] = random.nextInt() & 0xffffffffL;
+        }
+
+        return table;
     }
 
     @Override
     public void initialise(ContinuousEnvironment environment) {
-        this.memorySize = (int) Math.pow(nTiles, environment.countBounds()) * nTilings;
+        long size = configuredMemorySize > 0 ?
+                    configuredMemorySize : (long) Math.pow(nTiles, environment.countBounds()) * nTilings;
+        if (powerOfTwo) {
+            size = Long.highestOneBit(Math.max(1L, size - 1)) << 1;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new RuntimeException("Tile coding memory size is too large: " + size);
+        }
+        this.memorySize = (int) size;
+        this.memoryMask = powerOfTwo ? memorySize - 1 : -1;
+
+        // Collisions are counted across episodes until the memory size changes
+        if (countCollisions && (checks == null || checks.length != memorySize)) {
+            checks = new long[memorySize];
+            Arrays.fill(checks, -1L);
+            calls = 0;
+            collisions = 0;
+            occupied = 0;
+        }
 
         minimumValues = environment.lowerBounds();
         tileSpacings = new double[environment.countBounds()];
@@ -74,15 +150,40 @@ public class Sutton extends TileCoding {
         }
     }
 
+    /**
+     * The copy shares the table of random numbers, which is read only, and counts its collisions apart from the
+     * original, starting from the counts so far.
+     */
+    @Override
+    public Sutton copy() {
+        Sutton copy = new Sutton();
+        copy.nTilings = nTilings;
+        copy.random = RandomStream.current();
+        copy.rndseq = rndseq;
+        copy.nTiles = nTiles;
+        copy.configuredMemorySize = configuredMemorySize;
+        copy.powerOfTwo = powerOfTwo;
+        copy.memorySize = memorySize;
+        copy.memoryMask = memoryMask;
+        copy.minimumValues = minimumValues != null ? minimumValues.clone() : null;
+        copy.tileSpacings = tileSpacings != null ? tileSpacings.clone() : null;
+        copy.checks = checks != null ? checks.clone() : null;
+        copy.calls = calls;
+        copy.collisions = collisions;
+        copy.occupied = occupied;
+        copy.countCollisions = countCollisions;
+        return copy;
+    }
+
     @Override
-    public int[] tiles(ContinuousState state) {
+    public int[] tiles(double[] tuple) {
         int[]    tiles   = new int[nTilings];
-        double[] doubles = new double[state.countFeatures()];
+        double[] doubles = new double[tuple.length];
 
-        for (int i = 0; i < state.countFeatures(); i++) {
+        for (int i = 0; i < tuple.length; i++) {
             // ( (value - min) / (max - min) ) * ( (max - min) / spacing)
             // === (value - min) / spacing
-            doubles[i] = (state.tuple(i) - minimumValues[i]) - tileSpacings[i];
+            doubles[i] = (tuple[i] - minimumValues[i]) / tileSpacings[i];
         }
 
         getTiles(tiles, memorySize, doubles);
@@ -90,10 +191,33 @@ public class Sutton extends TileCoding {
         return tiles;
     }
 
+    /**
+     * @return Number of tiles hashed while counting collisions
+     */
+    public long calls() {
+        return calls;
+    }
 
+    /**
+     * @return Number of tiles hashed that landed on a tile last used by different coordinates
+     */
+    public long collisions() {
+        return collisions;
+    }
 
+    /**
+     * @return Number of distinct tiles used while counting collisions
+     */
+    public int occupied() {
+        return occupied;
+    }
 
-
+    /**
+     * @return Number of possible tiles
+     */
+    public int memorySize() {
+        return memorySize;
+    }
 
     /**
      * @param tiles        provided array contains returned tiles (tile indices)
@@ -134,47 +258,61 @@ public class Sutton extends TileCoding {
             coordinates[i] = j;
 
             tiles[j] = hash_UNH(coordinates, num_coordinates, memory_size, 449);
+            if (checks != null) {
+                check(tiles[j], sum_UNH(coordinates, num_coordinates, 457));
+            }
         }
         return;
     }
 
 
 
+    /**
+     * Record the use of <em>tile</em> by the coordinates with check hash <em>check</em>.
+     */
+    private void check(int tile, long check) {
+        calls++;
+        if (checks[tile] == -1L) {
+            checks[tile] = check;
+            occupied++;
+        } else if (checks[tile] != check) {
+            checks[tile] = check;
+            collisions++;
+        }
+    }
+
     /**
      * Takes an array of integers and returns the corresponding tile after hashing
      */
     private int hash_UNH(int[] ints, int num_ints, long m, int increment) {
-        int  i,k;
+        long sum = sum_UNH(ints, num_ints, increment);
+
+        // the sum is never negative so a mask is a remainder when m is a power of two
+        if( memoryMask != -1 && m == memorySize )
+            return (int) (sum & memoryMask);
+
+        return (int) (sum % m);
+    }
+
+    /**
+     * Takes an array of integers and returns the sum of their entries in the table of random numbers
+     */
+    private long sum_UNH(int[] ints, int num_ints, int increment) {
+        int  i;
         long index;
         long sum = 0;
 
-        // if first call to hashing, initialise table of random numbers
-        if( rndseq == null ) {
-            rndseq = new long[2048];
-            for( k = 0; k < 2048; k++ ) {
-                rndseq[k] = 0;
-                // 4 === number of bytes in an integer (32 bits === 4 bytes)
-                for( i=0; i < 4; ++i )
-                    rndseq[k] = (rndseq[k] << 8) | (ThreadLocalRandom.current().nextInt() & 0xff);
-            }
-        }
-
         for( i = 0; i < num_ints; i++ ) {
             // add random table offset for this dimension and wrap around
             index  = ints[i];
             index += (increment * i);
             // index %= 2048;
             index = index & 2047;
-            while( index < 0 )
-                index += 2048;
 
             // add selected random number to sum
-            sum += (long)rndseq[(int)index];
+            sum += rndseq[(int)index];
         }
-        index = (int)(sum % m);
-        while( index < 0 )
-            index += m;
 
-        return (int) index;
+        return sum;
     }
 }
@@ -5,10 +5,20 @@ import org.madesimple.small.environment.ContinuousEnvironment;
 import org.madesimple.small.environment.ContinuousState;
 import org.madesimple.small.utility.Configuration;
 import org.madesimple.small.utility.Hash;
-
-import java.util.concurrent.ThreadLocalRandom;
+import org.madesimple.small.utility.RandomStream;
 
 /**
+ * <p>
+ * Whiteson tile coding lays <em>NumTilings</em> grids over the bounds of the environment, each offset from the last
+ * by a fraction of a tile plus a small random jitter. The geometry of every tiling is fixed when the tile coding is
+ * initialised: a state's tile in a tiling is found from one add and one multiply per feature, with no allocation
+ * beyond the array of tiles returned.
+ * </p>
+ * <pre>
+ * TileCoding.NumTilings = 4
+ * TileCoding.Whiteson.TilesPerFeature = 50,50
+ * </pre>
+ *
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
 public class Whiteson extends TileCoding {
@@ -28,83 +38,141 @@ public class Whiteson extends TileCoding {
 
     @Override
     public void initialise(ContinuousEnvironment environment) {
+        double[] lower = environment.lowerBounds();
+        double[] upper = environment.upperBounds();
         for (int i = 0; i < nTilings; i++) {
-            tileArrays[i] = new TileArray(environment, tilePerFeature, i, nTilings);
+            tileArrays[i] = new TileArray(lower, upper, tilePerFeature, i, nTilings, random);
         }
     }
 
+    /**
+     * The copy shares the tile arrays, which are never changed once made; initialising either tile coding again
+     * replaces its own arrays only.
+     */
+    @Override
+    public Whiteson copy() {
+        Whiteson copy = new Whiteson();
+        copy.nTilings = nTilings;
+        copy.random = RandomStream.current();
+        copy.tilePerFeature = tilePerFeature;
+        copy.tileArrays = tileArrays.clone();
+        return copy;
+    }
+
     @Override
     public int[] tiles(ContinuousState state) {
-        int[]    tiles = new int[nTilings];
-        double[] tuple = state.tuple();
+        int[] tiles = new int[nTilings];
 
         for (int i = 0; i < nTilings; i++) {
-            tiles[i] = Hash.pair(i, tileArrays[i].get(tuple));
+            tiles[i] = Hash.pair(i, tileArrays[i].get(state));
         }
 
         return tiles;
     }
 
+    @Override
+    public int[] tiles(double[] tuple) {
+        int[] tiles = new int[nTilings];
+
+        for (int i = 0; i < nTilings; i++) {
+            tiles[i] = Hash.pair(i, tileArrays[i].get(tuple, 0));
+        }
+
+        return tiles;
+    }
+
+    @Override
+    public void tiles(double[] features, int nFeatures, int nStates, int[] out) {
+        for (int s = 0; s < nStates; s++) {
+            int from = s * nFeatures;
+            int to   = s * nTilings;
+            for (int i = 0; i < nTilings; i++) {
+                out[to + i] = Hash.pair(i, tileArrays[i].get(features, from));
+            }
+        }
+    }
+
     static class TileArray {
-        private ContinuousEnvironment environment;
-        private double[]              offsets;
-        private int[]                 tilesPerFeature;
+        /**
+         * Added to a feature to give its distance from the lower edge of the first tile.
+         */
+        private final double[] shifts;
+
+        /**
+         * Number of tiles per unit of each feature.
+         */
+        private final double[] scales;
+
+        private final int[] tilesPerFeature;
+
+        /**
+         * Number of features the array was built for.
+         */
+        private final int nFeatures;
+
+        public TileArray(double[] lower, double[] upper, int[] tilesPerFeature, int tiling, int nTilings,
+                         RandomStream random) {
+            if (tilesPerFeature.length < lower.length) {
+                throw new RuntimeException("TileCoding.Whiteson.TilesPerFeature gives " + tilesPerFeature.length
+                                           + " features but the environment has " + lower.length);
+            }
 
-        public TileArray(ContinuousEnvironment environment, int[] tilesPerFeature, int tiling, int nTilings) {
-            this.environment = environment;
             this.tilesPerFeature = tilesPerFeature;
-            this.offsets = new double[environment.countBounds()];
-
-            for (int i = 0; i < offsets.length; i++) {
-                if (tilesPerFeature[i] == 1) {
-                    offsets[i] = 0.0d;
-                } else {
-                    offsets[i] = (double) tiling / (double) nTilings;
-                    offsets[i] *= range(environment, i) / (tilesPerFeature[i] - 1);
-                    double gap  = range(environment, i) * (((1.0d / (double) (tilesPerFeature[i] - 1))) / (double) nTilings);
-                    double rand = ThreadLocalRandom.current().nextDouble(-1.0d, 1.0d);
+            this.nFeatures = lower.length;
+            this.shifts = new double[lower.length];
+            this.scales = new double[lower.length];
+
+            for (int i = 0; i < lower.length; i++) {
+                double range  = upper[i] - lower[i];
+                double offset = 0.0d;
+                if (tilesPerFeature[i] != 1) {
+                    offset = (double) tiling / (double) nTilings;
+                    offset *= range / (tilesPerFeature[i] - 1);
+                    double gap  = range * (((1.0d / (double) (tilesPerFeature[i] - 1))) / (double) nTilings);
+                    double rand = random.nextDouble(-1.0d, 1.0d);
                     if (tiling == 0) {
-                        offsets[i] += Math.abs(rand * gap);
+                        offset += Math.abs(rand * gap);
                     } else if (tiling == nTilings - 1) {
-                        offsets[i] -= Math.abs(rand * gap);
+                        offset -= Math.abs(rand * gap);
                     } else {
-                        offsets[i] += rand * gap;
+                        offset += rand * gap;
                     }
                 }
-            }
-        }
-
-        private double range(ContinuousEnvironment environment, int feature) {
-            return environment.upperBounds()[feature] - environment.lowerBounds()[feature];
-        }
-
 
-        public int get(double[] state) {
-            return convertToIndex(convertToIndices(state));
+                // The tiles of an offset grid span one tile more than the bounds
+                double span = tilesPerFeature[i] == 1 ? range : range * tilesPerFeature[i] / (tilesPerFeature[i] - 1);
+                shifts[i] = offset - lower[i];
+                scales[i] = tilesPerFeature[i] / span;
+            }
         }
 
-        protected int convertToIndex(int[] indices) {
+        /**
+         * @param state State
+         * @return Index of the tile <em>state</em> falls in
+         */
+        public int get(ContinuousState state) {
             int index = 0;
-
-            for (int i = 0; i < indices.length; i++) {
+            for (int i = 0; i < nFeatures; i++) {
                 index *= tilesPerFeature[i];
-                index += indices[i];
+                index += (int) ((state.tuple(i) + shifts[i]) * scales[i]);
             }
 
             return index;
         }
 
-        protected int[] convertToIndices(double[] state) {
-            int[] indices = new int[state.length];
-
-            for (int i = 0; i < indices.length; i++) {
-                double range    = tilesPerFeature[i] == 1 ? range(environment, i) : range(environment, i) * tilesPerFeature[i] / (tilesPerFeature[i] - 1);
-                double position = state[i] + offsets[i] - environment.lowerBounds()[i];
-
-                indices[i] = (int) (tilesPerFeature[i] * position / range);
+        /**
+         * @param features Features of one or more states
+         * @param from     Index of the first feature of the state
+         * @return Index of the tile the state falls in
+         */
+        public int get(double[] features, int from) {
+            int index = 0;
+            for (int i = 0; i < nFeatures; i++) {
+                index *= tilesPerFeature[i];
+                index += (int) ((features[from + i] + shifts[i]) * scales[i]);
             }
 
-            return indices;
+            return index;
         }
     }
 }
@@ -0,0 +1,353 @@
+package org.madesimple.small.agent.planning;
+
+import org.madesimple.small.agent.Agent;
+import org.madesimple.small.environment.Environment;
+import org.madesimple.small.environment.GenerativeEnvironment;
+import org.madesimple.small.environment.State;
+import org.madesimple.small.utility.Configuration;
+import org.madesimple.small.utility.RandomStream;
+
+import java.util.concurrent.*;
+
+/**
+ * <p>
+ * The MCTS Agent plans every action with Monte Carlo tree search (UCT) over the dynamics of a
+ * {@link GenerativeEnvironment}, which it queries through {@link GenerativeEnvironment#simulate} so the live episode
+ * is never disturbed. It learns nothing between episodes.
+ * </p>
+ * <p>
+ * Each iteration descends the {@link SearchTree} from the current state choosing actions by UCB1 on returns
+ * normalised to the range seen so far, adds one node, plays random actions until <em>Depth</em> steps have been taken
+ * or a terminal state is reached, and backs the discounted return up the path. A move is searched for
+ * <em>Iterations</em> iterations or, if <em>TimeBudget</em> is set, until that many milliseconds have passed, whichever
+ * comes first; the action taken most often at the root is performed. When <em>Reuse</em> is set the subtree below the
+ * performed action is kept for the next move.
+ * </p>
+ * <p>
+ * <em>Workers</em> trees are searched at once (root parallelisation), each with the full budget, its own random
+ * stream and its own arena of <em>Nodes</em> nodes, and their root statistics are summed to choose the action. With an
+ * iteration budget the choice is reproducible from the random stream of the run, however the workers are scheduled.
+ * The workers are stopped when the run ends.
+ * </p>
+ * <pre>
+ * Experiment.Agent = org.madesimple.small.agent.planning.MctsAgent
+ * Agent.Mcts.Iterations = 1000
+ * ; Agent.Mcts.TimeBudget = 50
+ * Agent.Mcts.Workers    = 1
+ * Agent.Mcts.Nodes      = 100000
+ * Agent.Mcts.Depth      = 100
+ * Agent.Mcts.Gamma      = 0.99
+ * Agent.Mcts.C          = 1.0
+ * Agent.Mcts.Reuse      = true
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class MctsAgent implements Agent {
+    private Configuration cfg;
+    private int           iterations;
+    private long          timeBudget;
+    private int           nWorkers;
+    private int           nNodes;
+    private int           depth;
+    private double        gamma;
+    private double        c;
+    private boolean       reuse;
+
+    private Searcher[]      searchers;
+    private ExecutorService pool;
+    private Future<?>[]     futures;
+    private int             lastAction;
+    private double          accumulativeReward;
+
+    public MctsAgent() {
+    }
+
+    @Override
+    public void setConfiguration(Configuration cfg) {
+        this.cfg = cfg;
+    }
+
+    @Override
+    public void initialise() {
+        iterations = cfg.getInteger("Agent.Mcts.Iterations");
+        timeBudget = cfg.hasProperty("Agent.Mcts.TimeBudget") ? cfg.getInteger("Agent.Mcts.TimeBudget") : 0;
+        nWorkers = Math.max(1, cfg.hasProperty("Agent.Mcts.Workers") ?
+                               cfg.getInteger("Agent.Mcts.Workers") : Runtime.getRuntime().availableProcessors());
+        nNodes = cfg.getInteger("Agent.Mcts.Nodes");
+        depth = cfg.getInteger("Agent.Mcts.Depth");
+        gamma = cfg.getDouble("Agent.Mcts.Gamma");
+        c = cfg.getDouble("Agent.Mcts.C");
+        reuse = cfg.getBoolean("Agent.Mcts.Reuse", true);
+
+        // Give every searcher a stream of its own
+        RandomStream random = RandomStream.current();
+        searchers = new Searcher[nWorkers];
+        for (int i = 0; i < nWorkers; i++) {
+            searchers[i] = new Searcher(random.split());
+        }
+
+        // The calling thread searches the first tree itself
+        close();
+        if (nWorkers > 1) {
+            futures = new Future<?>[nWorkers];
+            pool = Executors.newFixedThreadPool(nWorkers - 1, runnable -> {
+                Thread thread = new Thread(runnable, "mcts");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        lastAction = -1;
+    }
+
+    @Override
+    public void reset(Environment environment) {
+        accumulativeReward = 0.0d;
+        lastAction = -1;
+        for (Searcher searcher : searchers) {
+            if (searcher.tree != null) {
+                searcher.tree.clear();
+            }
+        }
+    }
+
+    @Override
+    public void add(Environment environment, State state) {
+        if (!(environment instanceof GenerativeEnvironment)) {
+            throw new RuntimeException("MctsAgent requires a GenerativeEnvironment");
+        }
+        for (Searcher searcher : searchers) {
+            searcher.prepare(state);
+        }
+    }
+
+    @Override
+    public void remove(Environment environment) {
+
+    }
+
+    @Override
+    public int act(Environment environment, State state) {
+        GenerativeEnvironment generative = (GenerativeEnvironment) environment;
+        long                  deadline   = timeBudget > 0 ? System.nanoTime() + timeBudget * 1_000_000L : 0;
+
+        // Search every tree from the current state
+        for (Searcher searcher : searchers) {
+            searcher.begin(generative, state, reuse ? lastAction : -1, deadline);
+        }
+        if (pool == null) {
+            searchers[0].call();
+        } else {
+            try {
+                for (int i = 1; i < nWorkers; i++) {
+                    futures[i] = pool.submit(searchers[i]);
+                }
+                searchers[0].call();
+                for (int i = 1; i < nWorkers; i++) {
+                    futures[i].get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e.getMessage());
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause().getMessage());
+            }
+        }
+
+        // Perform the action taken most often over all the trees, breaking ties on the mean return
+        int    nActions  = state.availableActions();
+        int    best      = 0;
+        long   bestCount = -1;
+        double bestMean  = Double.NEGATIVE_INFINITY;
+        for (int a = 0; a < nActions; a++) {
+            long   count = 0;
+            double total = 0.0d;
+            for (Searcher searcher : searchers) {
+                count += searcher.tree.count(searcher.tree.root(), a);
+                total += searcher.tree.total(searcher.tree.root(), a);
+            }
+            double mean = count > 0 ? total / count : Double.NEGATIVE_INFINITY;
+            if (count > bestCount || (count == bestCount && mean > bestMean)) {
+                best = a;
+                bestCount = count;
+                bestMean = mean;
+            }
+        }
+
+        lastAction = best;
+        return best;
+    }
+
+    @Override
+    public void receive(Environment environment, State arrived, double reward) {
+        accumulativeReward += reward;
+    }
+
+    @Override
+    public double accumulativeReward(Environment environment) {
+        return accumulativeReward;
+    }
+
+    /**
+     * Stop the worker pool.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    /**
+     * @return Total number of nodes in use over all the trees
+     */
+    public int countNodes() {
+        int nodes = 0;
+        for (Searcher searcher : searchers) {
+            nodes += searcher.tree == null ? 0 : searcher.tree.size();
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Searches one tree. Everything it needs during a search is allocated by {@link #prepare(State)}.
+     */
+    private class Searcher implements Callable<Void> {
+        private final RandomStream random;
+
+        private SearchTree tree;
+        private State      state;
+        private int[]      pathNodes;
+        private int[]      pathActions;
+        private double[]   pathRewards;
+        private double     minReturn;
+        private double     maxReturn;
+
+        private GenerativeEnvironment environment;
+        private State                 root;
+        private long                  deadline;
+
+        Searcher(RandomStream random) {
+            this.random = random;
+        }
+
+        void prepare(State state) {
+            int nActions = state.availableActions();
+            if (tree == null || tree.countActions() != nActions) {
+                tree = new SearchTree(nNodes, nActions);
+            }
+            this.state = state.copy();
+            this.pathNodes = new int[depth];
+            this.pathActions = new int[depth];
+            this.pathRewards = new double[depth];
+        }
+
+        void begin(GenerativeEnvironment environment, State root, int lastAction, long deadline) {
+            this.environment = environment;
+            this.root = root;
+            this.deadline = deadline;
+            if (lastAction == -1) {
+                tree.clear();
+            } else {
+                tree.reroot(lastAction);
+            }
+            minReturn = Double.POSITIVE_INFINITY;
+            maxReturn = Double.NEGATIVE_INFINITY;
+        }
+
+        @Override
+        public Void call() {
+            for (int i = 0; i < iterations; i++) {
+                // Check the clock every few iterations
+                if (deadline != 0 && (i & 15) == 0 && System.nanoTime() >= deadline) {
+                    break;
+                }
+                iterate();
+            }
+
+            return null;
+        }
+
+        /**
+         * Descend the tree, expand one node, roll out and back the return up.
+         */
+        private void iterate() {
+            int nActions = tree.countActions();
+            int node     = tree.root();
+            int steps    = 0;
+            state.set(root);
+
+            // Selection and expansion
+            while (steps < depth && node != SearchTree.NONE && !environment.isTerminal(state)) {
+                int action = select(node, nActions);
+                pathNodes[steps] = node;
+                pathActions[steps] = action;
+                pathRewards[steps] = environment.simulate(state, action, state, random);
+                steps++;
+
+                // Stop descending at the first action not yet in the tree, adding its node
+                int child = tree.child(node, action);
+                if (child == SearchTree.NONE) {
+                    tree.expand(node, action);
+                }
+                node = child;
+            }
+
+            // Roll out with random actions
+            double rollout  = 0.0d;
+            double discount = 1.0d;
+            for (int t = steps; t < depth && !environment.isTerminal(state); t++) {
+                rollout += discount * environment.simulate(state, random.nextInt(nActions), state, random);
+                discount *= gamma;
+            }
+
+            // Back the return up the path
+            double value = rollout;
+            for (int t = steps - 1; t >= 0; t--) {
+                value = pathRewards[t] + gamma * value;
+                tree.update(pathNodes[t], pathActions[t], value);
+                minReturn = Math.min(minReturn, value);
+                maxReturn = Math.max(maxReturn, value);
+            }
+        }
+
+        /**
+         * @return Untried action at random if there is one, otherwise the action with the best UCB1 value
+         */
+        private int select(int node, int nActions) {
+            // Try every action once first
+            int untried = 0;
+            for (int a = 0; a < nActions; a++) {
+                if (tree.count(node, a) == 0) {
+                    untried++;
+                }
+            }
+            if (untried > 0) {
+                int pick = random.nextInt(untried);
+                for (int a = 0; a < nActions; a++) {
+                    if (tree.count(node, a) == 0 && pick-- == 0) {
+                        return a;
+                    }
+                }
+            }
+
+            double range    = maxReturn > minReturn ? maxReturn - minReturn : 1.0d;
+            double logTotal = Math.log(tree.visits(node));
+            int    best     = 0;
+            double bestUcb  = Double.NEGATIVE_INFINITY;
+            for (int a = 0; a < nActions; a++) {
+                int    count = tree.count(node, a);
+                double mean  = (tree.total(node, a) / count - minReturn) / range;
+                double ucb   = mean + c * Math.sqrt(logTotal / count);
+                if (ucb > bestUcb) {
+                    best = a;
+                    bestUcb = ucb;
+                }
+            }
+
+            return best;
+        }
+    }
+}
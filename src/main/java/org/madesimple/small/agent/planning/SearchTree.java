@@ -0,0 +1,226 @@
+package org.madesimple.small.agent.planning;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A Search Tree holds the nodes of a Monte Carlo search in an arena of primitive arrays allocated once, when the tree
+ * is created. A node is an index; the statistics of taking action <em>a</em> at node <em>n</em> are held at
+ * <code>n * nActions + a</code>, as is the index of the node that action leads to, or {@link #NONE}.
+ * </p>
+ * <p>
+ * The tree is open loop: a node stands for the sequence of actions that leads to it from the root rather than for a
+ * state, so it suits stochastic environments and needs no states stored. When an action is taken the subtree below
+ * it can be kept as the new root with {@link #reroot(int)}, which compacts the kept nodes to the front of the arena.
+ * </p>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class SearchTree {
+    /**
+     * Index of a missing node.
+     */
+    public static final int NONE = -1;
+
+    private final int capacity;
+    private final int nActions;
+
+    private final int[]    children;
+    private final int[]    counts;
+    private final double[] totals;
+    private final int[]    visits;
+
+    /**
+     * Scratch space for {@link #reroot(int)}: the new index of each node, or {@link #NONE}, and a stack of nodes.
+     */
+    private final int[] mapping;
+    private final int[] stack;
+
+    private int size;
+
+    /**
+     * @param capacity Maximum number of nodes
+     * @param nActions Number of actions at every node
+     */
+    public SearchTree(int capacity, int nActions) {
+        this.capacity = Math.max(1, capacity);
+        this.nActions = nActions;
+        this.children = new int[this.capacity * nActions];
+        this.counts = new int[this.capacity * nActions];
+        this.totals = new double[this.capacity * nActions];
+        this.visits = new int[this.capacity];
+        this.mapping = new int[this.capacity];
+        this.stack = new int[this.capacity];
+        clear();
+    }
+
+    /**
+     * Remove every node but a new, unvisited root.
+     */
+    public void clear() {
+        size = 0;
+        allocate();
+    }
+
+    /**
+     * @return Index of the root
+     */
+    public int root() {
+        return 0;
+    }
+
+    /**
+     * @return Number of nodes in use
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return Maximum number of nodes
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Number of actions at every node
+     */
+    public int countActions() {
+        return nActions;
+    }
+
+    /**
+     * @param node   Node
+     * @param action Action
+     * @return Node <em>action</em> leads to from <em>node</em>, or {@link #NONE} if it has not been expanded
+     */
+    public int child(int node, int action) {
+        return children[node * nActions + action];
+    }
+
+    /**
+     * Add the node <em>action</em> leads to from <em>node</em>.
+     *
+     * @param node   Node
+     * @param action Action
+     * @return The new node, or {@link #NONE} if the arena is full
+     */
+    public int expand(int node, int action) {
+        if (size == capacity) {
+            return NONE;
+        }
+
+        int child = allocate();
+        children[node * nActions + action] = child;
+        return child;
+    }
+
+    /**
+     * @param node Node
+     * @return Number of times <em>node</em> has been visited
+     */
+    public int visits(int node) {
+        return visits[node];
+    }
+
+    /**
+     * @param node   Node
+     * @param action Action
+     * @return Number of times <em>action</em> has been taken at <em>node</em>
+     */
+    public int count(int node, int action) {
+        return counts[node * nActions + action];
+    }
+
+    /**
+     * @param node   Node
+     * @param action Action
+     * @return Sum of the returns that followed taking <em>action</em> at <em>node</em>
+     */
+    public double total(int node, int action) {
+        return totals[node * nActions + action];
+    }
+
+    /**
+     * Record a return that followed taking <em>action</em> at <em>node</em>.
+     *
+     * @param node   Node
+     * @param action Action
+     * @param value  Return
+     */
+    public void update(int node, int action, double value) {
+        int edge = node * nActions + action;
+        counts[edge]++;
+        totals[edge] += value;
+        visits[node]++;
+    }
+
+    /**
+     * Keep the subtree that <em>action</em> leads to from the root as the new root, discarding the rest of the tree.
+     * The kept nodes keep their statistics. If the action was never expanded the tree is cleared.
+     *
+     * @param action Action taken at the root
+     */
+    public void reroot(int action) {
+        int top = child(root(), action);
+        if (top == NONE) {
+            clear();
+            return;
+        }
+
+        // Mark the nodes of the subtree
+        Arrays.fill(mapping, 0, size, NONE);
+        int depth = 0;
+        stack[depth++] = top;
+        while (depth > 0) {
+            int node = stack[--depth];
+            mapping[node] = 0;
+            for (int a = 0, edge = node * nActions; a < nActions; a++, edge++) {
+                if (children[edge] != NONE) {
+                    stack[depth++] = children[edge];
+                }
+            }
+        }
+
+        // Number the kept nodes in the order they were created; a node is created after its parent, so the subtree's
+        // root becomes node 0 and no node moves to an index after its own
+        int kept = 0;
+        for (int node = top; node < size; node++) {
+            if (mapping[node] != NONE) {
+                mapping[node] = kept++;
+            }
+        }
+
+        // Move the kept nodes down, renumbering their children
+        for (int node = top; node < size; node++) {
+            int to = mapping[node];
+            if (to == NONE) {
+                continue;
+            }
+            int from = node * nActions;
+            int dest = to * nActions;
+            for (int a = 0; a < nActions; a++) {
+                int child = children[from + a];
+                children[dest + a] = child == NONE ? NONE : mapping[child];
+                counts[dest + a] = counts[from + a];
+                totals[dest + a] = totals[from + a];
+            }
+            visits[to] = visits[node];
+        }
+        size = kept;
+    }
+
+    /**
+     * @return Index of a new, unvisited node
+     */
+    private int allocate() {
+        int node = size++;
+        int edge = node * nActions;
+        Arrays.fill(children, edge, edge + nActions, NONE);
+        Arrays.fill(counts, edge, edge + nActions, 0);
+        Arrays.fill(totals, edge, edge + nActions, 0.0d);
+        visits[node] = 0;
+        return node;
+    }
+}
@@ -1,7 +1,8 @@
 package org.madesimple.small.agent.strategy;
 
+import org.madesimple.small.utility.RandomStream;
+
 import java.util.Arrays;
-import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * @author Peter Scopes (peter.scopes@gmail.com)
@@ -28,6 +29,18 @@ public class Argmax {
      * @return argmax action
      */
     public static int select(double[] actionValuePairs, boolean random) {
+        return select(actionValuePairs, random ? RandomStream.current() : null);
+    }
+
+    /**
+     * Selects the argument maximum (argmax) ranked action for the given set of actionValuePairs.
+     * Equally best valued actions are decided between with <em>random</em>.
+     *
+     * @param actionValuePairs action-value pairs
+     * @param random           Random stream to distinguish best action, null to choose the first
+     * @return argmax action
+     */
+    public static int select(double[] actionValuePairs, RandomStream random) {
         // Initialise with the first element
         int    nTies      = 1;
         int    bestAction = 0;
@@ -44,7 +57,7 @@ public class Argmax {
             // If this action-value pair is equal to the current best
             else if (actionValuePairs[i] == bestValue) {
                 // Randomly determine the "best" action
-                if (random && ThreadLocalRandom.current().nextInt(++nTies) == 0) {
+                if (random != null && random.nextInt(++nTies) == 0) {
                     bestAction = i;
                 }
             }
@@ -176,6 +189,25 @@ public class Argmax {
         return max;
     }
 
+    /**
+     * Calculates, in a single pass, the expected value when the argmax action is chosen with probability
+     * 1-<em>epsilon</em> and a uniformly random action otherwise.
+     *
+     * @param actionValuePairs action-value pairs
+     * @param epsilon          probability of a random action
+     * @return expected value
+     */
+    public static double expectation(double[] actionValuePairs, double epsilon) {
+        double max = actionValuePairs[0];
+        double sum = actionValuePairs[0];
+        for (int i = 1; i < actionValuePairs.length; i++) {
+            max = Math.max(max, actionValuePairs[i]);
+            sum += actionValuePairs[i];
+        }
+
+        return (epsilon * sum / actionValuePairs.length) + ((1.0 - epsilon) * max);
+    }
+
     /**
      * @param actionValuePairs action-value pairs
      * @return maximum value
@@ -3,8 +3,7 @@ package org.madesimple.small.agent.strategy;
 import org.madesimple.small.agent.Strategy;
 import org.madesimple.small.utility.Configuration;
 import org.madesimple.small.utility.Decay;
-
-import java.util.concurrent.ThreadLocalRandom;
+import org.madesimple.small.utility.RandomStream;
 
 /**
  * <p>
@@ -18,6 +17,11 @@ import java.util.concurrent.ThreadLocalRandom;
  * is.
  * </p>
  * <p>
+ * The exponentials are taken of the values less their maximum, so they cannot overflow however large the values
+ * are, and are computed once per selection into a reusable buffer. The buffers belong to the strategy, so a
+ * Boltzmann strategy must not be shared between threads; give each thread, or each agent, a strategy of its own.
+ * </p>
+ * <p>
  * Properties required to run Boltzmann in a configuration file:
  * </p>
  * <pre>
@@ -35,9 +39,16 @@ import java.util.concurrent.ThreadLocalRandom;
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
 public class Boltzmann implements Strategy {
+    private RandomStream random = RandomStream.current();
 
     private Decay tau;
 
+    /**
+     * Scratch buffers reused between selections.
+     */
+    private double[] weights  = new double[0];
+    private double[] uniforms = new double[0];
+
     public Boltzmann() {
 
     }
@@ -45,12 +56,13 @@ public class Boltzmann implements Strategy {
         setConfiguration(cfg);
     }
     public Boltzmann(double tau, boolean shouldDecay, Decay.Type type, double over, double minimum, int start) {
-        double L = 0.0, k = 0.0;
-        this.tau = new Decay(type, L, k, minimum, over, tau, over);
+        set(tau, shouldDecay, type, over, minimum, start);
     }
 
     @Override
     public void setConfiguration(Configuration cfg) {
+        random = RandomStream.current();
+
         double     tau         = cfg.getDouble("Strategy.Boltzmann.Tau");
         boolean    shouldDecay = cfg.getBoolean("Strategy.Boltzmann.ShouldDecay");
         Decay.Type type        = Decay.Type.valueOf(cfg.getString("Strategy.Boltzmann.Type").toUpperCase());
@@ -62,8 +74,7 @@ public class Boltzmann implements Strategy {
     }
 
     private void set(double tau, boolean shouldDecay, Decay.Type type, double over, double minimum, int start) {
-        double L = 0.0, k = 0.0;
-        this.tau = new Decay(type, L, k, minimum, over, tau, over);
+        this.tau = new Decay(shouldDecay ? type : Decay.Type.CONSTANT, over, 1.0d, minimum, tau, start, over);
     }
 
     /**
@@ -73,36 +84,119 @@ public class Boltzmann implements Strategy {
      */
     @Override
     public int select(double[] actionValuePairs, int time) {
-        double random     = ThreadLocalRandom.current().nextDouble();
-        double lowerBound;
-        double upperBound = 0.0;
-        double sumExp     = sumExponent(actionValuePairs, time);
+        // Look up the temperature once for the whole selection
+        double temperature = tau.decay(time);
+        if (temperature <= 0.0) {
+            return Argmax.select(actionValuePairs, random);
+        }
+
+        return sample(actionValuePairs, 0, actionValuePairs.length, temperature, random.nextDouble());
+    }
+
+    /**
+     * Selects an action for each of <em>nRows</em> rows of action values stored one after another in
+     * <em>actionValues</em>; the action of row <em>r</em> is written into <em>actions[r]</em>. The temperature is
+     * looked up and the uniforms drawn once for the whole batch.
+     *
+     * @param actionValues Rows of action values, <em>nActions</em> per row
+     * @param nActions     Number of actions per row
+     * @param nRows        Number of rows
+     * @param time         Time step
+     * @param actions      Array to write the selected actions into
+     */
+    public void select(double[] actionValues, int nActions, int nRows, int time, int[] actions) {
+        double temperature = tau.decay(time);
+        if (uniforms.length < nRows) {
+            uniforms = new double[nRows];
+        }
+        random.fill(uniforms, 0, nRows);
+
+        for (int r = 0, offset = 0; r < nRows; r++, offset += nActions) {
+            if (temperature <= 0.0) {
+                actions[r] = argmax(actionValues, offset, nActions);
+            } else {
+                actions[r] = sample(actionValues, offset, nActions, temperature, uniforms[r]);
+            }
+        }
+    }
+
+    /**
+     * Calculates the expected value under the Boltzmann soft max.
+     *
+     * @param actionValuePairs An array of values for the index action choice
+     * @param time             Time step
+     * @return The expected value
+     */
+    @Override
+    public double expectation(double[] actionValuePairs, int time) {
+        double temperature = tau.decay(time);
+        if (temperature <= 0.0) {
+            return Argmax.max(actionValuePairs);
+        }
 
+        double sumExp      = exponentiate(actionValuePairs, 0, actionValuePairs.length, temperature);
+        double sumWeighted = 0.0;
         for (int i = 0; i < actionValuePairs.length; i++) {
-            lowerBound = upperBound;
-            upperBound += getExponent(actionValuePairs[i], time) / sumExp;
-            if (random >= lowerBound && random < upperBound) {
+            sumWeighted += weights[i] * actionValuePairs[i];
+        }
+
+        return sumWeighted / sumExp;
+    }
+
+    /**
+     * Sample an action from one row with a single cumulative scan over the exponentials.
+     */
+    private int sample(double[] actionValues, int offset, int nActions, double temperature, double draw) {
+        double target     = draw * exponentiate(actionValues, offset, nActions, temperature);
+        double cumulative = 0.0;
+        for (int i = 0; i < nActions - 1; i++) {
+            cumulative += weights[i];
+            if (target < cumulative) {
                 return i;
             }
         }
 
-        return 0;
+        return nActions - 1;
     }
 
-    private double sumExponent(double[] actionValuePairs, int time) {
+    /**
+     * Write <code>exp((value - max) / temperature)</code> of each action of one row into the scratch buffer. Shifting
+     * by the maximum leaves the probabilities unchanged but keeps every exponential in (0, 1], so large values cannot
+     * overflow.
+     *
+     * @return Sum of the exponentials, at least 1
+     */
+    private double exponentiate(double[] actionValues, int offset, int nActions, double temperature) {
+        if (weights.length < nActions) {
+            weights = new double[nActions];
+        }
+
+        double max = actionValues[offset];
+        for (int i = 1; i < nActions; i++) {
+            max = Math.max(max, actionValues[offset + i]);
+        }
+
         double sum = 0.0;
-        for (double value : actionValuePairs) {
-            sum += getExponent(value, time);
+        for (int i = 0; i < nActions; i++) {
+            weights[i] = Math.exp((actionValues[offset + i] - max) / temperature);
+            sum += weights[i];
         }
 
         return sum;
     }
 
-    private double getExponent(double value, int time) {
-        if (value == 0.0) {
-            return Math.exp(0.0);
-        } else {
-            return Math.exp(value / tau.decay(time));
+    private int argmax(double[] actionValues, int offset, int nActions) {
+        int nTies = 1;
+        int best  = 0;
+        for (int i = 1; i < nActions; i++) {
+            if (actionValues[offset + i] > actionValues[offset + best]) {
+                best = i;
+                nTies = 1;
+            } else if (actionValues[offset + i] == actionValues[offset + best] && random.nextInt(++nTies) == 0) {
+                best = i;
+            }
         }
+
+        return best;
     }
 }
@@ -0,0 +1,46 @@
+package org.madesimple.small.agent.strategy;
+
+import org.madesimple.small.utility.Configuration;
+
+/**
+ * <p>
+ * CountBonus selects the action with the largest value plus a bonus of <code>&beta; / sqrt(n + 1)</code>, where
+ * <em>n</em> is the number of times the action has been taken in the state. Unlike {@link UCB} the bonus does not
+ * grow with the number of visits to the state, so exploration dies away once every action is well tried.
+ * </p>
+ * <p>
+ * Properties required to run CountBonus in a configuration file:
+ * </p>
+ * <pre>
+ * ## Count Bonus Selection Settings
+ * Strategy.CountBonus.Beta = 1.0
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class CountBonus extends ExplorationBonus {
+    private double beta;
+
+    public CountBonus() {
+        this(1.0d);
+    }
+
+    public CountBonus(Configuration cfg) {
+        setConfiguration(cfg);
+    }
+
+    public CountBonus(double beta) {
+        this.beta = beta;
+    }
+
+    @Override
+    public void setConfiguration(Configuration cfg) {
+        super.setConfiguration(cfg);
+        beta = cfg.getDouble("Strategy.CountBonus.Beta");
+    }
+
+    @Override
+    protected double bonus(int count, int total) {
+        return beta / Math.sqrt(count + 1);
+    }
+}
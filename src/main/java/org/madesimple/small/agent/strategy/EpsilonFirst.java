@@ -2,8 +2,7 @@ package org.madesimple.small.agent.strategy;
 
 import org.madesimple.small.agent.Strategy;
 import org.madesimple.small.utility.Configuration;
-
-import java.util.concurrent.ThreadLocalRandom;
+import org.madesimple.small.utility.RandomStream;
 
 /**
  * <p>
@@ -27,6 +26,8 @@ import java.util.concurrent.ThreadLocalRandom;
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
 public class EpsilonFirst implements Strategy {
+    private RandomStream random = RandomStream.current();
+
     /**
      * The number of steps in the cycle.
      */
@@ -57,6 +58,8 @@ public class EpsilonFirst implements Strategy {
 
     @Override
     public void setConfiguration(Configuration cfg) {
+        random = RandomStream.current();
+
         double epsilon = cfg.getDouble("Strategy.EpsilonFirst.Epsilon");
         int    N       = cfg.getInteger("Strategy.EpsilonFirst.N");
 
@@ -71,9 +74,14 @@ public class EpsilonFirst implements Strategy {
     @Override
     public int select(double[] actionValuePairs, int time) {
         if ((time % N) < epsilonN) {
-            return ThreadLocalRandom.current().nextInt(actionValuePairs.length);
+            return random.nextInt(actionValuePairs.length);
         } else {
-            return Argmax.select(actionValuePairs);
+            return Argmax.select(actionValuePairs, random);
         }
     }
+
+    @Override
+    public double expectation(double[] actionValuePairs, int time) {
+        return Argmax.expectation(actionValuePairs, (time % N) < epsilonN ? 1.0 : 0.0);
+    }
 }
@@ -3,8 +3,7 @@ package org.madesimple.small.agent.strategy;
 import org.madesimple.small.agent.Strategy;
 import org.madesimple.small.utility.Configuration;
 import org.madesimple.small.utility.Decay;
-
-import java.util.concurrent.ThreadLocalRandom;
+import org.madesimple.small.utility.RandomStream;
 
 /**
  * <p>
@@ -34,6 +33,8 @@ import java.util.concurrent.ThreadLocalRandom;
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
 public class EpsilonGreedy implements Strategy {
+    private RandomStream random = RandomStream.current();
+
     /**
      * The probability that a random action will be taken over the greedy action.
      */
@@ -51,6 +52,8 @@ public class EpsilonGreedy implements Strategy {
 
     @Override
     public void setConfiguration(Configuration cfg) {
+        random = RandomStream.current();
+
         double     epsilon = cfg.getDouble("Strategy.EpsilonGreedy.Epsilon");
         Decay.Type type    = Decay.Type.valueOf(cfg.getString("Strategy.EpsilonGreedy.Type").toUpperCase());
         double     over    = cfg.getDouble("Strategy.EpsilonGreedy.Over");
@@ -76,10 +79,22 @@ public class EpsilonGreedy implements Strategy {
     @Override
     public int select(double[] actionValuePairs, int time) {
         // With epsilon probability choose a random action
-        if (epsilon.decay(time) > ThreadLocalRandom.current().nextDouble()) {
-            return ThreadLocalRandom.current().nextInt(actionValuePairs.length);
+        if (epsilon.decay(time) > random.nextDouble()) {
+            return random.nextInt(actionValuePairs.length);
         } else {
-            return Argmax.select(actionValuePairs);
+            return Argmax.select(actionValuePairs, random);
         }
     }
+
+    /**
+     * Calculates the expected value under the Epsilon Greedy selection mechanism in a single pass.
+     *
+     * @param actionValuePairs An array of values for the index action choice
+     * @param time             Time step
+     * @return The expected value
+     */
+    @Override
+    public double expectation(double[] actionValuePairs, int time) {
+        return Argmax.expectation(actionValuePairs, epsilon.decay(time));
+    }
 }
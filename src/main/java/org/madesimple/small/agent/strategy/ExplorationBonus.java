@@ -0,0 +1,72 @@
+package org.madesimple.small.agent.strategy;
+
+import org.madesimple.small.agent.Strategy;
+import org.madesimple.small.agent.learning.storage.VisitCounts;
+import org.madesimple.small.utility.Configuration;
+import org.madesimple.small.utility.RandomStream;
+
+/**
+ * <p>
+ * Exploration Bonus strategies direct exploration towards the actions that have been tried least: each action value
+ * is raised by a bonus that shrinks as the action is visited more often in that state, and the action with the
+ * largest sum is selected. Visits are counted in a {@link VisitCounts} table keyed by the same row keys as the
+ * Q-Table, which is counted when the action is selected.
+ * </p>
+ * <p>
+ * Without a state key, see {@link #select(double[], int)}, every selection shares one row of counts.
+ * </p>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public abstract class ExplorationBonus implements Strategy {
+    private RandomStream random = RandomStream.current();
+
+    protected VisitCounts visits;
+
+    public ExplorationBonus() {
+        visits = new VisitCounts();
+    }
+
+    @Override
+    public void setConfiguration(Configuration cfg) {
+        random = RandomStream.current();
+        visits.reset();
+    }
+
+    @Override
+    public int select(double[] actionValuePairs, int time) {
+        return select(0, actionValuePairs, time);
+    }
+
+    @Override
+    public int select(int state, double[] actionValuePairs, int time) {
+        int row   = visits.row(state, actionValuePairs.length);
+        int total = visits.total(row);
+
+        // Find the action with the largest bonus value, randomly deciding between ties
+        int    nTies      = 1;
+        int    bestAction = 0;
+        double bestValue  = actionValuePairs[0] + bonus(visits.count(row, 0), total);
+        for (int i = 1; i < actionValuePairs.length; i++) {
+            double value = actionValuePairs[i] + bonus(visits.count(row, i), total);
+            if (value > bestValue) {
+                bestValue = value;
+                bestAction = i;
+                nTies = 1;
+            } else if (value == bestValue && random.nextInt(++nTies) == 0) {
+                bestAction = i;
+            }
+        }
+
+        visits.increment(row, bestAction);
+
+        return bestAction;
+    }
+
+    /**
+     * @param count Number of times the action has been taken in the state
+     * @param total Number of times any action has been taken in the state
+     * @return Bonus added to the value of the action
+     */
+    protected abstract double bonus(int count, int total);
+}
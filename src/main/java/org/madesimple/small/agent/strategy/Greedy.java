@@ -2,15 +2,17 @@ package org.madesimple.small.agent.strategy;
 
 import org.madesimple.small.agent.Strategy;
 import org.madesimple.small.utility.Configuration;
+import org.madesimple.small.utility.RandomStream;
 
 /**
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
 public class Greedy implements Strategy {
+    private RandomStream random = RandomStream.current();
 
     @Override
     public void setConfiguration(Configuration cfg) {
-        // Nothing to do...
+        random = RandomStream.current();
     }
 
     /**
@@ -19,6 +21,6 @@ public class Greedy implements Strategy {
      */
     @Override
     public int select(double[] actionValuePairs, int time) {
-        return Argmax.select(actionValuePairs);
+        return Argmax.select(actionValuePairs, random);
     }
 }
@@ -2,26 +2,32 @@ package org.madesimple.small.agent.strategy;
 
 import org.madesimple.small.agent.Strategy;
 import org.madesimple.small.utility.Configuration;
-
-import java.util.concurrent.ThreadLocalRandom;
+import org.madesimple.small.utility.RandomStream;
 
 /**
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
 public class InverseNGreedy implements Strategy {
+    private RandomStream random = RandomStream.current();
+
     @Override
     public void setConfiguration(Configuration cfg) {
-        // nothing to do...
+        random = RandomStream.current();
     }
 
     @Override
     public int select(double[] actionValuePairs, int time) {
         double epsilon = time > 0 ? (1.0 / (double) time) : 1.0;
 
-        if (epsilon > ThreadLocalRandom.current().nextDouble()) {
-            return ThreadLocalRandom.current().nextInt(actionValuePairs.length);
+        if (epsilon > random.nextDouble()) {
+            return random.nextInt(actionValuePairs.length);
         } else {
-            return Argmax.select(actionValuePairs);
+            return Argmax.select(actionValuePairs, random);
         }
     }
+
+    @Override
+    public double expectation(double[] actionValuePairs, int time) {
+        return Argmax.expectation(actionValuePairs, time > 0 ? (1.0 / (double) time) : 1.0);
+    }
 }
@@ -2,17 +2,17 @@ package org.madesimple.small.agent.strategy;
 
 import org.madesimple.small.agent.Strategy;
 import org.madesimple.small.utility.Configuration;
-
-import java.util.concurrent.ThreadLocalRandom;
+import org.madesimple.small.utility.RandomStream;
 
 /**
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
 public class Random implements Strategy {
+    private RandomStream random = RandomStream.current();
 
     @Override
     public void setConfiguration(Configuration cfg) {
-        // nothing to do...
+        random = RandomStream.current();
     }
 
     /**
@@ -24,6 +24,16 @@ public class Random implements Strategy {
      */
     @Override
     public int select(double[] actionValuePairs, int time) {
-        return ThreadLocalRandom.current().nextInt(actionValuePairs.length);
+        return random.nextInt(actionValuePairs.length);
+    }
+
+    /**
+     * @param actionValuePairs An array of values for the index action choice
+     * @param time             Time step
+     * @return The mean value
+     */
+    @Override
+    public double expectation(double[] actionValuePairs, int time) {
+        return Argmax.sum(actionValuePairs) / actionValuePairs.length;
     }
 }
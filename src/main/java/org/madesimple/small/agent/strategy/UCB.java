@@ -0,0 +1,60 @@
+package org.madesimple.small.agent.strategy;
+
+import org.madesimple.small.utility.Configuration;
+
+/**
+ * <p>
+ * UCB is an implementation of the UCB1 action selection strategy. The bonus of an action is
+ * <code>c * sqrt(ln(N) / n)</code>, where <em>N</em> is the number of visits to the state and <em>n</em> the number
+ * of times the action has been taken there; untried actions are always selected first.
+ * </p>
+ * <p>
+ * Properties required to run UCB in a configuration file:
+ * </p>
+ * <pre>
+ * ## UCB Selection Settings
+ * Strategy.UCB.C = 1.0
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class UCB extends ExplorationBonus {
+    private double c;
+    private int    logTotal;
+    private double logValue;
+
+    public UCB() {
+        this(Math.sqrt(2.0d));
+    }
+
+    public UCB(Configuration cfg) {
+        setConfiguration(cfg);
+    }
+
+    public UCB(double c) {
+        this.c = c;
+        this.logTotal = -1;
+    }
+
+    @Override
+    public void setConfiguration(Configuration cfg) {
+        super.setConfiguration(cfg);
+        c = cfg.getDouble("Strategy.UCB.C");
+        logTotal = -1;
+    }
+
+    @Override
+    protected double bonus(int count, int total) {
+        if (count == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        // The total is the same for every action of a selection
+        if (total != logTotal) {
+            logTotal = total;
+            logValue = Math.log(total);
+        }
+
+        return c * Math.sqrt(logValue / count);
+    }
+}
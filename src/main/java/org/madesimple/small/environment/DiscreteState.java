@@ -3,9 +3,23 @@ package org.madesimple.small.environment;
 import org.madesimple.small.utility.Hash;
 
 /**
+ * <p>
+ * The hash code of a DiscreteState is used as its key by the learning algorithms and is looked up several times per
+ * step, so it is computed once and cached. Extending classes must call {@link #invalidate()} whenever their state
+ * changes and should override {@link #key()} with a computation that does not allocate.
+ * </p>
+ *
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
 public abstract class DiscreteState implements State {
+    private int     key;
+    private boolean hashed;
+
+    /**
+     * @param feature feature
+     * @return Value of <em>feature</em>, without allocating
+     */
+    public abstract int tuple(int feature);
 
     /**
      * Convert the state to an integer array.
@@ -20,6 +34,27 @@ public abstract class DiscreteState implements State {
      * @return hash code representation
      */
     public int hashCode() {
+        if (!hashed) {
+            key = key();
+            hashed = true;
+        }
+
+        return key;
+    }
+
+    /**
+     * Compute the hash code of the state, by default from {@link #tuple()}.
+     *
+     * @return hash code representation
+     */
+    protected int key() {
         return Hash.pair(tuple());
     }
+
+    /**
+     * Discard the cached hash code; must be called whenever the state changes.
+     */
+    protected void invalidate() {
+        hashed = false;
+    }
 }
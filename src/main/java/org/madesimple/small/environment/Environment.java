@@ -2,6 +2,8 @@ package org.madesimple.small.environment;
 
 import org.madesimple.small.agent.Agent;
 import org.madesimple.small.utility.Configurable;
+import org.madesimple.small.utility.EventBus;
+import org.madesimple.small.utility.RandomStream;
 
 /**
  * <p>
@@ -100,4 +102,31 @@ public interface Environment extends Configurable {
      * @return True if all agents are in a terminal state, false otherwise
      */
     boolean isTerminal();
+
+    /**
+     * Visualisers and other onlookers subscribe to the events of an environment here. An environment only makes its
+     * events while something is subscribed, so they cost nothing otherwise.
+     *
+     * @return Bus the environment publishes its events on, or null if it publishes none
+     */
+    default EventBus<EnvironmentEvent> events() {
+        return null;
+    }
+
+    /**
+     * Random streams the environment keeps besides the stream of the run, such as one for each agent to act with, in
+     * the same order every run. Checkpoints save and restore their states.
+     *
+     * @return Streams of the environment, empty if it draws only from the stream of the run
+     */
+    default RandomStream[] streams() {
+        return new RandomStream[0];
+    }
+
+    /**
+     * Release any threads or other resources held by the environment; called when a run ends. The environment may be
+     * initialised again afterwards.
+     */
+    default void close() {
+    }
 }
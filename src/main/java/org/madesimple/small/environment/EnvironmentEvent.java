@@ -0,0 +1,43 @@
+package org.madesimple.small.environment;
+
+import org.madesimple.small.utility.EventBus;
+
+/**
+ * <p>
+ * Something that happened in an environment, published on its {@link Environment#events() event bus}. The state is a
+ * copy taken when the event was made, so listeners may keep it and may read it on another thread.
+ * </p>
+ * <dl>
+ * <dt>{@link Type#INITIALISED}</dt>
+ * <dd>The environment was initialised; anything drawn from it before may be out of date.</dd>
+ * <dt>{@link Type#RESTARTED}</dt>
+ * <dd>An episode began, in <em>state</em> if the environment gives it.</dd>
+ * <dt>{@link Type#MOVED}</dt>
+ * <dd>A turn was performed, arriving in <em>state</em>. Published as a step, see {@link EventBus#publishStep}.</dd>
+ * </dl>
+ * <p>
+ * In multi-agent environments the state is that of the first agent.
+ * </p>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class EnvironmentEvent {
+    public enum Type {
+        INITIALISED, RESTARTED, MOVED
+    }
+
+    public final Environment source;
+    public final Type        type;
+    public final State       state;
+
+    /**
+     * @param source Environment
+     * @param type   Type of event
+     * @param state  State, which is copied, or null
+     */
+    public EnvironmentEvent(Environment source, Type type, State state) {
+        this.source = source;
+        this.type = type;
+        this.state = state == null ? null : state.copy();
+    }
+}
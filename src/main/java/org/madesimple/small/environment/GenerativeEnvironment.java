@@ -0,0 +1,53 @@
+package org.madesimple.small.environment;
+
+import org.madesimple.small.utility.RandomStream;
+
+/**
+ * <p>
+ * A Generative Environment can say what would happen if an agent performed an action from any state, without the
+ * action being performed. Simulating a step changes nothing in the environment: the states of its agents, its clock
+ * and its observers are untouched, no agent is called and nothing is allocated, so planners and samplers may query the
+ * dynamics as often as they like, including in the middle of a live episode.
+ * </p>
+ * <p>
+ * Stochastic dynamics draw their random numbers from the stream given. The overload without one draws from the stream
+ * bound to the calling thread, which during a run is the stream the environment itself draws from; pass a stream of
+ * its own, for example one split from the run's, to leave the live episode's random numbers as they would have been.
+ * </p>
+ * <p>
+ * The agents of multi-agent environments are simulated alone, as if no other agent were present.
+ * </p>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public interface GenerativeEnvironment extends Environment {
+
+    /**
+     * Simulate performing <em>action</em> from <em>from</em>, drawing from the current thread's random stream.
+     *
+     * @param from   State to act from
+     * @param action Action to perform
+     * @param out    State to write the state arrived in to; may be <em>from</em>
+     * @return Reward for the transition
+     */
+    default double simulate(State from, int action, State out) {
+        return simulate(from, action, out, RandomStream.current());
+    }
+
+    /**
+     * Simulate performing <em>action</em> from <em>from</em>.
+     *
+     * @param from   State to act from
+     * @param action Action to perform
+     * @param out    State to write the state arrived in to; may be <em>from</em>
+     * @param random Stream to draw any random numbers from
+     * @return Reward for the transition
+     */
+    double simulate(State from, int action, State out, RandomStream random);
+
+    /**
+     * @param state State
+     * @return True if <em>state</em> is terminal
+     */
+    boolean isTerminal(State state);
+}
@@ -74,12 +74,13 @@ public abstract class JointState implements State {
 
     @Override
     public int hashCode() {
-        int[] hashes = new int[states.size()];
-        for (int i = 0; i < states.size(); i++) {
-            hashes[i] = states.get(i).hashCode();
+        // Chain the pairing as Hash.pair(int...) does, without allocating
+        int hash = states.get(0).hashCode();
+        for (int i = 1; i < states.size(); i++) {
+            hash = Hash.pair(hash, states.get(i).hashCode());
         }
 
-        return Hash.pair(hashes);
+        return hash;
     }
 
     @Override
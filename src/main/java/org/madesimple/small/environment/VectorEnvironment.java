@@ -0,0 +1,323 @@
+package org.madesimple.small.environment;
+
+import org.madesimple.small.agent.Agent;
+import org.madesimple.small.utility.Configurable;
+import org.madesimple.small.utility.Configuration;
+import org.madesimple.small.utility.RandomStream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * <p>
+ * A Vector Environment owns <em>Copies</em> independent copies of a registered {@link TurnBasedEnvironment} and steps
+ * them in lockstep, the copies being partitioned between <em>Workers</em> threads: the caller of {@link #step(Actor)}
+ * and a fixed pool of the rest. A copy is restarted as soon as it reaches a terminal state or its maximum number of
+ * turns, so every call to {@link #step(Actor)} performs exactly one turn in every copy.
+ * </p>
+ * <p>
+ * Each agent slot of each copy is filled by an agent that defers to the {@link Actor} given to {@link #step(Actor)};
+ * slot <code>copy * agentsPerCopy() + agent</code> identifies it. The actor is called from the worker threads,
+ * concurrently for different copies but never concurrently for the same slot. The states it is given belong to the
+ * environments and change on the next turn, so they must be copied to be kept.
+ * </p>
+ * <p>
+ * Each copy draws its random numbers from its own stream, split from the stream of the thread that initialises the
+ * vector, so a seeded run is reproducible whatever the number of workers.
+ * </p>
+ * <pre>
+ * VectorEnvironment.Copies  = 8
+ * VectorEnvironment.Workers = 4
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class VectorEnvironment implements Configurable {
+
+    /**
+     * Chooses actions for, and receives the rewards of, the agent slots of a vector environment.
+     */
+    public interface Actor {
+        /**
+         * @param slot  Agent slot
+         * @param state State to act from
+         * @return Action to perform
+         */
+        int act(int slot, State state);
+
+        /**
+         * @param slot     Agent slot
+         * @param arrived  State the slot arrived in
+         * @param reward   Numeric amount
+         * @param terminal True if <em>arrived</em> is terminal
+         */
+        default void receive(int slot, State arrived, double reward, boolean terminal) {
+        }
+    }
+
+    private final EnvironmentRegister register;
+
+    private Configuration          cfg;
+    private int                    nCopies;
+    private int                    nWorkers;
+    private TurnBasedEnvironment[] copies;
+    private Slot[]                 slots;
+    private int                    agentsPerCopy;
+    private int[]                  turns;
+    private boolean[]              restarted;
+    private double[]               rewards;
+    private boolean[]              terminals;
+    private long                   steps;
+    private long                   episodes;
+
+    private volatile Actor       actor;
+    private ExecutorService      pool;
+    private List<Callable<Void>> tasks;
+    private Future<?>[]          futures;
+
+    public VectorEnvironment(EnvironmentRegister register) {
+        this.register = register;
+    }
+
+    @Override
+    public void setConfiguration(Configuration cfg) {
+        this.cfg = cfg;
+        this.nCopies = cfg.getInteger("VectorEnvironment.Copies");
+        this.nWorkers = cfg.hasProperty("VectorEnvironment.Workers") ?
+                        cfg.getInteger("VectorEnvironment.Workers") : Runtime.getRuntime().availableProcessors();
+        this.nWorkers = Math.max(1, Math.min(nWorkers, nCopies));
+    }
+
+    /**
+     * Create, initialise and restart every copy, and start the worker pool.
+     */
+    public void initialise() {
+        close();
+
+        copies = new TurnBasedEnvironment[nCopies];
+        slots = null;
+        turns = new int[nCopies];
+        restarted = new boolean[nCopies];
+        steps = 0;
+        episodes = 0;
+
+        RandomStream base = RandomStream.current();
+        try {
+            for (int c = 0; c < nCopies; c++) {
+                // Give every copy a stream of its own
+                RandomStream.bind(base.split());
+                copies[c] = (TurnBasedEnvironment) register.getEnvironment();
+                copies[c].setConfiguration(cfg);
+                copies[c].initialise();
+
+                if (slots == null) {
+                    agentsPerCopy = Math.max(1, copies[c].requiredAgentCount());
+                    slots = new Slot[nCopies * agentsPerCopy];
+                    rewards = new double[slots.length];
+                    terminals = new boolean[slots.length];
+                }
+                for (int a = 0; a < agentsPerCopy; a++) {
+                    int slot = c * agentsPerCopy + a;
+                    slots[slot] = new Slot(slot);
+                    copies[c].add(slots[slot]);
+                }
+                copies[c].restart();
+            }
+        } finally {
+            RandomStream.bind(base);
+        }
+
+        // Partition the copies between the workers
+        tasks = new ArrayList<>(nWorkers);
+        for (int w = 0; w < nWorkers; w++) {
+            final int from = (int) ((long) nCopies * w / nWorkers);
+            final int to   = (int) ((long) nCopies * (w + 1) / nWorkers);
+            tasks.add(() -> {
+                for (int c = from; c < to; c++) {
+                    step(c);
+                }
+                return null;
+            });
+        }
+        if (nWorkers > 1) {
+            futures = new Future<?>[nWorkers];
+            pool = Executors.newFixedThreadPool(nWorkers - 1, runnable -> {
+                Thread thread = new Thread(runnable, "vector-environment");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Perform one turn in every copy, restarting the copies that finish their episode.
+     *
+     * @param actor Actor to choose the actions of every slot
+     */
+    public void step(Actor actor) {
+        this.actor = actor;
+
+        if (pool == null) {
+            for (int c = 0; c < nCopies; c++) {
+                step(c);
+            }
+        } else {
+            // The calling thread steps the first partition itself
+            try {
+                for (int w = 1; w < nWorkers; w++) {
+                    futures[w] = pool.submit(tasks.get(w));
+                }
+                tasks.get(0).call();
+                for (int w = 1; w < nWorkers; w++) {
+                    futures[w].get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e.getMessage());
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause().getMessage());
+            } catch (Exception e) {
+                throw new RuntimeException(e.getMessage());
+            }
+        }
+
+        steps += nCopies;
+    }
+
+    private void step(int c) {
+        TurnBasedEnvironment copy = copies[c];
+        copy.performTurn();
+
+        int maxTurns = copy.maxTurns();
+        restarted[c] = copy.isTerminal() || (maxTurns > 0 && ++turns[c] >= maxTurns);
+        if (restarted[c]) {
+            turns[c] = 0;
+            copy.restart();
+        }
+    }
+
+    /**
+     * Stop the worker pool.
+     */
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    /**
+     * @return Number of copies
+     */
+    public int size() {
+        return nCopies;
+    }
+
+    /**
+     * @return Number of agent slots in each copy
+     */
+    public int agentsPerCopy() {
+        return agentsPerCopy;
+    }
+
+    /**
+     * @param copy Copy
+     * @return The environment of <em>copy</em>
+     */
+    public TurnBasedEnvironment copy(int copy) {
+        return copies[copy];
+    }
+
+    /**
+     * @return Reward each slot received on the last step
+     */
+    public double[] rewards() {
+        return rewards;
+    }
+
+    /**
+     * @return Whether each slot arrived in a terminal state on the last step
+     */
+    public boolean[] terminals() {
+        return terminals;
+    }
+
+    /**
+     * @return Whether each copy was restarted after the last step
+     */
+    public boolean[] restarted() {
+        return restarted;
+    }
+
+    /**
+     * @return Number of turns performed over all copies
+     */
+    public long steps() {
+        return steps;
+    }
+
+    /**
+     * @return Number of episodes started over all copies, including the first of each
+     */
+    public long episodes() {
+        return episodes;
+    }
+
+    /**
+     * Agent filling one slot of a copy, deferring to the actor of the vector.
+     */
+    private class Slot implements Agent {
+        private final int    slot;
+        private       double accumulated;
+
+        Slot(int slot) {
+            this.slot = slot;
+        }
+
+        @Override
+        public void setConfiguration(Configuration cfg) {
+        }
+
+        @Override
+        public void initialise() {
+        }
+
+        @Override
+        public void reset(Environment environment) {
+            accumulated = 0.0d;
+            if (slot % agentsPerCopy == 0) {
+                synchronized (VectorEnvironment.this) {
+                    episodes++;
+                }
+            }
+        }
+
+        @Override
+        public void add(Environment environment, State state) {
+        }
+
+        @Override
+        public void remove(Environment environment) {
+        }
+
+        @Override
+        public int act(Environment environment, State state) {
+            return actor.act(slot, state);
+        }
+
+        @Override
+        public void receive(Environment environment, State arrived, double reward) {
+            boolean terminal = environment.isTerminal(this, arrived);
+            accumulated += reward;
+            rewards[slot] = reward;
+            terminals[slot] = terminal;
+            actor.receive(slot, arrived, reward, terminal);
+        }
+
+        @Override
+        public double accumulativeReward(Environment environment) {
+            return accumulated;
+        }
+    }
+}
@@ -3,9 +3,8 @@ package org.madesimple.small.environment.acrobot;
 import org.madesimple.small.agent.Agent;
 import org.madesimple.small.environment.*;
 import org.madesimple.small.utility.Configuration;
-
-import java.util.Observable;
-import java.util.concurrent.ThreadLocalRandom;
+import org.madesimple.small.utility.EventBus;
+import org.madesimple.small.utility.RandomStream;
 
 /**
  * <pre>
@@ -18,7 +17,7 @@ import java.util.concurrent.ThreadLocalRandom;
  *
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
-public class AcrobotEnvironment extends Observable implements TurnBasedEnvironment, ContinuousEnvironment {
+public class AcrobotEnvironment implements TurnBasedEnvironment, ContinuousEnvironment, GenerativeEnvironment {
 
     public static class Tuple extends Environment.Tuple {
 
@@ -40,6 +39,8 @@ public class AcrobotEnvironment extends Observable implements TurnBasedEnvironme
 
     protected static final double GOAL_POSITION = 1.0d;
 
+    protected static final AcrobotAction[] ACTIONS = AcrobotAction.values();
+
     protected double  rewardPerStep;
     protected double  rewardAtGoal;
     protected boolean randomStarts;
@@ -50,7 +51,9 @@ public class AcrobotEnvironment extends Observable implements TurnBasedEnvironme
     protected int           time;
     protected int           turn;
     protected Tuple         tuple;
-//    protected Visualiser visualiser;
+    protected RandomStream  random = RandomStream.current();
+
+    protected final EventBus<EnvironmentEvent> events = new EventBus<>();
 
     public AcrobotEnvironment() {
     }
@@ -62,6 +65,9 @@ public class AcrobotEnvironment extends Observable implements TurnBasedEnvironme
 
     @Override
     public void initialise() {
+        // Take the random stream of the run
+        random = RandomStream.current();
+
         // Initialise the reward
         rewardPerStep = cfg.getDouble("Environment.Acrobot.RewardPerStep");
         rewardAtGoal = cfg.getDouble("Environment.Acrobot.RewardAtGoal");
@@ -80,21 +86,19 @@ public class AcrobotEnvironment extends Observable implements TurnBasedEnvironme
         time = 0;
         turn = 0;
 
-        // Initialise the visualiser
-//        if (cfg.get('observer.visualise', false)) {
-//            if (visualiser == null) {
-//                visualiser = new AcrobotVisualiser();
-//            }
-//        }
+        // Tell the visualiser
+        if (events.isActive()) {
+            events.publish(new EnvironmentEvent(this, EnvironmentEvent.Type.INITIALISED, tuple.state));
+        }
     }
 
     @Override
     public void reseed() {
         tuple.state.set(
-                ThreadLocalRandom.current().nextDouble(-AcrobotState.maxTheta1, AcrobotState.maxTheta1),
-                ThreadLocalRandom.current().nextDouble(-AcrobotState.maxTheta2, AcrobotState.maxTheta2),
-                ThreadLocalRandom.current().nextDouble(-AcrobotState.maxTheta1Dot, AcrobotState.maxTheta1Dot),
-                ThreadLocalRandom.current().nextDouble(-AcrobotState.maxTheta2Dot, AcrobotState.maxTheta2Dot)
+                random.nextDouble(-AcrobotState.maxTheta1, AcrobotState.maxTheta1),
+                random.nextDouble(-AcrobotState.maxTheta2, AcrobotState.maxTheta2),
+                random.nextDouble(-AcrobotState.maxTheta1Dot, AcrobotState.maxTheta1Dot),
+                random.nextDouble(-AcrobotState.maxTheta2Dot, AcrobotState.maxTheta2Dot)
         );
     }
 
@@ -105,16 +109,26 @@ public class AcrobotEnvironment extends Observable implements TurnBasedEnvironme
         tuple.state = new AcrobotState();
         if (randomStarts) {
             tuple.state.set(
-                    ThreadLocalRandom.current().nextDouble() - 0.5d,
-                    ThreadLocalRandom.current().nextDouble() - 0.5d,
-                    ThreadLocalRandom.current().nextDouble() - 0.5d,
-                    ThreadLocalRandom.current().nextDouble() - 0.5d
+                    random.nextDouble() - 0.5d,
+                    random.nextDouble() - 0.5d,
+                    random.nextDouble() - 0.5d,
+                    random.nextDouble() - 0.5d
             );
         }
         tuple.next = new AcrobotState();
 
         // Reset the agent
         tuple.agent.reset(this);
+
+        // Tell the visualiser
+        if (events.isActive()) {
+            events.publish(new EnvironmentEvent(this, EnvironmentEvent.Type.RESTARTED, tuple.state));
+        }
+    }
+
+    @Override
+    public EventBus<EnvironmentEvent> events() {
+        return events;
     }
 
     @Override
@@ -156,7 +170,7 @@ public class AcrobotEnvironment extends Observable implements TurnBasedEnvironme
         // Make the agent take its turn
         tuple.next.set(tuple.state);
         int action = tuple.agent.act(this, tuple.state);
-        AcrobotState.perform(this, tuple.next, AcrobotAction.values()[action], transitionNoise);
+        AcrobotState.perform(this, tuple.next, ACTIONS[action], transitionNoise, random);
         tuple.state.set(tuple.next);
 
         // Provide the agent with a reward
@@ -165,6 +179,11 @@ public class AcrobotEnvironment extends Observable implements TurnBasedEnvironme
             tuple.agent.receive(this, tuple.state, rewardAtGoal);
         }
 
+        // Tell the visualiser
+        if (events.isStepDue()) {
+            events.publishStep(new EnvironmentEvent(this, EnvironmentEvent.Type.MOVED, tuple.state));
+        }
+
         // Increment the clock
         time++;
         turn++;
@@ -195,6 +214,24 @@ public class AcrobotEnvironment extends Observable implements TurnBasedEnvironme
         return isTerminal(tuple.state);
     }
 
+    @Override
+    public boolean isTerminal(State state) {
+        return isTerminal((AcrobotState) state);
+    }
+
+    /**
+     * The reward is the sum of the rewards an agent would receive on arriving: the reward per step, and the reward at
+     * the goal if it is reached.
+     */
+    @Override
+    public double simulate(State from, int action, State out, RandomStream random) {
+        AcrobotState next = (AcrobotState) out;
+        next.set(from);
+        AcrobotState.perform(this, next, ACTIONS[action], transitionNoise, random);
+
+        return isTerminal(next) ? rewardPerStep + rewardAtGoal : rewardPerStep;
+    }
+
     public boolean isTerminal(AcrobotState state) {
         double feet_height = -(AcrobotState.l1 * Math.cos(state.getTheta1()) + AcrobotState.l2 * Math.cos(state.getTheta2()));
 
@@ -3,8 +3,7 @@ package org.madesimple.small.environment.acrobot;
 import org.madesimple.small.environment.ContinuousState;
 import org.madesimple.small.environment.State;
 import org.madesimple.small.utility.Hash;
-
-import java.util.concurrent.ThreadLocalRandom;
+import org.madesimple.small.utility.RandomStream;
 
 /**
  * @author Peter Scopes (peter.scopes@gmail.com)
@@ -26,11 +25,19 @@ public class AcrobotState implements ContinuousState {
     public final static double g            = 9.8d;
     public final static double dt           = 0.05d;
 
+    private static final int N_ACTIONS = AcrobotAction.values().length;
+
     private double theta1;
     private double theta2;
     private double theta1Dot;
     private double theta2Dot;
 
+    /**
+     * Cached hash code, valid while <em>hashed</em> is true.
+     */
+    private int     key;
+    private boolean hashed;
+
     public AcrobotState() {
         theta1 = 0.0d;
         theta2 = 0.0d;
@@ -56,6 +63,7 @@ public class AcrobotState implements ContinuousState {
         this.theta2 = theta2;
         this.theta1Dot = theta1Dot;
         this.theta2Dot = theta2Dot;
+        this.hashed = false;
     }
 
     public void set(AcrobotState that) {
@@ -96,7 +104,7 @@ public class AcrobotState implements ContinuousState {
 
     @Override
     public int availableActions() {
-        return AcrobotAction.values().length;
+        return N_ACTIONS;
     }
 
     @Override
@@ -106,12 +114,17 @@ public class AcrobotState implements ContinuousState {
 
     @Override
     public int hashCode() {
-        return Hash.pair(
-                (int)(theta1*10000.0d),
-                (int)(theta2*10000.0d),
-                (int)(theta1Dot*10000.0d),
-                (int)(theta2Dot*10000.0d)
-        );
+        if (!hashed) {
+            key = Hash.pair(
+                    (int)(theta1*10000.0d),
+                    (int)(theta2*10000.0d),
+                    (int)(theta1Dot*10000.0d),
+                    (int)(theta2Dot*10000.0d)
+            );
+            hashed = true;
+        }
+
+        return key;
     }
 
     @Override
@@ -144,21 +157,26 @@ public class AcrobotState implements ContinuousState {
 
     public void setTheta1(double theta1) {
         this.theta1 = theta1;
+        this.hashed = false;
     }
 
     public void setTheta2(double theta2) {
         this.theta2 = theta2;
+        this.hashed = false;
     }
 
     public void setTheta1Dot(double theta1Dot) {
         this.theta1Dot = theta1Dot;
+        this.hashed = false;
     }
 
     public void setTheta2Dot(double theta2Dot) {
         this.theta2Dot = theta2Dot;
+        this.hashed = false;
     }
 
-    static void perform(AcrobotEnvironment env, AcrobotState state, AcrobotAction action, double transitionNoise) {
+    static void perform(AcrobotEnvironment env, AcrobotState state, AcrobotAction action, double transitionNoise,
+                        RandomStream random) {
         double torque = action.value;
         double d1;
         double d2;
@@ -170,7 +188,7 @@ public class AcrobotState implements ContinuousState {
 
         //torque is in [-1,1]
         //We'll make noise equal to at most +/- 1
-        double theNoise = transitionNoise * 2.0d * (ThreadLocalRandom.current().nextDouble() - .5d);
+        double theNoise = transitionNoise * 2.0d * (random.nextDouble() - .5d);
 
         torque += theNoise;
 
@@ -211,5 +229,6 @@ public class AcrobotState implements ContinuousState {
             state.theta1 = Math.signum(state.theta1) * Math.PI;
             state.theta1Dot = 0;
         }
+        state.hashed = false;
     }
 }
@@ -3,13 +3,18 @@ package org.madesimple.small.environment.gridworld2d;
 import org.madesimple.small.agent.Agent;
 import org.madesimple.small.environment.DiscreteEnvironment;
 import org.madesimple.small.environment.Environment;
+import org.madesimple.small.environment.EnvironmentEvent;
+import org.madesimple.small.environment.GenerativeEnvironment;
 import org.madesimple.small.environment.State;
 import org.madesimple.small.environment.TurnBasedEnvironment;
 import org.madesimple.small.utility.Configuration;
+import org.madesimple.small.utility.EventBus;
+import org.madesimple.small.utility.RandomStream;
 
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * <p>
@@ -19,14 +24,28 @@ import java.util.concurrent.ThreadLocalRandom;
  * <pre>
  * ## Settings for Grid World Environment
  * Environment.GridWorld2d.LayoutFilePath   = path/to/layout.txt
+ * ; or generate the layout, see GridWorld2dLayoutGenerator
+ * ; Environment.GridWorld2d.Generator      = maze
  * ; [cardinal|ordinal]
  * Environment.GridWorld2d.AvailableActions = cardinal
  * Environment.GridWorld2d.MaxTurns = 4000
+ * Environment.GridWorld2d.Workers = 1
+ * Environment.GridWorld2d.Chunk = 16
  * </pre>
+ * <p>
+ * Agents move simultaneously, so within a turn their choices of action do not depend on one another. With more than
+ * one of <em>Workers</em>, the agents of a turn choose their actions, and later receive their rewards, in chunks of
+ * <em>Chunk</em> agents spread over a fork-join pool of that many threads, the caller included. The moves themselves,
+ * which draw from the random stream of the environment, and the resolution of conflicts stay on the caller, in the
+ * order of the agents. Each agent must then draw its random numbers from a stream of its own, which
+ * <code>Experiment.AgentStreams</code> gives it. With that set the stream of the thread an agent acts on is bound, for
+ * each agent, to one split from the stream of the environment, so that a seeded run is the same whatever the number
+ * of workers and however the chunks are scheduled.
+ * </p>
  *
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
-public class GridWorld2dEnvironment extends Observable implements TurnBasedEnvironment, DiscreteEnvironment {
+public class GridWorld2dEnvironment implements TurnBasedEnvironment, DiscreteEnvironment, GenerativeEnvironment {
 
     public static class Tuple extends Environment.Tuple {
         /**
@@ -57,7 +76,7 @@ public class GridWorld2dEnvironment extends Observable implements TurnBasedEnvir
         /**
          * The action performed by the agent.
          */
-        Compass action;
+        Compass<?> action;
 
         /**
          * Whether the agent failed to move.
@@ -69,6 +88,21 @@ public class GridWorld2dEnvironment extends Observable implements TurnBasedEnvir
          */
         boolean collided;
 
+        /**
+         * The action chosen by the agent, when agents have streams of their own.
+         */
+        int choice;
+
+        /**
+         * Stream bound whilst the agent acts, when agents have streams of their own.
+         */
+        RandomStream random;
+
+        /**
+         * The agent last mapped to this tuple, so that it returns to it when it is added again.
+         */
+        Agent previous;
+
         Tuple() {
             state = new GridWorld2dState(0, 0);
             next = new GridWorld2dState(0, 0);
@@ -92,13 +126,22 @@ public class GridWorld2dEnvironment extends Observable implements TurnBasedEnvir
     protected double rewardAtGoal     = 0.0d;
     protected int maxTurns;
     protected int requiredAgents;
-
-    protected GridWorld2dLayout layout;
-    protected Tuple[]           tuples;
-    protected Map<Agent, Tuple> mappedTuples;
-    protected Compass[]         actions;
-    protected int               time;
-    protected int               turn;
+    protected int nWorkers;
+    protected int chunkSize;
+    protected boolean agentStreams;
+
+    protected GridWorld2dLayout     layout;
+    protected List<Tuple>           createdTuples;
+    protected List<Tuple>           availableTuples;
+    protected Tuple[]               tuples;
+    protected Map<Agent, Tuple>     mappedTuples;
+    protected Compass<?>[]          actions;
+    protected int                   time;
+    protected int                   turn;
+    protected RandomStream          random = RandomStream.current();
+    protected ForkJoinPool          pool;
+
+    protected final EventBus<EnvironmentEvent> events = new EventBus<>();
 
     public GridWorld2dEnvironment() {
     }
@@ -110,54 +153,108 @@ public class GridWorld2dEnvironment extends Observable implements TurnBasedEnvir
                   Compass.Cardinal.values() :
                   Compass.Ordinal.values();
 
-        // Get the layout
+        // Get the layout, shared with other environments, and make tuples of our own for its agents
         layout = fetchLayout(cfg);
-        mappedTuples = new HashMap<>();
+        availableTuples = new ArrayList<>();
+        for (int i = 0; i < layout.starts.size(); i++) {
+            Tuple tuple = createTuple();
+            tuple.start = layout.starts.get(i);
+            tuple.goal = layout.targets.get(i);
+
+            availableTuples.add(tuple);
+        }
+        createdTuples = new ArrayList<>(availableTuples);
+        mappedTuples = new LinkedHashMap<>();
         updateTuples();
 
         // Initialise max turns
         maxTurns = cfg.getInteger("Environment.GridWorld2d.MaxTurns");
         requiredAgents = cfg.getInteger("Environment.GridWorld2d.NumAgents");
+
+        // Agents acting in parallel must not share a random stream
+        nWorkers = Math.max(1, cfg.getInteger("Environment.GridWorld2d.Workers", 1));
+        chunkSize = Math.max(1, cfg.getInteger("Environment.GridWorld2d.Chunk", 16));
+        agentStreams = cfg.getBoolean("Experiment.AgentStreams", false);
+        if (nWorkers > 1 && !agentStreams) {
+            throw new RuntimeException("Environment.GridWorld2d.Workers needs Experiment.AgentStreams");
+        }
     }
 
     protected GridWorld2dLayout fetchLayout(Configuration cfg) {
-        try {
-            GridWorld2dFileReader fr = new GridWorld2dFileReader();
-            fr.parse(Paths.get(cfg.getString("Environment.GridWorld2d.LayoutFilePath")));
-
-            GridWorld2dLayout layout = new GridWorld2dLayout();
-            layout.stateWidth = fr.getStateWidth();
-            layout.stateHeight = fr.getStateHeight();
-            layout.width = fr.getLayoutWidth();
-            layout.height = fr.getLayoutHeight();
-            layout.raw = fr.getLayout();
-            layout.map = fr.getLayout();
-            layout.parse(fr.getProbabilities());
-
-
-            return layout;
-        } catch (Exception e) {
-            throw new RuntimeException(e.getMessage());
+        if (cfg.hasProperty("Environment.GridWorld2d.Generator")) {
+            return GridWorld2dLayoutGenerator.generate(cfg);
         }
+        return GridWorld2dLayout.compile(Paths.get(cfg.getString("Environment.GridWorld2d.LayoutFilePath")));
+    }
+
+    protected Tuple createTuple() {
+        return new Tuple();
     }
 
     @Override
     public void initialise() {
+        // Take the random stream of the run
+        random = RandomStream.current();
+
+        // Split a stream for each agent to act with
+        if (agentStreams) {
+            for (Tuple tuple : createdTuples) {
+                tuple.random = random.split();
+            }
+        }
+
+        // Start the workers, keeping those of the last run unless their number has changed
+        if (pool != null && pool.getParallelism() != nWorkers - 1) {
+            close();
+        }
+        if (nWorkers > 1 && pool == null) {
+            pool = new ForkJoinPool(nWorkers - 1);
+        }
+
         // Initialise the clock
         time = 0;
         turn = 0;
 
-        // Initialise the visualiser
-        setChanged();
-        notifyObservers(layout);
+        // Tell the visualiser
+        if (events.isActive()) {
+            events.publish(new EnvironmentEvent(this, EnvironmentEvent.Type.INITIALISED, null));
+        }
+    }
+
+    /**
+     * @return The streams the agents act with, one for each start of the layout, if each agent has its own
+     */
+    @Override
+    public RandomStream[] streams() {
+        if (!agentStreams) {
+            return new RandomStream[0];
+        }
+
+        RandomStream[] streams = new RandomStream[createdTuples.size()];
+        for (int i = 0; i < streams.length; i++) {
+            streams[i] = createdTuples.get(i).random;
+        }
+
+        return streams;
+    }
+
+    /**
+     * Shut the workers down, if there are any.
+     */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
     }
 
     @Override
     public void reseed() {
         for (Tuple tuple : tuples) {
             tuple.state.set(
-                    ThreadLocalRandom.current().nextInt(0, layout.stateWidth),
-                    ThreadLocalRandom.current().nextInt(0, layout.stateHeight)
+                    random.nextInt(0, layout.stateWidth),
+                    random.nextInt(0, layout.stateHeight)
             );
         }
     }
@@ -175,11 +272,22 @@ public class GridWorld2dEnvironment extends Observable implements TurnBasedEnvir
             tuple.agent.reset(this);
         }
 
-        // Initialise the visualiser
-        setChanged();
-        notifyObservers(null);
-        setChanged();
-        notifyObservers(tuples[0].state);
+        // Tell the visualiser
+        if (events.isActive()) {
+            events.publish(new EnvironmentEvent(this, EnvironmentEvent.Type.RESTARTED, tuples[0].state));
+        }
+    }
+
+    @Override
+    public EventBus<EnvironmentEvent> events() {
+        return events;
+    }
+
+    /**
+     * @return The layout of the grid world
+     */
+    public GridWorld2dLayout getLayout() {
+        return layout;
     }
 
     @Override
@@ -190,9 +298,19 @@ public class GridWorld2dEnvironment extends Observable implements TurnBasedEnvir
 
     @Override
     public boolean add(Agent agent) {
-        if (layout.availableTuples.size() > 0 && !mappedTuples.containsKey(agent)) {
-            Tuple tuple = layout.availableTuples.remove(0);
+        if (availableTuples.size() > 0 && !mappedTuples.containsKey(agent)) {
+            // An agent added again, say after an evaluation, carries on from where it was
+            int index = 0;
+            for (int i = 0; i < availableTuples.size(); i++) {
+                if (availableTuples.get(i).previous == agent) {
+                    index = i;
+                    break;
+                }
+            }
+
+            Tuple tuple = availableTuples.remove(index);
             tuple.agent = agent;
+            tuple.previous = agent;
             mappedTuples.put(agent, tuple);
 
             updateTuples();
@@ -208,7 +326,7 @@ public class GridWorld2dEnvironment extends Observable implements TurnBasedEnvir
         Tuple tuple = mappedTuples.get(agent);
         if (tuple != null) {
             tuple.agent = null;
-            layout.availableTuples.add(tuple);
+            availableTuples.add(tuple);
             mappedTuples.remove(agent);
 
             updateTuples();
@@ -239,11 +357,20 @@ public class GridWorld2dEnvironment extends Observable implements TurnBasedEnvir
     @Override
     public void performTurn() {
         // Let each agent choose their action
-        for (Tuple tuple : tuples) {
-            if (!tuple.arrived) {
-                tuple.next.set(tuple.state);
-                int action = tuple.agent.act(this, tuple.state);
-                attemptAction(tuple, action);
+        if (agentStreams) {
+            fanOut(true);
+            for (Tuple tuple : tuples) {
+                if (!tuple.arrived) {
+                    attemptAction(tuple, tuple.choice);
+                }
+            }
+        } else {
+            for (Tuple tuple : tuples) {
+                if (!tuple.arrived) {
+                    tuple.next.set(tuple.state);
+                    int action = tuple.agent.act(this, tuple.state);
+                    attemptAction(tuple, action);
+                }
             }
         }
 
@@ -253,23 +380,69 @@ public class GridWorld2dEnvironment extends Observable implements TurnBasedEnvir
         // Now move all agents and update whether they have arrived
         for (Tuple tuple : tuples) {
             tuple.state.set(tuple.next);
-            tuple.arrived = tuple.goal != null ? tuple.state.equals(tuple.goal) : layout.goals.contains(tuple.state);
+            tuple.arrived = tuple.goal != null ? tuple.state.equals(tuple.goal) : layout.isGoal(tuple.state);
         }
 
         // Provide the agents with their rewards
-        for (Tuple tuple : tuples) {
-            tuple.agent.receive(this, tuple.state, tuple.arrived ? rewardAtGoal : rewardTransition);
+        if (agentStreams) {
+            fanOut(false);
+        } else {
+            for (Tuple tuple : tuples) {
+                tuple.agent.receive(this, tuple.state, tuple.arrived ? rewardAtGoal : rewardTransition);
+            }
         }
 
-        // Update observers
-        setChanged();
-        notifyObservers(tuples[0].state);
+        // Tell the visualiser
+        if (events.isStepDue()) {
+            events.publishStep(new EnvironmentEvent(this, EnvironmentEvent.Type.MOVED, tuples[0].state));
+        }
 
         // Increment the clock
         time++;
         turn++;
     }
 
+    /**
+     * Have every agent choose its action, or receive its reward, with its own stream bound. With a pool the agents
+     * are spread over it in chunks, the calling thread taking the first, and waited for.
+     */
+    private void fanOut(boolean act) {
+        if (pool == null || tuples.length <= chunkSize) {
+            turn(0, tuples.length, act);
+            return;
+        }
+
+        int               nChunks = (tuples.length + chunkSize - 1) / chunkSize;
+        ForkJoinTask<?>[] tasks   = new ForkJoinTask<?>[nChunks];
+        for (int c = 1; c < nChunks; c++) {
+            int from = c * chunkSize;
+            int to   = Math.min(tuples.length, from + chunkSize);
+            tasks[c] = pool.submit(() -> turn(from, to, act));
+        }
+        turn(0, Math.min(tuples.length, chunkSize), act);
+        for (int c = 1; c < nChunks; c++) {
+            tasks[c].join();
+        }
+    }
+
+    private void turn(int from, int to, boolean act) {
+        RandomStream previous = RandomStream.current();
+        try {
+            for (int i = from; i < to; i++) {
+                Tuple tuple = tuples[i];
+                RandomStream.bind(tuple.random);
+                if (!act) {
+                    tuple.agent.receive(this, tuple.state, tuple.arrived ? rewardAtGoal : rewardTransition);
+                } else if (!tuple.arrived) {
+                    tuple.next.set(tuple.state);
+                    tuple.choice = tuple.agent.act(this, tuple.state);
+                }
+            }
+        } finally {
+            RandomStream.bind(previous);
+        }
+    }
+
     protected Tuple fetch(Agent agent) {
         if (tuples.length == 1 && agent == tuples[0].agent) {
             return tuples[0];
@@ -303,7 +476,15 @@ public class GridWorld2dEnvironment extends Observable implements TurnBasedEnvir
         return isTerminal(fetch(agent), (GridWorld2dState) state);
     }
     protected boolean isTerminal(Tuple tuple, GridWorld2dState state) {
-        return tuple.goal != null ? state.equals(tuple.goal) : layout.goals.contains(state);
+        return tuple.goal != null ? state.equals(tuple.goal) : layout.isGoal(state);
+    }
+
+    /**
+     * A state is terminal if it is a goal of any agent, as the agent simulated is not known.
+     */
+    @Override
+    public boolean isTerminal(State state) {
+        return state instanceof GridWorld2dState && layout.isAnyGoal((GridWorld2dState) state);
     }
 
     @Override
@@ -317,19 +498,48 @@ public class GridWorld2dEnvironment extends Observable implements TurnBasedEnvir
         return true;
     }
 
+    /**
+     * An agent at a goal stays there, receiving the reward at the goal, as it does in a turn. Otherwise the random
+     * numbers are drawn as {@link #attemptAction(Tuple, int)} draws them.
+     */
+    @Override
+    public double simulate(State from, int action, State out, RandomStream random) {
+        GridWorld2dState state = (GridWorld2dState) from;
+        GridWorld2dState next  = (GridWorld2dState) out;
+        int              x     = state.x;
+        int              y     = state.y;
+
+        next.set(x, y);
+        if (isTerminal(next)) {
+            return rewardAtGoal;
+        }
+
+        // If the action didn't fail, attempt the move
+        if (!(transitionNoise > random.nextDouble())) {
+            GridWorld2dState.perform(next, actions[action], 1);
+            next.set(wrapX(next.x), wrapY(next.y));
+
+            // Undo the move if it is not valid
+            if (!isValidMove(layout.id(x, y), actions[action], random)) {
+                next.set(x, y);
+            }
+        }
+
+        return isTerminal(next) ? rewardAtGoal : rewardTransition;
+    }
+
     protected void attemptAction(Tuple tuple, int action) {
         if (!tuple.arrived) {
             tuple.action = actions[action];
             tuple.collided = false;
             GridWorld2dState next = tuple.next;
             // If the agents action didn't fail
-            if (!(tuple.failed = transitionNoise > ThreadLocalRandom.current().nextDouble())) {
+            if (!(tuple.failed = transitionNoise > random.nextDouble())) {
                 // Attempt the move with the next state
                 GridWorld2dState.perform(next, actions[action], 1);
 
                 // Wrap movement
-                next.x = wrapX(next.x);
-                next.y = wrapY(next.y);
+                next.set(wrapX(next.x), wrapY(next.y));
 
                 // Check the new position and the move are valid
                 if (!isValidMove(tuple.state, actions[action])) {
@@ -349,47 +559,36 @@ public class GridWorld2dEnvironment extends Observable implements TurnBasedEnvir
         return (y + layout.stateHeight) % layout.stateHeight;
     }
 
-    protected boolean isValidMove(GridWorld2dState s, Compass a) {
-        double probability = getProbability(s, a);
-        return probability >= ThreadLocalRandom.current().nextDouble();
+    protected boolean isValidMove(GridWorld2dState s, Compass<?> a) {
+        return isValidMove(layout.id(s.x, s.y), a, random);
+    }
+
+    /**
+     * The number deciding the move is drawn even when the move is certain, so that the random stream is the same
+     * whatever the layout.
+     */
+    protected boolean isValidMove(int id, Compass<?> a, RandomStream random) {
+        double chance    = random.nextDouble();
+        int    direction = direction(a);
+        return direction != -1 && layout.canMove(id, direction, chance);
     }
 
-    protected double getProbability(GridWorld2dState s, Compass action) {
+    protected double getProbability(GridWorld2dState s, Compass<?> action) {
+        int direction = direction(action);
+        return direction == -1 ? 0.0d : layout.probability(layout.id(s.x, s.y), direction);
+    }
+
+    /**
+     * @return Cardinal direction of <em>action</em>, or -1 for the diagonals of Ordinal, which are never valid
+     */
+    protected static int direction(Compass<?> action) {
         if (action instanceof Compass.Cardinal) {
-            return layout.probabilities[s.y][s.x][((Compass.Cardinal) action).ordinal()];
-        }
-        if (action instanceof Compass.Ordinal) {
-            return layout.probabilities[s.y][s.x][((Compass.Ordinal) action).ordinal()];
-//            switch ((Compass.Ordinal) action) {
-//                case NORTH:
-//                case SOUTH:
-//                case EAST:
-//                case WEST:
-//                    return layout.probabilities[s.y][s.x][((Compass.Ordinal) action).ordinal()];
-//
-//                case NORTHEAST:
-//                    return layout.probabilities[s.y][s.x][Compass.Ordinal.NORTH.ordinal()] *
-//                           layout.probabilities[s.y][s.x][Compass.Ordinal.EAST.ordinal()] *
-//                           layout.probabilities[s.y][wrapX(s.x + 1)][Compass.Ordinal.NORTH.ordinal()] *
-//                           layout.probabilities[wrapY(s.y + 1)][s.x][Compass.Ordinal.EAST.ordinal()];
-//                case NORTHWEST:
-//                    return layout.probabilities[s.y][s.x][Compass.Ordinal.NORTH.ordinal()] *
-//                           layout.probabilities[s.y][s.x][Compass.Ordinal.WEST.ordinal()] *
-//                           layout.probabilities[s.y][wrapX(s.x - 1)][Compass.Ordinal.NORTH.ordinal()] *
-//                           layout.probabilities[wrapY(s.y + 1)][s.x][Compass.Ordinal.WEST.ordinal()];
-//                case SOUTHEAST:
-//                    return layout.probabilities[s.y][s.x][Compass.Ordinal.SOUTH.ordinal()] *
-//                           layout.probabilities[s.y][s.x][Compass.Ordinal.EAST.ordinal()] *
-//                           layout.probabilities[s.y][wrapX(s.x + 1)][Compass.Ordinal.SOUTH.ordinal()] *
-//                           layout.probabilities[wrapY(s.y - 1)][s.x][Compass.Ordinal.EAST.ordinal()];
-//                case SOUTHWEST:
-//                    return layout.probabilities[s.y][s.x][Compass.Ordinal.SOUTH.ordinal()] *
-//                           layout.probabilities[s.y][s.x][Compass.Ordinal.WEST.ordinal()] *
-//                           layout.probabilities[s.y][wrapX(s.x - 1)][Compass.Ordinal.SOUTH.ordinal()] *
-//                           layout.probabilities[wrapY(s.y - 1)][s.x][Compass.Ordinal.WEST.ordinal()];
-//            }
-        }
-        return 0.0d;
+            return ((Compass.Cardinal) action).ordinal();
+        }
+        if (action instanceof Compass.Ordinal && ((Compass.Ordinal) action).ordinal() < 4) {
+            return ((Compass.Ordinal) action).ordinal();
+        }
+        return -1;
     }
 
     /**
@@ -443,6 +642,8 @@ public class GridWorld2dEnvironment extends Observable implements TurnBasedEnvir
                 else if (
                         a.action != null &&
                         b.action != null &&
+                        !a.next.equals(a.state) &&
+                        !b.next.equals(b.state) &&
                         a.state.near(b.state, 1) &&
                         a.next.near(b.next, 1) &&
                         a.action.opposite() == b.action
@@ -453,11 +654,11 @@ public class GridWorld2dEnvironment extends Observable implements TurnBasedEnvir
                 }
             }
 
-            // If there was a conflict
+            // If there was a conflict start again from the first agent
             if (hasConflict) {
                 a.next.set(a.state);
                 a.collided = true;
-                i = 0;
+                i = -1;
             }
         }
     }
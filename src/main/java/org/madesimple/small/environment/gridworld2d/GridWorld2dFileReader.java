@@ -1,11 +1,21 @@
 package org.madesimple.small.environment.gridworld2d;
 
 import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 /**
+ * <p>
+ * A Grid World 2d File Reader reads layout files, which are UTF-8. The file is memory-mapped and its layout segments
+ * are decoded straight from the mapping into the rows of the layout, a byte per symbol (see
+ * {@link GridWorld2dLayout#cell(int)}); only the other lines are made into strings.
+ * </p>
+ *
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
 public class GridWorld2dFileReader {
@@ -14,7 +24,7 @@ public class GridWorld2dFileReader {
     protected int      stateHeight;
     protected int      layoutWidth;
     protected int      layoutHeight;
-    protected char[][] layout;
+    protected byte[][] layout;
 
     protected List<Map<Character, Double>> probabilities;
 
@@ -27,16 +37,38 @@ public class GridWorld2dFileReader {
             throw new IllegalArgumentException("Cannot locate readable file " + path);
         }
 
-        Scanner input = new Scanner(path.toFile());
+        MappedByteBuffer input;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            input = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
         reset();
-        while (input.hasNext()) {
-            String line = input.nextLine();
+        int limit = input.limit();
+        for (int start = 0, end; start < limit; start = end + 1) {
+            // Find the end of the line, dropping any carriage return
+            end = start;
+            while (end < limit && input.get(end) != '\n') {
+                end++;
+            }
+            int last = end > start && input.get(end - 1) == '\r' ? end - 1 : end;
 
             // Ignore empty lines
-            if (line.isEmpty()) {
+            if (last == start) {
+                continue;
+            }
+
+            // Store layout segments
+            if (input.get(start) == '>') {
+                parseSegment(input, start + 1, last);
                 continue;
             }
 
+            byte[] bytes = new byte[last - start];
+            for (int i = start; i < last; i++) {
+                bytes[i - start] = input.get(i);
+            }
+            String line = new String(bytes, StandardCharsets.UTF_8);
+
             // Check for layout size data
             if (line.startsWith("[") && line.endsWith("]")) {
                 parseLayoutSize(line);
@@ -64,7 +96,37 @@ public class GridWorld2dFileReader {
         layoutWidth = (stateWidth * 2) + 1;
         layoutHeight = (stateHeight * 2) + 1;
         count = layoutHeight - 1;
-        layout = new char[layoutHeight][layoutWidth];
+        layout = new byte[layoutHeight][];
+    }
+
+    /**
+     * Decode the UTF-8 symbols of a layout segment, from <em>from</em> up to <em>to</em> in <em>input</em>, into the
+     * next row of the layout, filling any of the row not given with spaces.
+     */
+    protected void parseSegment(MappedByteBuffer input, int from, int to) {
+        if (layout == null) {
+            throw new IllegalArgumentException("Layout dimensions must come before layout segments");
+        }
+        if (count < 0) {
+            throw new IllegalArgumentException("No more space for layout segments");
+        }
+
+        byte[] segment = new byte[layoutWidth];
+        int    i       = 0;
+        for (int p = from; p < to && i < layoutWidth; i++) {
+            int b = input.get(p++) & 0xFF;
+            if (b >= 0x80) {
+                // Lead byte of two, three or four
+                int extra = b >= 0xF0 ? 3 : b >= 0xE0 ? 2 : 1;
+                b &= 0x3F >> extra;
+                for (int k = 0; k < extra && p < to; k++) {
+                    b = (b << 6) | (input.get(p++) & 0x3F);
+                }
+            }
+            segment[i] = GridWorld2dLayout.cell(b);
+        }
+        Arrays.fill(segment, i, layoutWidth, (byte) ' ');
+        layout[count--] = segment;
     }
 
     protected void parseLine(char c, String line) {
@@ -73,21 +135,6 @@ public class GridWorld2dFileReader {
             case ';':
                 break;
 
-            // Store layout segments
-            case '>':
-                if (layout == null) {
-                    throw new IllegalArgumentException("Layout dimensions must come before layout segments");
-                }
-                if (count < 0) {
-                    throw new IllegalArgumentException("No more space for layout segments");
-                }
-                char[] segment = new char[layoutWidth];
-                for (int i = 0; i < layoutWidth; i++) {
-                    segment[i] = i < line.length() ? line.charAt(i) : ' ';
-                }
-                layout[count--] = segment;
-                break;
-
             // Store gate probabilities
             case 'x':
                 String[] parts = line.trim().split(" ");
@@ -100,8 +147,8 @@ public class GridWorld2dFileReader {
         }
     }
 
-    public char[][] getLayout() {
-        char[][] copy = new char[layoutHeight][layoutWidth];
+    public byte[][] getLayout() {
+        byte[][] copy = new byte[layoutHeight][layoutWidth];
         for (int i=0; i < layoutHeight; i++) {
             System.arraycopy(layout[i], 0, copy[i], 0, layoutWidth);
         }
@@ -1,89 +1,208 @@
 package org.madesimple.small.environment.gridworld2d;
 
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
+ * <p>
+ * A Grid World 2d Layout is a layout file compiled for the environment: the map with the start and goal letters
+ * removed, the probability of each move succeeding, and where the agents start and finish. Agent <em>i</em> starts at
+ * <em>starts[i]</em> and finishes at <em>targets[i]</em> or, where that is null, at any of <em>goals</em>.
+ * </p>
+ * <p>
+ * Maps hold a byte per symbol of the layout file; every symbol is ASCII except the wall, which is held as
+ * {@link #MAP_WALL}. See {@link #cell(int)}.
+ * </p>
+ * <p>
+ * What the environment needs to know of a cell every turn is held in its <em>attributes</em>, a byte of bits indexed
+ * by the {@link #id dense id} of the cell: which moves out of it are blocked by walls, barriers and one-way edges,
+ * whether it has moves through gates, and whether it is a goal. Moves and goals are then checked with a bit test; only
+ * moves through gates look up a probability, found by a binary search of the sorted ids of the cells with gates.
+ * </p>
+ * <p>
+ * Layouts are {@link #compile compiled} once per file and shared by every environment that uses the file, so once
+ * compiled a layout is never changed; environments keep their agents in tuples of their own. A file is compiled again
+ * if it has been modified since.
+ * </p>
+ *
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
 public class GridWorld2dLayout {
-    public static final char MAP_FLOOR         = '.';
-    public static final char MAP_BARRIER       = '#';
-    public static final char MAP_WALL          = '‡';
-    public static final char MAP_GATE          = 'x';
-    public static final char MAP_ONE_WAY_WEST  = '<';
-    public static final char MAP_ONE_WAY_EAST  = '>';
-    public static final char MAP_ONE_WAY_NORTH = '^';
-    public static final char MAP_ONE_WAY_SOUTH = 'v';
-
-    public List<GridWorld2dEnvironment.Tuple> availableTuples;
-    public Set<GridWorld2dState>              goals;
-    public char[][]                           map;
-    public char[][]                           raw;
-    public double[][][]                       probabilities;
-    public int                                height;
-    public int                                width;
-    public int                                stateHeight;
-    public int                                stateWidth;
+    public static final byte MAP_FLOOR         = '.';
+    public static final byte MAP_BARRIER       = '#';
+    public static final byte MAP_WALL          = (byte) 0x80;
+    public static final byte MAP_GATE          = 'x';
+    public static final byte MAP_ONE_WAY_WEST  = '<';
+    public static final byte MAP_ONE_WAY_EAST  = '>';
+    public static final byte MAP_ONE_WAY_NORTH = '^';
+    public static final byte MAP_ONE_WAY_SOUTH = 'v';
 
-    public void parse(List<Map<Character, Double>> probabilities) {
+    /**
+     * Attributes of a cell: a move in Cardinal direction <em>d</em> is blocked if bit <em>d</em> is set.
+     */
+    public static final int BLOCKED_NORTH = 1 << 0;
+    public static final int BLOCKED_EAST  = 1 << 1;
+    public static final int BLOCKED_SOUTH = 1 << 2;
+    public static final int BLOCKED_WEST  = 1 << 3;
+    public static final int BLOCKED       = BLOCKED_NORTH | BLOCKED_EAST | BLOCKED_SOUTH | BLOCKED_WEST;
+    /**
+     * Attribute of a cell from which some move goes through a gate and succeeds only with a probability.
+     */
+    public static final int GATE          = 1 << 4;
+    /**
+     * Attribute of a cell from which some move crosses a one-way edge, whichever way.
+     */
+    public static final int ONE_WAY       = 1 << 5;
+    /**
+     * Attribute of a cell in <em>goals</em>.
+     */
+    public static final int GOAL          = 1 << 6;
+    /**
+     * Attribute of a cell in <em>anyGoals</em>.
+     */
+    public static final int ANY_GOAL      = 1 << 7;
 
-        // Search the layout for start and goal positions for agents
-        availableTuples = new ArrayList<>();
-        goals = new HashSet<>();
+    /**
+     * Symbol of a wall in layout files, the only one that is not ASCII.
+     */
+    public static final char SYMBOL_WALL = '‡';
 
-        for (int y = 1; y < height; y++) {
-            for (int x = 1; x < width; x++) {
-                if (Character.isAlphabetic(map[y][x]) && Character.isLowerCase(map[y][x])) {
-                    GridWorld2dState start  = new GridWorld2dState(toStatePosition(x), toStatePosition(y));
-                    GridWorld2dState goal   = null;
-                    char             letter = Character.toUpperCase(map[y][x]);
-                    for (int dy = 1; dy < height; dy++) {
-                        for (int dx = 1; dx < width; dx++) {
-                            if (map[dy][dx] == letter) {
-                                goal = new GridWorld2dState(toStatePosition(dx), toStatePosition(dy));
-                            }
-                        }
-                    }
+    /**
+     * Layouts compiled so far, by the absolute path of their file.
+     */
+    private static final ConcurrentMap<Path, GridWorld2dLayout> compiled = new ConcurrentHashMap<>();
 
-                    if (goal != null) {
-                        GridWorld2dEnvironment.Tuple tuple = createTuple();
-                        tuple.start = start;
-                        tuple.goal = goal;
+    public List<GridWorld2dState> starts;
+    public List<GridWorld2dState> targets;
+    public Set<GridWorld2dState>  goals;
+    public Set<GridWorld2dState>  anyGoals;
+    public byte[][]               map;
+    public byte[][]               raw;
+    public byte[]                 attributes;
+    public int                    height;
+    public int                    width;
+    public int                    stateHeight;
+    public int                    stateWidth;
 
-                        availableTuples.add(tuple);
-                    }
+    /**
+     * Ids, in ascending order, of the cells with the {@link #GATE} attribute.
+     */
+    private int[] gateIds;
 
-                }
-            }
-        }
+    /**
+     * Probability of each cardinal move from the cells of <em>gateIds</em>, four per cell in the same order.
+     */
+    private double[] gateProbabilities;
 
-        if (availableTuples.isEmpty()) {
-            List<GridWorld2dState> starts = new ArrayList<>();
-            List<GridWorld2dState> goals  = new ArrayList<>();
-            for (int y = 1; y < height; y++) {
-                for (int x = 1; x < width; x++) {
-                    if (map[y][x] == 'S') {
-                        starts.add(new GridWorld2dState(toStatePosition(x), toStatePosition(y)));
-                    } else if (map[y][x] == 'G') {
-                        goals.add(new GridWorld2dState(toStatePosition(x), toStatePosition(y)));
-                    }
-                }
+    /**
+     * Time the file was last modified when it was compiled.
+     */
+    private long modified;
+
+    /**
+     * Time taken to read and compile the file, in milliseconds.
+     */
+    private long loadMillis;
+
+    /**
+     * @param path Path to the layout file
+     * @return The compiled layout of the file, shared with everyone else who compiles it
+     */
+    public static GridWorld2dLayout compile(Path path) {
+        Path key      = path.toAbsolutePath().normalize();
+        long modified = key.toFile().lastModified();
+
+        // Compiling under the lock of the entry means a file is only compiled once, however many runs start together
+        return compiled.compute(key, (file, layout) -> {
+            if (layout != null && layout.modified == modified) {
+                return layout;
             }
+            try {
+                long                  start = System.nanoTime();
+                GridWorld2dFileReader fr    = new GridWorld2dFileReader();
+                fr.parse(file);
 
-            for (GridWorld2dState start : starts) {
-                GridWorld2dEnvironment.Tuple tuple = createTuple();
-                tuple.start = start;
+                layout = new GridWorld2dLayout();
+                layout.modified = modified;
+                layout.stateWidth = fr.getStateWidth();
+                layout.stateHeight = fr.getStateHeight();
+                layout.width = fr.getLayoutWidth();
+                layout.height = fr.getLayoutHeight();
+                layout.raw = fr.getLayout();
+                layout.map = fr.getLayout();
+                layout.parse(fr.getProbabilities());
 
-                availableTuples.add(tuple);
+                layout.loadMillis = (System.nanoTime() - start) / 1_000_000;
+                return layout;
+            } catch (Exception e) {
+                throw new RuntimeException(e.getMessage());
             }
-            if (goals.size() == 1) {
-                for (GridWorld2dEnvironment.Tuple tuple : availableTuples) {
-                    tuple.goal = goals.get(0);
+        });
+    }
+
+    /**
+     * @return Time taken to read and compile the layout file, in milliseconds, or 0 if the layout was not read from a
+     * file
+     */
+    public long getLoadMillis() {
+        return loadMillis;
+    }
+
+    public void parse(List<Map<Character, Double>> probabilities) {
+
+        // Search the layout for start and goal positions for agents in one pass, the goal of a letter being the last
+        // of its upper case found
+        List<GridWorld2dState> starts      = new ArrayList<>();
+        List<GridWorld2dState> targets     = new ArrayList<>();
+        List<GridWorld2dState> lettered    = new ArrayList<>();
+        StringBuilder          letters     = new StringBuilder();
+        GridWorld2dState[]     upper       = new GridWorld2dState[128];
+        List<GridWorld2dState> plainStarts = new ArrayList<>();
+        List<GridWorld2dState> plainGoals  = new ArrayList<>();
+
+        for (int y = 1; y < height; y++) {
+            for (int x = 1; x < width; x++) {
+                byte cell = map[y][x];
+                if (!Character.isAlphabetic(cell)) {
+                    continue;
+                }
+                GridWorld2dState position = new GridWorld2dState(toStatePosition(x), toStatePosition(y));
+                if (Character.isLowerCase(cell)) {
+                    lettered.add(position);
+                    letters.append((char) cell);
+                } else {
+                    upper[cell] = position;
                 }
-                goals.clear();
+                if (cell == 'S') {
+                    plainStarts.add(position);
+                } else if (cell == 'G') {
+                    plainGoals.add(position);
+                }
+            }
+        }
+        for (int i = 0; i < lettered.size(); i++) {
+            GridWorld2dState goal = upper[Character.toUpperCase(letters.charAt(i))];
+            if (goal != null) {
+                starts.add(lettered.get(i));
+                targets.add(goal);
+            }
+        }
+
+        // Otherwise agents start at an S and finish at the G, or any G if there are several
+        goals = new HashSet<>();
+        if (starts.isEmpty()) {
+            starts.addAll(plainStarts);
+            for (GridWorld2dState ignored : starts) {
+                targets.add(plainGoals.size() == 1 ? plainGoals.get(0) : null);
             }
-            this.goals = new HashSet<>(goals);
+            if (plainGoals.size() == 1) {
+                plainGoals.clear();
+            }
+            goals = new HashSet<>(plainGoals);
         }
+        setAgents(starts, targets, this.goals);
 
         // Remove all traces of the start and goal positions
         for (int y = 1; y < height; y += 2) {
@@ -94,16 +213,48 @@ public class GridWorld2dLayout {
             }
         }
 
-        initialiseProbabilities(probabilities);
+        initialiseAttributes(probabilities);
+    }
+
+    /**
+     * @param starts  Where each agent starts
+     * @param targets Where each agent finishes, or null for any of the goals
+     * @param goals   Goals of agents without targets
+     */
+    protected void setAgents(List<GridWorld2dState> starts, List<GridWorld2dState> targets,
+                             Set<GridWorld2dState> goals) {
+        // Agents finish at their own target or any of the goals
+        Set<GridWorld2dState> anyGoals = new HashSet<>(goals);
+        for (GridWorld2dState target : targets) {
+            if (target != null) {
+                anyGoals.add(target);
+            }
+        }
+        this.starts = Collections.unmodifiableList(starts);
+        this.targets = Collections.unmodifiableList(targets);
+        this.goals = Collections.unmodifiableSet(goals);
+        this.anyGoals = Collections.unmodifiableSet(anyGoals);
     }
 
-    protected void initialiseProbabilities(List<Map<Character, Double>> probabilities) {
-        this.probabilities = new double[stateHeight][stateWidth][Compass.Cardinal.values().length];
+    /**
+     * Work out the attributes of every cell, once the map and the agents have been set.
+     *
+     * @param probabilities Probabilities of moving through each gate
+     */
+    protected void initialiseAttributes(List<Map<Character, Double>> probabilities) {
+        attributes = new byte[stateHeight * stateWidth];
+        gateIds = new int[0];
+        gateProbabilities = new double[0];
+        int nGates = 0;
+        Arrays.fill(attributes, (byte) BLOCKED);
+
         GridWorld2dState tmp = new GridWorld2dState(0, 0);
         for (int y = 1, dy = 0, numGate = 0; y < height; y += 2, dy++) {
             for (int x = 1, dx = 0; x < width; x += 2, dx++) {
                 switch (map[y][x]) {
                     case MAP_FLOOR:
+                        int      attribute = 0;
+                        double[] gate      = new double[Compass.Cardinal.values().length];
                         for (int a = 0; a < Compass.Cardinal.values().length; a++) {
                             tmp.set(x, y);
                             GridWorld2dState.perform(tmp, Compass.Cardinal.values()[a], 1);
@@ -126,21 +277,25 @@ public class GridWorld2dLayout {
                                     }
                                     break;
                                 case MAP_ONE_WAY_WEST:
+                                    attribute |= ONE_WAY;
                                     if (Compass.Cardinal.values()[a] == Compass.Cardinal.EAST) {
                                         prob = 0.0d;
                                     }
                                     break;
                                 case MAP_ONE_WAY_EAST:
+                                    attribute |= ONE_WAY;
                                     if (Compass.Cardinal.values()[a] == Compass.Cardinal.WEST) {
                                         prob = 0.0d;
                                     }
                                     break;
                                 case MAP_ONE_WAY_NORTH:
+                                    attribute |= ONE_WAY;
                                     if (Compass.Cardinal.values()[a] == Compass.Cardinal.SOUTH) {
                                         prob = 0.0d;
                                     }
                                     break;
                                 case MAP_ONE_WAY_SOUTH:
+                                    attribute |= ONE_WAY;
                                     if (Compass.Cardinal.values()[a] == Compass.Cardinal.NORTH) {
                                         prob = 0.0d;
                                     }
@@ -155,19 +310,112 @@ public class GridWorld2dLayout {
                                     prob = 0.0d;
                             }
 
-                            this.probabilities[dy][dx][a] = prob;
+                            if (prob <= 0.0d) {
+                                attribute |= 1 << a;
+                            } else if (prob < 1.0d) {
+                                attribute |= GATE;
+                            }
+                            gate[a] = prob;
                             numGate = Math.min(probabilities.size() - 1, ++numGate);
                         }
+                        attributes[id(dx, dy)] = (byte) attribute;
+                        if ((attribute & GATE) != 0) {
+                            // Cells are visited in order of id, so the ids stay sorted
+                            if (nGates == gateIds.length) {
+                                gateIds = Arrays.copyOf(gateIds, Math.max(4, nGates * 2));
+                                gateProbabilities = Arrays.copyOf(gateProbabilities, gateIds.length * gate.length);
+                            }
+                            gateIds[nGates] = id(dx, dy);
+                            System.arraycopy(gate, 0, gateProbabilities, nGates * gate.length, gate.length);
+                            nGates++;
+                        }
                         break;
                 }
             }
         }
+
+        gateIds = Arrays.copyOf(gateIds, nGates);
+        gateProbabilities = Arrays.copyOf(gateProbabilities, nGates * Compass.Cardinal.values().length);
+
+        for (GridWorld2dState goal : goals) {
+            attributes[id(goal.x, goal.y)] |= GOAL;
+        }
+        for (GridWorld2dState goal : anyGoals) {
+            attributes[id(goal.x, goal.y)] |= ANY_GOAL;
+        }
+    }
+
+    /**
+     * @param x x-axis coordinate of a cell
+     * @param y y-axis coordinate of a cell
+     * @return Dense id of the cell, from 0 to the number of cells
+     */
+    public int id(int x, int y) {
+        return y * stateWidth + x;
+    }
+
+    /**
+     * @param id        Id of the cell moved from
+     * @param direction Cardinal direction of the move
+     * @param chance    Number drawn uniformly from [0, 1) for the move
+     * @return True if the move succeeds
+     */
+    public boolean canMove(int id, int direction, double chance) {
+        int attribute = attributes[id];
+        if ((attribute & (1 << direction)) != 0) {
+            return false;
+        }
+
+        return (attribute & GATE) == 0 || gate(id, direction) >= chance;
+    }
+
+    /**
+     * @param id        Id of the cell moved from
+     * @param direction Cardinal direction of the move
+     * @return Probability the move succeeds
+     */
+    public double probability(int id, int direction) {
+        int attribute = attributes[id];
+        if ((attribute & (1 << direction)) != 0) {
+            return 0.0d;
+        }
+
+        return (attribute & GATE) == 0 ? 1.0d : gate(id, direction);
     }
 
-    protected GridWorld2dEnvironment.Tuple createTuple() {
-        return new GridWorld2dEnvironment.Tuple();
+    private double gate(int id, int direction) {
+        return gateProbabilities[Arrays.binarySearch(gateIds, id) * 4 + direction];
     }
 
+    /**
+     * @param state State
+     * @return True if <em>state</em> is one of the goals shared by agents without targets
+     */
+    public boolean isGoal(GridWorld2dState state) {
+        return (attributes[id(state.x, state.y)] & GOAL) != 0;
+    }
+
+    /**
+     * @param state State
+     * @return True if <em>state</em> is where any agent finishes
+     */
+    public boolean isAnyGoal(GridWorld2dState state) {
+        return (attributes[id(state.x, state.y)] & ANY_GOAL) != 0;
+    }
+
+    /**
+     * @param symbol Symbol, as a code point, of a layout file
+     * @return The byte that stands for <em>symbol</em> in maps
+     */
+    public static byte cell(int symbol) {
+        if (symbol == SYMBOL_WALL) {
+            return MAP_WALL;
+        }
+        if (symbol < 0 || symbol >= 0x80) {
+            throw new IllegalArgumentException("Unknown layout symbol " + new String(Character.toChars(symbol)));
+        }
+        return (byte) symbol;
+    }
 
     protected static int toStatePosition(int p) {
         return p / 2;
@@ -0,0 +1,349 @@
+package org.madesimple.small.environment.gridworld2d;
+
+import org.madesimple.small.utility.Configuration;
+import org.madesimple.small.utility.RandomStream;
+
+import java.lang.ref.SoftReference;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * A Grid World 2d Layout Generator builds layouts of any size from a seed, straight into a {@link GridWorld2dLayout}
+ * with no layout file in between. Each agent is given a start and a goal of its own, on distinct floor cells chosen
+ * at random. The kinds of layout are:
+ * </p>
+ * <dl>
+ * <dt>field</dt>
+ * <dd>Open floor on which each cell is a barrier with probability <em>Density</em>; parts of the field may be cut
+ * off.</dd>
+ * <dt>maze</dt>
+ * <dd>A maze with a single path between any two cells, from which each wall is removed with probability
+ * 1 - <em>Density</em> to make loops.</dd>
+ * <dt>rooms</dt>
+ * <dd>Open rooms of <em>RoomSize</em> by <em>RoomSize</em> cells joined as a maze of rooms by doors, each wall
+ * between rooms that is not needed by the maze being given a door with probability 1 - <em>Density</em>.</dd>
+ * <dt>corridors</dt>
+ * <dd>Rows of one-way corridors, alternately heading east and west, joined at both ends; each wall between two
+ * corridors is opened with probability 1 - <em>Density</em>.</dd>
+ * </dl>
+ * <p>
+ * The same settings always give the same layout, which is generated once and shared as layouts compiled from files
+ * are. The generator only holds soft references to its layouts, so one that no environment is using any more can be
+ * reclaimed when memory runs short and is generated again if it is asked for. Generated layouts have no copy of the
+ * map as it was before start and goal letters were removed: <em>raw</em> is the map itself.
+ * </p>
+ * <p>
+ * <em>Density</em> is 0.2 for fields and 0.9 for the other kinds unless it is set.
+ * </p>
+ * <pre>
+ * Environment.GridWorld2d.Generator          = maze
+ * Environment.GridWorld2d.Generator.Width    = 1000
+ * Environment.GridWorld2d.Generator.Height   = 1000
+ * Environment.GridWorld2d.Generator.Density  = 0.9
+ * Environment.GridWorld2d.Generator.RoomSize = 10
+ * Environment.GridWorld2d.Generator.Seed     = 1
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class GridWorld2dLayoutGenerator {
+    public enum Kind {
+        FIELD, MAZE, ROOMS, CORRIDORS
+    }
+
+    /**
+     * An edge that can be crossed either way.
+     */
+    private static final byte OPEN = ' ';
+
+    /**
+     * Layouts generated so far, by their settings.
+     */
+    private static final ConcurrentMap<String, SoftReference<GridWorld2dLayout>> generated = new ConcurrentHashMap<>();
+
+    private final Kind         kind;
+    private final int          stateWidth;
+    private final int          stateHeight;
+    private final double       density;
+    private final int          roomSize;
+    private final int          nAgents;
+    private final RandomStream random;
+
+    private GridWorld2dLayout layout;
+    private byte[][]          map;
+
+    /**
+     * @param cfg Configuration
+     * @return The layout given by the generator settings of <em>cfg</em>, shared with everyone else who asks for it
+     */
+    public static GridWorld2dLayout generate(Configuration cfg) {
+        Kind kind = Kind.valueOf(cfg.getString("Environment.GridWorld2d.Generator").trim().toUpperCase());
+        return generate(kind,
+                        cfg.getInteger("Environment.GridWorld2d.Generator.Width"),
+                        cfg.getInteger("Environment.GridWorld2d.Generator.Height"),
+                        cfg.getDouble("Environment.GridWorld2d.Generator.Density", kind == Kind.FIELD ? 0.2d : 0.9d),
+                        cfg.getInteger("Environment.GridWorld2d.Generator.RoomSize", 10),
+                        cfg.getInteger("Environment.GridWorld2d.NumAgents"),
+                        cfg.getInteger("Environment.GridWorld2d.Generator.Seed", 1));
+    }
+
+    /**
+     * @param kind     Kind of layout
+     * @param width    Width in cells
+     * @param height   Height in cells
+     * @param density  Density of barriers or walls
+     * @param roomSize Width and height of rooms in cells
+     * @param nAgents  Number of agents
+     * @param seed     Seed
+     * @return The layout, shared with everyone else who asks for it
+     */
+    public static GridWorld2dLayout generate(Kind kind, int width, int height, double density, int roomSize,
+                                             int nAgents, long seed) {
+        if (width < 2 || height < 2) {
+            throw new IllegalArgumentException("Generated layouts must be at least 2 by 2 cells");
+        }
+        if (2 * nAgents > width * (long) height) {
+            throw new IllegalArgumentException("Not enough cells for " + nAgents + " agents");
+        }
+
+        // Drop the entries of layouts that have been reclaimed
+        generated.values().removeIf(reference -> reference.get() == null);
+
+        // Generating under the lock of the entry means a layout is only generated once, however many ask together
+        String              key    = kind + ":" + width + ":" + height + ":" + density + ":" + roomSize + ":"
+                                     + nAgents + ":" + seed;
+        GridWorld2dLayout[] layout = new GridWorld2dLayout[1];
+        generated.compute(key, (k, reference) -> {
+            layout[0] = reference != null ? reference.get() : null;
+            if (layout[0] == null) {
+                layout[0] = new GridWorld2dLayoutGenerator(
+                        kind, width, height, density, Math.max(1, roomSize), nAgents, seed).build();
+                reference = new SoftReference<>(layout[0]);
+            }
+            return reference;
+        });
+
+        return layout[0];
+    }
+
+    /**
+     * Forget every layout generated so far, so that the next to be asked for is generated afresh.
+     */
+    static void forget() {
+        generated.clear();
+    }
+
+    private GridWorld2dLayoutGenerator(Kind kind, int stateWidth, int stateHeight, double density, int roomSize,
+                                       int nAgents, long seed) {
+        this.kind = kind;
+        this.stateWidth = stateWidth;
+        this.stateHeight = stateHeight;
+        this.density = density;
+        this.roomSize = roomSize;
+        this.nAgents = nAgents;
+        this.random = new RandomStream(seed);
+    }
+
+    private GridWorld2dLayout build() {
+        layout = new GridWorld2dLayout();
+        layout.stateWidth = stateWidth;
+        layout.stateHeight = stateHeight;
+        layout.width = 2 * stateWidth + 1;
+        layout.height = 2 * stateHeight + 1;
+
+        // Start with every cell enclosed by walls
+        map = new byte[layout.height][layout.width];
+        for (int y = 0; y < layout.height; y++) {
+            Arrays.fill(map[y], GridWorld2dLayout.MAP_WALL);
+            if ((y & 1) == 1) {
+                for (int x = 1; x < layout.width; x += 2) {
+                    map[y][x] = GridWorld2dLayout.MAP_FLOOR;
+                }
+            }
+        }
+
+        switch (kind) {
+            case FIELD:
+                field();
+                break;
+            case MAZE:
+                maze();
+                break;
+            case ROOMS:
+                rooms();
+                break;
+            case CORRIDORS:
+                corridors();
+                break;
+        }
+        placeAgents();
+
+        layout.map = map;
+        layout.raw = map;
+        layout.initialiseAttributes(Collections.emptyList());
+
+        return layout;
+    }
+
+    private void field() {
+        for (int y = 0; y < stateHeight; y++) {
+            for (int x = 0; x < stateWidth; x++) {
+                if (x + 1 < stateWidth) {
+                    openEast(x, y, OPEN);
+                }
+                if (y + 1 < stateHeight) {
+                    openNorth(x, y, OPEN);
+                }
+                if (random.nextDouble() < density) {
+                    map[2 * y + 1][2 * x + 1] = GridWorld2dLayout.MAP_BARRIER;
+                }
+            }
+        }
+    }
+
+    private void maze() {
+        carve(stateWidth, stateHeight, 1);
+
+        // Knock through some of the walls left to make loops
+        for (int y = 0; y < stateHeight; y++) {
+            for (int x = 0; x < stateWidth; x++) {
+                if (x + 1 < stateWidth && isWallEast(x, y) && random.nextDouble() >= density) {
+                    openEast(x, y, OPEN);
+                }
+                if (y + 1 < stateHeight && isWallNorth(x, y) && random.nextDouble() >= density) {
+                    openNorth(x, y, OPEN);
+                }
+            }
+        }
+    }
+
+    private void rooms() {
+        // Open up the inside of every room
+        for (int y = 0; y < stateHeight; y++) {
+            for (int x = 0; x < stateWidth; x++) {
+                if (x + 1 < stateWidth && (x + 1) % roomSize != 0) {
+                    openEast(x, y, OPEN);
+                }
+                if (y + 1 < stateHeight && (y + 1) % roomSize != 0) {
+                    openNorth(x, y, OPEN);
+                }
+            }
+        }
+
+        // Join the rooms as a maze, then add doors to some of the other walls between rooms
+        int roomsWide = (stateWidth + roomSize - 1) / roomSize;
+        int roomsHigh = (stateHeight + roomSize - 1) / roomSize;
+        carve(roomsWide, roomsHigh, roomSize);
+        for (int ry = 0; ry < roomsHigh; ry++) {
+            for (int rx = 0; rx < roomsWide; rx++) {
+                if (rx + 1 < roomsWide && random.nextDouble() >= density) {
+                    door(rx, ry, true, roomSize);
+                }
+                if (ry + 1 < roomsHigh && random.nextDouble() >= density) {
+                    door(rx, ry, false, roomSize);
+                }
+            }
+        }
+    }
+
+    private void corridors() {
+        for (int y = 0; y < stateHeight; y++) {
+            // Even rows head east and odd rows west
+            byte oneWay = (y & 1) == 0 ? GridWorld2dLayout.MAP_ONE_WAY_EAST : GridWorld2dLayout.MAP_ONE_WAY_WEST;
+            for (int x = 0; x + 1 < stateWidth; x++) {
+                openEast(x, y, oneWay);
+            }
+
+            // Join the rows at both ends so every cell can be reached from every other
+            if (y + 1 < stateHeight) {
+                openNorth(0, y, OPEN);
+                openNorth(stateWidth - 1, y, OPEN);
+                for (int x = 1; x + 1 < stateWidth; x++) {
+                    if (random.nextDouble() >= density) {
+                        openNorth(x, y, OPEN);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Carve a maze with a single path between any two blocks of <em>size</em> by <em>size</em> cells, using the
+     * sidewinder algorithm, which needs no memory beyond where the current run of blocks in a row began.
+     */
+    private void carve(int blocksWide, int blocksHigh, int size) {
+        for (int by = 0; by < blocksHigh; by++) {
+            int runStart = 0;
+            for (int bx = 0; bx < blocksWide; bx++) {
+                boolean top  = by + 1 == blocksHigh;
+                boolean last = bx + 1 == blocksWide;
+                if (top) {
+                    if (!last) {
+                        door(bx, by, true, size);
+                    }
+                } else if (last || random.nextBoolean()) {
+                    // Close the run, joining one of its blocks to the row above
+                    door(runStart + random.nextInt(bx - runStart + 1), by, false, size);
+                    runStart = bx + 1;
+                } else {
+                    door(bx, by, true, size);
+                }
+            }
+        }
+    }
+
+    /**
+     * Open a door at random in the east or north wall of block (<em>bx</em>, <em>by</em>) of <em>size</em> by
+     * <em>size</em> cells.
+     */
+    private void door(int bx, int by, boolean east, int size) {
+        if (east) {
+            int y = by * size + random.nextInt(Math.min(size, stateHeight - by * size));
+            openEast(bx * size + size - 1, y, OPEN);
+        } else {
+            int x = bx * size + random.nextInt(Math.min(size, stateWidth - bx * size));
+            openNorth(x, by * size + size - 1, OPEN);
+        }
+    }
+
+    private void placeAgents() {
+        Set<GridWorld2dState>  used    = new HashSet<>();
+        List<GridWorld2dState> starts  = new ArrayList<>();
+        List<GridWorld2dState> targets = new ArrayList<>();
+        for (int i = 0; i < nAgents; i++) {
+            starts.add(pickCell(used));
+            targets.add(pickCell(used));
+        }
+        layout.setAgents(starts, targets, new HashSet<>());
+    }
+
+    private GridWorld2dState pickCell(Set<GridWorld2dState> used) {
+        GridWorld2dState cell;
+        do {
+            cell = new GridWorld2dState(random.nextInt(stateWidth), random.nextInt(stateHeight));
+        } while (!used.add(cell));
+
+        // Agents never start or finish on a barrier
+        map[2 * cell.y + 1][2 * cell.x + 1] = GridWorld2dLayout.MAP_FLOOR;
+
+        return cell;
+    }
+
+    private void openEast(int x, int y, byte edge) {
+        map[2 * y + 1][2 * x + 2] = edge;
+    }
+
+    private void openNorth(int x, int y, byte edge) {
+        map[2 * y + 2][2 * x + 1] = edge;
+    }
+
+    private boolean isWallEast(int x, int y) {
+        return map[2 * y + 1][2 * x + 2] == GridWorld2dLayout.MAP_WALL;
+    }
+
+    private boolean isWallNorth(int x, int y) {
+        return map[2 * y + 2][2 * x + 1] == GridWorld2dLayout.MAP_WALL;
+    }
+}
@@ -2,6 +2,7 @@ package org.madesimple.small.environment.gridworld2d;
 
 import org.madesimple.small.environment.DiscreteState;
 import org.madesimple.small.environment.State;
+import org.madesimple.small.utility.Hash;
 
 /**
  * @author Peter Scopes (peter.scopes@gmail.com)
@@ -33,6 +34,7 @@ public class GridWorld2dState extends DiscreteState {
     public void set(int x, int y) {
         this.x = x;
         this.y = y;
+        invalidate();
     }
 
     public void set(GridWorld2dState that) {
@@ -51,11 +53,21 @@ public class GridWorld2dState extends DiscreteState {
         return that instanceof GridWorld2dState && cmp(this, (GridWorld2dState) that);
     }
 
+    @Override
+    public int tuple(int feature) {
+        return feature == 0 ? x : y;
+    }
+
     @Override
     public int[] tuple() {
         return new int[] {x, y};
     }
 
+    @Override
+    protected int key() {
+        return Hash.pair(x, y);
+    }
+
     @Override
     public int availableActions() {
         return 4;
@@ -74,6 +86,7 @@ public class GridWorld2dState extends DiscreteState {
     public void move(int x, int y) {
         this.x += x;
         this.y += y;
+        invalidate();
     }
 
     public boolean near(GridWorld2dState that, int distance) {
@@ -98,6 +111,7 @@ public class GridWorld2dState extends DiscreteState {
 
     public void setX(int x) {
         this.x = x;
+        invalidate();
     }
 
     public int getY() {
@@ -106,9 +120,10 @@ public class GridWorld2dState extends DiscreteState {
 
     public void setY(int y) {
         this.y = y;
+        invalidate();
     }
 
-    static void perform(GridWorld2dState state, Compass action, int dis) {
+    static void perform(GridWorld2dState state, Compass<?> action, int dis) {
         if (action instanceof Compass.Cardinal) {
             switch ((Compass.Cardinal) action) {
                 case NORTH:
@@ -1,14 +1,14 @@
 package org.madesimple.small.environment.gridworld2d;
 
+import org.madesimple.small.environment.EnvironmentEvent;
 import org.madesimple.small.utility.Configurable;
 import org.madesimple.small.utility.Configuration;
+import org.madesimple.small.utility.EventBus;
 import org.madesimple.small.visualisation.FadeAway2dVisualiser;
 import org.madesimple.small.visualisation.Visualiser;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.Observable;
-import java.util.Observer;
 
 /**
  * @author Peter Scopes (peter.scopes@gmail.com)
@@ -43,18 +43,19 @@ public class GridWorld2dVisualiser extends JPanel implements Visualiser {
     }
 
     @Override
-    public void update(Observable o, Object arg) {
-        layoutMapPane.update(o, arg);
-        fadeAwayPane.update(o, arg);
+    public void on(EnvironmentEvent event) {
+        layoutMapPane.on(event);
+        fadeAwayPane.on(event);
 
-        if (o instanceof GridWorld2dEnvironment && arg instanceof GridWorld2dLayout) {
-            fadeAwayPane.setDivisions(((GridWorld2dLayout) arg).stateWidth, ((GridWorld2dLayout) arg).stateHeight);
+        if (event.type == EnvironmentEvent.Type.INITIALISED && event.source instanceof GridWorld2dEnvironment) {
+            GridWorld2dLayout layout = ((GridWorld2dEnvironment) event.source).getLayout();
+            fadeAwayPane.setDivisions(layout.stateWidth, layout.stateHeight);
             fadeAwayPane.invalidate();
             fadeAwayPane.repaint();
         }
     }
 
-    static class LayoutMapPane extends JPanel implements Configurable, Observer {
+    static class LayoutMapPane extends JPanel implements Configurable, EventBus.Listener<EnvironmentEvent> {
         GridWorld2dLayout layout;
 
         LayoutMapPane() {
@@ -67,9 +68,9 @@ public class GridWorld2dVisualiser extends JPanel implements Visualiser {
         }
 
         @Override
-        public void update(Observable o, Object arg) {
-            if (o instanceof GridWorld2dEnvironment && arg instanceof GridWorld2dLayout) {
-                layout = (GridWorld2dLayout) arg;
+        public void on(EnvironmentEvent event) {
+            if (event.type == EnvironmentEvent.Type.INITIALISED && event.source instanceof GridWorld2dEnvironment) {
+                layout = ((GridWorld2dEnvironment) event.source).getLayout();
                 invalidate();
                 repaint();
             }
@@ -3,12 +3,13 @@ package org.madesimple.small.environment.mountaincar;
 import org.madesimple.small.agent.Agent;
 import org.madesimple.small.environment.ContinuousEnvironment;
 import org.madesimple.small.environment.Environment;
+import org.madesimple.small.environment.EnvironmentEvent;
+import org.madesimple.small.environment.GenerativeEnvironment;
 import org.madesimple.small.environment.State;
 import org.madesimple.small.environment.TurnBasedEnvironment;
 import org.madesimple.small.utility.Configuration;
-
-import java.util.Observable;
-import java.util.concurrent.ThreadLocalRandom;
+import org.madesimple.small.utility.EventBus;
+import org.madesimple.small.utility.RandomStream;
 
 /**
  * <p>
@@ -26,7 +27,7 @@ import java.util.concurrent.ThreadLocalRandom;
  *
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
-public class MountainCarEnvironment extends Observable implements TurnBasedEnvironment, ContinuousEnvironment {
+public class MountainCarEnvironment implements TurnBasedEnvironment, ContinuousEnvironment, GenerativeEnvironment {
 
     public static class Tuple extends Environment.Tuple {
         MountainCarState state;
@@ -115,6 +116,9 @@ public class MountainCarEnvironment extends Observable implements TurnBasedEnvir
     protected Configuration cfg;
     protected int           time;
     protected int           turn;
+    protected RandomStream  random = RandomStream.current();
+
+    protected final EventBus<EnvironmentEvent> events = new EventBus<>();
 
     public MountainCarEnvironment() {
     }
@@ -126,6 +130,9 @@ public class MountainCarEnvironment extends Observable implements TurnBasedEnvir
 
     @Override
     public void initialise() {
+        // Take the random stream of the run
+        random = RandomStream.current();
+
         // Initialise the rewards
         rewardPerStep = cfg.getDouble("Environment.MountainCar.RewardPerStep");
         rewardAtGoal = cfg.getDouble("Environment.MountainCar.RewardAtGoal");
@@ -145,17 +152,16 @@ public class MountainCarEnvironment extends Observable implements TurnBasedEnvir
         turn = 0;
 
         // Reset visualiser
-        setChanged();
-        notifyObservers(null);
-        setChanged();
-        notifyObservers(tuple.state);
+        if (events.isActive()) {
+            events.publish(new EnvironmentEvent(this, EnvironmentEvent.Type.INITIALISED, tuple.state));
+        }
     }
 
     @Override
     public void reseed() {
         tuple.state.set(
-                ThreadLocalRandom.current().nextDouble(MIN_POSITION, MAX_POSITION),
-                ThreadLocalRandom.current().nextDouble(MIN_VELOCITY, MAX_VELOCITY)
+                random.nextDouble(MIN_POSITION, MAX_POSITION),
+                random.nextDouble(MIN_VELOCITY, MAX_VELOCITY)
         );
     }
 
@@ -166,8 +172,8 @@ public class MountainCarEnvironment extends Observable implements TurnBasedEnvir
         tuple.state = new MountainCarState(DEFAULT);
         if (randomStarts) {
             tuple.state.set(
-                    DEFAULT.getPosition() + .25d * (ThreadLocalRandom.current().nextDouble() - .5d),
-                    DEFAULT.getVelocity() + .025d * (ThreadLocalRandom.current().nextDouble() - .5d)
+                    DEFAULT.getPosition() + .25d * (random.nextDouble() - .5d),
+                    DEFAULT.getVelocity() + .025d * (random.nextDouble() - .5d)
             );
         }
         tuple.next = new MountainCarState();
@@ -176,8 +182,14 @@ public class MountainCarEnvironment extends Observable implements TurnBasedEnvir
         tuple.agent.reset(this);
 
         // Reset visualiser
-        setChanged();
-        notifyObservers(null);
+        if (events.isActive()) {
+            events.publish(new EnvironmentEvent(this, EnvironmentEvent.Type.RESTARTED, tuple.state));
+        }
+    }
+
+    @Override
+    public EventBus<EnvironmentEvent> events() {
+        return events;
     }
 
     @Override
@@ -230,8 +242,9 @@ public class MountainCarEnvironment extends Observable implements TurnBasedEnvir
         tuple.agent.receive(this, tuple.state, reward);
 
         // Inform visualiser
-        setChanged();
-        notifyObservers(tuple.state);
+        if (events.isStepDue()) {
+            events.publishStep(new EnvironmentEvent(this, EnvironmentEvent.Type.MOVED, tuple.state));
+        }
 
         // Increment the clock
         time++;
@@ -263,10 +276,24 @@ public class MountainCarEnvironment extends Observable implements TurnBasedEnvir
         return isTerminal(tuple.state);
     }
 
+    @Override
+    public boolean isTerminal(State state) {
+        return isTerminal((MountainCarState) state);
+    }
+
     private boolean isTerminal(MountainCarState state) {
         return state.getPosition() >= GOAL_POSITION;
     }
 
+    @Override
+    public double simulate(State from, int action, State out, RandomStream random) {
+        MountainCarState next = (MountainCarState) out;
+        next.set(from);
+        move(next, action, random);
+
+        return isTerminal(next) ? rewardAtGoal : rewardPerStep;
+    }
+
     /**
      * Get the height of the hill at this position.
      *
@@ -291,13 +318,24 @@ public class MountainCarEnvironment extends Observable implements TurnBasedEnvir
     }
 
     public void move(MountainCarState state, int action) {
+        move(state, action, random);
+    }
+
+    /**
+     * Move the car in <em>state</em> by <em>action</em>, drawing any transition noise from <em>random</em>.
+     *
+     * @param state  State to move
+     * @param action Action to perform
+     * @param random Stream to draw the noise from
+     */
+    public void move(MountainCarState state, int action, RandomStream random) {
         double acceleration = ACCELERATION_FACTOR;
 
         double position = state.getPosition();
         double velocity = state.getVelocity();
 
         //Noise should be at most
-        double thisNoise = 2.0d * acceleration * transitionNoise * (ThreadLocalRandom.current().nextDouble() - .5d);
+        double thisNoise = 2.0d * acceleration * transitionNoise * (random.nextDouble() - .5d);
 
         velocity += (thisNoise + ((envActions_[action].value)) * (acceleration)) + getSlope(position) * (GRAVITY_FACTOR);
         if (velocity > MAX_VELOCITY) {
@@ -8,6 +8,7 @@ import org.madesimple.small.utility.Hash;
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
 public class MountainCarState implements ContinuousState {
+    private static final int N_ACTIONS = MountainCarAction.values().length;
 
     /**
      * The position of the car.
@@ -19,6 +20,12 @@ public class MountainCarState implements ContinuousState {
      */
     private double velocity;
 
+    /**
+     * Cached hash code, valid while <em>hashed</em> is true.
+     */
+    private int     key;
+    private boolean hashed;
+
     /**
      *
      */
@@ -27,8 +34,7 @@ public class MountainCarState implements ContinuousState {
     }
 
     public MountainCarState(double position, double velocity) {
-        this.position = position;
-        this.velocity = velocity;
+        set(position, velocity);
     }
 
     public MountainCarState(MountainCarState that) {
@@ -47,6 +53,7 @@ public class MountainCarState implements ContinuousState {
     public void set(double position, double velocity) {
         this.position = position;
         this.velocity = velocity;
+        this.hashed = false;
     }
 
     public void set(MountainCarState that) {
@@ -83,7 +90,7 @@ public class MountainCarState implements ContinuousState {
 
     @Override
     public int availableActions() {
-        return MountainCarAction.values().length;
+        return N_ACTIONS;
     }
 
     @Override
@@ -93,7 +100,12 @@ public class MountainCarState implements ContinuousState {
 
     @Override
     public int hashCode() {
-        return Hash.pair((int)(position*1000.0d), (int)(velocity*1000.0d));
+        if (!hashed) {
+            key = Hash.pair((int)(position*1000.0d), (int)(velocity*1000.0d));
+            hashed = true;
+        }
+
+        return key;
     }
 
     @Override
@@ -120,6 +132,7 @@ public class MountainCarState implements ContinuousState {
      */
     public void setPosition(double position) {
         this.position = position;
+        this.hashed = false;
     }
 
     /**
@@ -127,6 +140,7 @@ public class MountainCarState implements ContinuousState {
      */
     public void setVelocity(double velocity) {
         this.velocity = velocity;
+        this.hashed = false;
     }
 
 
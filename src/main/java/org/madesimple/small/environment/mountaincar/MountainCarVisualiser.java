@@ -1,5 +1,6 @@
 package org.madesimple.small.environment.mountaincar;
 
+import org.madesimple.small.environment.EnvironmentEvent;
 import org.madesimple.small.utility.Configurable;
 import org.madesimple.small.utility.Configuration;
 import org.madesimple.small.visualisation.FadeAway2dVisualiser;
@@ -7,7 +8,6 @@ import org.madesimple.small.visualisation.Visualiser;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.Observable;
 
 /**
  * @author Peter Scopes (peter.scopes@gmail.com)
@@ -41,8 +41,8 @@ public class MountainCarVisualiser extends JPanel implements Visualiser {
     }
 
     @Override
-    public void update(Observable o, Object arg) {
-        foregroundPane.update(o, arg);
+    public void on(EnvironmentEvent event) {
+        foregroundPane.on(event);
     }
 
     static class BackgroundPane extends JPanel implements Configurable {
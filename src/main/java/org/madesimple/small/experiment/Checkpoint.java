@@ -0,0 +1,337 @@
+package org.madesimple.small.experiment;
+
+import org.madesimple.small.agent.Agent;
+import org.madesimple.small.agent.Clock;
+import org.madesimple.small.agent.learning.DiscreteLearningAgent;
+import org.madesimple.small.agent.learning.LearningAlgorithm;
+import org.madesimple.small.utility.RandomStream;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>
+ * A Checkpoint holds what a run needs to carry on from part way through, as if it had never stopped: the number of
+ * updates made and episodes played, the amount of its task, the state of its random stream and of the streams split
+ * from it for the agents and the environment, and, for every {@link DiscreteLearningAgent}, its clock and what its
+ * learning algorithm has learnt. Checkpoints are taken between episodes, when nothing of an episode is held by the
+ * environment or the agents.
+ * </p>
+ * <p>
+ * A checkpoint is {@link #capture captured} on the thread of the run from a {@link LearningAlgorithm#snapshot()
+ * snapshot} of each learning algorithm, which is cheap, and {@link #write written} by a {@link Writer} on a thread of
+ * its own whilst the run carries on. Algorithms that do not support snapshots have their policies saved by the run
+ * thread as it captures the checkpoint. In the checkpoint directory run <em>r</em> has the file
+ * <code>run-r.checkpoint</code>, replaced atomically once the policies it names have been written, and the policy
+ * files <code>run-r-u-agent-i.policy</code> of the checkpoint taken after <em>u</em> updates.
+ * </p>
+ * <p>
+ * Only what the policy files store is restored: the models of planning algorithms, replay buffers and the statistics
+ * of exploration bonuses start again empty. The
+ * {@link org.madesimple.small.experiment.simulation.ActorLearner ActorLearner} checkpoints between updates, and
+ * neither the episodes its actors are part way through nor the transitions queued for its learner are kept.
+ * </p>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class Checkpoint {
+    public int      run;
+    public int      update;
+    public int      episode;
+    public long     progress;
+    public long[]   random;
+    public long[][] streams;
+    public int[][]  clocks;
+    public String[] policies;
+
+    /**
+     * Snapshots of the learning algorithms waiting to be written, or null for those already saved.
+     */
+    private LearningAlgorithm[] snapshots;
+
+    /**
+     * Capture a checkpoint of a run on the thread of the run.
+     *
+     * @param directory Checkpoint directory
+     * @param run       Run number
+     * @param update    Number of updates made
+     * @param episode   Number of episodes played
+     * @param task      Task of the run
+     * @param agents    Agents of the run
+     * @param streams   Streams split from that of the run, in the same order every run
+     * @return The checkpoint, ready to be written
+     */
+    public static Checkpoint capture(File directory, int run, int update, int episode, Progress.Task task,
+                                     Agent[] agents, RandomStream[] streams) {
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.run = run;
+        checkpoint.update = update;
+        checkpoint.episode = episode;
+        checkpoint.progress = task.amount();
+        checkpoint.random = RandomStream.current().getState();
+        checkpoint.streams = new long[streams.length][];
+        for (int i = 0; i < streams.length; i++) {
+            checkpoint.streams[i] = streams[i].getState();
+        }
+        checkpoint.clocks = new int[agents.length][];
+        checkpoint.policies = new String[agents.length];
+        checkpoint.snapshots = new LearningAlgorithm[agents.length];
+
+        for (int i = 0; i < agents.length; i++) {
+            if (!(agents[i] instanceof DiscreteLearningAgent)) {
+                continue;
+            }
+            DiscreteLearningAgent agent = (DiscreteLearningAgent) agents[i];
+            Clock                 clock = agent.getClock();
+            checkpoint.clocks[i] = new int[]{clock.steps(), clock.episodes(), clock.episodeSteps()};
+            checkpoint.policies[i] = "run-" + run + "-" + update + "-agent-" + i + ".policy";
+
+            // Copy the learning algorithm, or save it now if it cannot be copied
+            LearningAlgorithm learning = agent.getLearningAlgorithm();
+            try {
+                checkpoint.snapshots[i] = learning.snapshot();
+            } catch (RuntimeException e) {
+                if (!learning.savePolicy(new File(directory, checkpoint.policies[i]))) {
+                    throw new RuntimeException("Could not save " + checkpoint.policies[i]);
+                }
+            }
+        }
+
+        return checkpoint;
+    }
+
+    /**
+     * Write the checkpoint into <em>directory</em>, replacing the previous checkpoint of the run, and delete the
+     * policy files of the previous checkpoint.
+     *
+     * @param directory Checkpoint directory
+     */
+    public void write(File directory) {
+        // Write the policies before the checkpoint that names them
+        for (int i = 0; i < snapshots.length; i++) {
+            if (snapshots[i] != null && !snapshots[i].savePolicy(new File(directory, policies[i]))) {
+                throw new RuntimeException("Could not save " + policies[i]);
+            }
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("Run", Integer.toString(run));
+        properties.setProperty("Update", Integer.toString(update));
+        properties.setProperty("Episode", Integer.toString(episode));
+        properties.setProperty("Progress", Long.toString(progress));
+        properties.setProperty("Random", random[0] + "," + random[1]);
+        properties.setProperty("Streams", Integer.toString(streams.length));
+        for (int i = 0; i < streams.length; i++) {
+            properties.setProperty("Stream." + i, streams[i][0] + "," + streams[i][1]);
+        }
+        properties.setProperty("Agents", Integer.toString(policies.length));
+        for (int i = 0; i < policies.length; i++) {
+            if (policies[i] != null) {
+                properties.setProperty("Agent." + i + ".Clock", clocks[i][0] + "," + clocks[i][1] + "," + clocks[i][2]);
+                properties.setProperty("Agent." + i + ".Policy", policies[i]);
+            }
+        }
+
+        // Replace the checkpoint in one step so that a crash leaves either the old or the new one
+        File file      = file(directory, run);
+        File temporary = new File(directory, file.getName() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temporary)) {
+            properties.store(out, "Checkpoint of run " + run);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+        try {
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+
+        // Delete the policies of older checkpoints of the run
+        String   prefix  = "run-" + run + "-";
+        String   current = prefix + update + "-";
+        String[] names   = directory.list();
+        if (names != null) {
+            for (String name : names) {
+                if (name.startsWith(prefix) && !name.startsWith(current) && name.contains(".policy")) {
+                    new File(directory, name).delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param directory Checkpoint directory
+     * @param run       Run number
+     * @return The latest checkpoint of run <em>run</em> in <em>directory</em>, or null if there is none
+     */
+    public static Checkpoint read(File directory, int run) {
+        File file = file(directory, run);
+        if (!file.exists()) {
+            return null;
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        } catch (IOException e) {
+            throw new RuntimeException(e.getMessage());
+        }
+
+        Checkpoint checkpoint = new Checkpoint();
+        checkpoint.run = run;
+        checkpoint.update = Integer.parseInt(properties.getProperty("Update"));
+        checkpoint.episode = Integer.parseInt(properties.getProperty("Episode"));
+        checkpoint.progress = Long.parseLong(properties.getProperty("Progress"));
+        String[] random = properties.getProperty("Random").split(",");
+        checkpoint.random = new long[]{Long.parseLong(random[0]), Long.parseLong(random[1])};
+        checkpoint.streams = new long[Integer.parseInt(properties.getProperty("Streams", "0"))][];
+        for (int i = 0; i < checkpoint.streams.length; i++) {
+            String[] stream = properties.getProperty("Stream." + i).split(",");
+            checkpoint.streams[i] = new long[]{Long.parseLong(stream[0]), Long.parseLong(stream[1])};
+        }
+
+        int nAgents = Integer.parseInt(properties.getProperty("Agents"));
+        checkpoint.clocks = new int[nAgents][];
+        checkpoint.policies = new String[nAgents];
+        for (int i = 0; i < nAgents; i++) {
+            String policy = properties.getProperty("Agent." + i + ".Policy");
+            if (policy == null) {
+                continue;
+            }
+            String[] clock = properties.getProperty("Agent." + i + ".Clock").split(",");
+            checkpoint.clocks[i] = new int[]{Integer.parseInt(clock[0]), Integer.parseInt(clock[1]),
+                                             Integer.parseInt(clock[2])};
+            checkpoint.policies[i] = policy;
+        }
+
+        return checkpoint;
+    }
+
+    /**
+     * Restore the checkpoint into a run whose environments and agents have just been initialised, binding the
+     * random stream of the run to the current thread first.
+     *
+     * @param directory Checkpoint directory
+     * @param task      Task of the run
+     * @param agents    Agents of the run
+     * @param streams   Streams split from that of the run, in the order they were captured
+     */
+    public void restore(File directory, Progress.Task task, Agent[] agents, RandomStream[] streams) {
+        if (agents.length != policies.length) {
+            throw new RuntimeException("Checkpoint of run " + run + " has " + policies.length + " agents, not " +
+                                       agents.length);
+        }
+        if (streams.length != this.streams.length) {
+            throw new RuntimeException("Checkpoint of run " + run + " has " + this.streams.length + " streams, not " +
+                                       streams.length);
+        }
+
+        task.reset(progress);
+        RandomStream.current().setState(random);
+        for (int i = 0; i < streams.length; i++) {
+            streams[i].setState(this.streams[i]);
+        }
+        for (int i = 0; i < agents.length; i++) {
+            if (policies[i] == null) {
+                continue;
+            }
+            DiscreteLearningAgent agent = (DiscreteLearningAgent) agents[i];
+            agent.getClock().set(clocks[i][0], clocks[i][1], clocks[i][2]);
+            if (!agent.getLearningAlgorithm().loadPolicy(new File(directory, policies[i]))) {
+                throw new RuntimeException("Could not load " + policies[i]);
+            }
+        }
+    }
+
+    /**
+     * @param experiment Experiment
+     * @return True if the run had finished when the checkpoint was taken
+     */
+    public boolean complete(TurnBasedExperiment experiment) {
+        return update >= experiment.totalUpdates;
+    }
+
+    private static File file(File directory, int run) {
+        return new File(directory, "run-" + run + ".checkpoint");
+    }
+
+    /**
+     * Writes the checkpoints of a run, one at a time, on a thread of its own. A checkpoint offered whilst the previous
+     * one is still being written is turned down, so a slow disk delays checkpoints rather than the run.
+     */
+    public static class Writer {
+        private final File            directory;
+        private final ExecutorService executor;
+        private       Future<?>       pending;
+
+        /**
+         * @param directory Checkpoint directory
+         * @param run       Run number
+         */
+        public Writer(File directory, int run) {
+            this.directory = directory;
+            this.executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "checkpoint-" + run);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        /**
+         * @return True if the previous checkpoint has been written
+         */
+        public boolean isIdle() {
+            if (pending != null && pending.isDone()) {
+                flush();
+            }
+
+            return pending == null;
+        }
+
+        /**
+         * Start writing <em>checkpoint</em>; the writer must be idle.
+         *
+         * @param checkpoint Checkpoint to write
+         */
+        public void write(Checkpoint checkpoint) {
+            pending = executor.submit(() -> checkpoint.write(directory));
+        }
+
+        /**
+         * Wait for the checkpoint being written and stop the thread.
+         */
+        public void close() {
+            try {
+                flush();
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        /**
+         * Wait for the checkpoint being written, passing on any failure to write it.
+         */
+        public void flush() {
+            if (pending == null) {
+                return;
+            }
+            try {
+                pending.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e.getMessage());
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause().getMessage());
+            } finally {
+                pending = null;
+            }
+        }
+    }
+}
@@ -2,22 +2,47 @@ package org.madesimple.small.experiment;
 
 import org.madesimple.small.agent.Agent;
 import org.madesimple.small.agent.learning.LearningAgent;
+import org.madesimple.small.environment.EnvironmentRegister;
 import org.madesimple.small.environment.TurnBasedEnvironment;
+import org.madesimple.small.experiment.observation.Observation;
 import org.madesimple.small.experiment.observation.TurnBasedRewardObservation;
-
-import java.util.Observable;
+import org.madesimple.small.utility.EventBus;
+import org.madesimple.small.utility.RandomStream;
 
 /**
+ * <p>
+ * A Simulation plays out one run of an experiment, publishing what it observes on {@link #observations()}.
+ * </p>
+ *
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
-public abstract class Simulation extends Observable implements Runnable {
+public abstract class Simulation implements Runnable {
+
+    protected final EventBus<Observation> observations = new EventBus<>();
 
     protected Progress.Task        task;
     protected TurnBasedExperiment  experiment;
+    protected EnvironmentRegister  register;
     protected TurnBasedEnvironment environment;
     protected TurnBasedEnvironment evaluation;
     protected Agent[]              agents;
     protected int                  run;
+    protected Checkpoint           resume;
+
+    private Checkpoint.Writer checkpoints;
+    private int               checkpointed;
+
+    /**
+     * Streams split for the agents, or null if they share the stream of the run.
+     */
+    private RandomStream[] agentStreams;
+
+    /**
+     * @return Bus the observations of the run are published on
+     */
+    public EventBus<Observation> observations() {
+        return observations;
+    }
 
     public void setExperiment(TurnBasedExperiment experiment) {
         this.experiment = experiment;
@@ -31,6 +56,20 @@ public abstract class Simulation extends Observable implements Runnable {
         this.run = run;
     }
 
+    /**
+     * @param register Register of the environment, for simulations that need more copies of it
+     */
+    public void setRegister(EnvironmentRegister register) {
+        this.register = register;
+    }
+
+    /**
+     * @param checkpoint Checkpoint to carry the run on from, or null to start it afresh
+     */
+    public void setResume(Checkpoint checkpoint) {
+        this.resume = checkpoint;
+    }
+
     public void setEnvironment(TurnBasedEnvironment environment) {
         this.environment = environment;
     }
@@ -43,6 +82,128 @@ public abstract class Simulation extends Observable implements Runnable {
         this.agents = agents;
     }
 
+    /**
+     * Bind the random stream of this run to the current thread. If <code>Experiment.RandomSeed</code> is set the
+     * stream depends only on the seed and the run number, otherwise it is unseeded. Must be called before the
+     * environments and agents are initialised.
+     */
+    protected void seed() {
+        if (experiment.randomSeed != -1) {
+            RandomStream.bind(RandomStream.forRun(experiment.randomSeed, run));
+        } else {
+            RandomStream.bind(new RandomStream());
+        }
+    }
+
+    /**
+     * Initialise the agents. If <code>Experiment.AgentStreams</code> is set each agent is initialised with a random
+     * stream of its own, split in turn from that of the run, which is bound again afterwards.
+     */
+    protected void initialiseAgents() {
+        agentStreams = null;
+        if (!experiment.agentStreams) {
+            for (Agent agent : agents) {
+                agent.initialise();
+            }
+            return;
+        }
+
+        RandomStream random = RandomStream.current();
+        agentStreams = new RandomStream[agents.length];
+        try {
+            for (int i = 0; i < agents.length; i++) {
+                agentStreams[i] = random.split();
+                RandomStream.bind(agentStreams[i]);
+                agents[i].initialise();
+            }
+        } finally {
+            RandomStream.bind(random);
+        }
+    }
+
+    /**
+     * Close the agents and the environments, releasing any threads they hold. Must be called when the run ends,
+     * however it ends.
+     */
+    protected void close() {
+        for (Agent agent : agents) {
+            agent.close();
+        }
+        environment.close();
+        if (evaluation != environment) {
+            evaluation.close();
+        }
+    }
+
+    /**
+     * @return The streams of the agents, if they have their own, followed by those of the environment
+     */
+    private RandomStream[] streams() {
+        RandomStream[] agents      = agentStreams != null ? agentStreams : new RandomStream[0];
+        RandomStream[] environment = this.environment.streams();
+        RandomStream[] streams     = new RandomStream[agents.length + environment.length];
+        System.arraycopy(agents, 0, streams, 0, agents.length);
+        System.arraycopy(environment, 0, streams, agents.length, environment.length);
+        return streams;
+    }
+
+    /**
+     * Restore the checkpoint the run is resumed from, if there is one, and start checkpointing the run if
+     * <code>Experiment.Checkpoint.Directory</code> is set. Must be called after the environments and agents are
+     * initialised and before the first episode.
+     *
+     * @return The checkpoint restored, or null if the run starts afresh
+     */
+    protected Checkpoint restore() {
+        checkpointed = 0;
+        if (resume != null) {
+            resume.restore(experiment.checkpointDirectory, task, agents, streams());
+            checkpointed = resume.update;
+        }
+        if (experiment.checkpointDirectory != null) {
+            checkpoints = new Checkpoint.Writer(experiment.checkpointDirectory, run);
+        }
+
+        return resume;
+    }
+
+    /**
+     * Checkpoint the run between episodes if <code>Experiment.Checkpoint.Frequency</code> updates have been made since
+     * the last checkpoint. If the last checkpoint is still being written it is tried again at the next call.
+     *
+     * @param update  Number of updates made
+     * @param episode Number of episodes played
+     */
+    protected void checkpoint(int update, int episode) {
+        if (checkpoints != null && update - checkpointed >= experiment.checkpointFrequency && checkpoints.isIdle()) {
+            checkpoints.write(Checkpoint.capture(experiment.checkpointDirectory, run, update, episode, task, agents,
+                                                 streams()));
+            checkpointed = update;
+        }
+    }
+
+    /**
+     * Write a last checkpoint of the finished run, so that it is not run again on resuming, and wait for it to be
+     * written.
+     *
+     * @param episode Number of episodes played
+     */
+    protected void conclude(int episode) {
+        if (checkpoints == null) {
+            return;
+        }
+        try {
+            if (checkpointed < experiment.totalUpdates) {
+                checkpoints.flush();
+                checkpoints.write(Checkpoint.capture(experiment.checkpointDirectory, run, experiment.totalUpdates,
+                                                     episode, task, agents, streams()));
+            }
+        } finally {
+            checkpoints.close();
+            checkpoints = null;
+        }
+    }
+
     protected void evaluate(int run, int update, int episode) {
         // Initialise the evaluation environment
         evaluation.initialise();
@@ -66,8 +227,9 @@ public abstract class Simulation extends Observable implements Runnable {
         }
 
         // Store the observation
-        setChanged();
-        notifyObservers(new TurnBasedRewardObservation(run, update, episode, turn, evaluation, agents));
+        if (observations.isActive()) {
+            observations.publish(new TurnBasedRewardObservation(run, update, episode, turn, evaluation, agents));
+        }
 
         // Turn off the evaluation mode of the agents
         for (Agent agent : agents) {
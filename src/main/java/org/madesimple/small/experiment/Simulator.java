@@ -6,6 +6,11 @@ import org.madesimple.small.utility.StopWatch;
 import java.util.concurrent.Semaphore;
 
 /**
+ * <p>
+ * If the experiment is checkpointed and resumed, each run carries on from its latest {@link Checkpoint}; runs that had
+ * finished are not run again.
+ * </p>
+ *
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
 public class Simulator implements Runnable {
@@ -38,15 +43,30 @@ public class Simulator implements Runnable {
         final Progress.Agenda agenda = new Progress.Agenda(tasks);
         agenda.setName(experiment.name);
 
+        // Find where each run had got to
+        final Checkpoint[] checkpoints = new Checkpoint[experiment.totalRuns];
+        if (experiment.checkpointDirectory != null) {
+            if (!experiment.checkpointDirectory.isDirectory() && !experiment.checkpointDirectory.mkdirs()) {
+                throw new RuntimeException("Could not create " + experiment.checkpointDirectory);
+            }
+            for (int i = 0; experiment.checkpointResume && i < experiment.totalRuns; i++) {
+                checkpoints[i] = Checkpoint.read(experiment.checkpointDirectory, i + 1);
+                if (checkpoints[i] != null) {
+                    tasks[i].reset(checkpoints[i].progress);
+                    System.out.println("Resuming run " + (i + 1) + " from update " + checkpoints[i].update);
+                }
+            }
+        }
+
         // Start the simulation
         StopWatch sw = new StopWatch();
         sw.start();
         switch (experiment.simulatorType) {
             case CONCURRENT:
-                concurrent(agenda);
+                concurrent(agenda, checkpoints);
                 break;
             case SEQUENTIAL:
-                sequential(agenda);
+                sequential(agenda, checkpoints);
                 break;
             default:
                 throw new IllegalArgumentException("Unknown simulation type");
@@ -61,21 +81,26 @@ public class Simulator implements Runnable {
      * Gets the number of available processors, <code>n</code>,  and attempts to run <code>n - 1</code> simulations
      * concurrently.
      *
-     * @param agenda agenda
+     * @param agenda      agenda
+     * @param checkpoints checkpoint to resume each run from, or null
      */
-    private void concurrent(Progress.Agenda agenda) {
+    private void concurrent(Progress.Agenda agenda, Checkpoint[] checkpoints) {
         // Get the number of available processors
         int             availableProcessors = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
         final Semaphore semaphore           = new Semaphore(availableProcessors, true);
 
         // Run the experiments
         for (int run = 1; run <= experiment.totalRuns; run++) {
+            if (isComplete(checkpoints[run - 1])) {
+                continue;
+            }
             try {
                 semaphore.acquire();
 
                 Simulation runnable = this.simulationFactory.generate();
                 runnable.setRun(run);
                 runnable.setTask(agenda.task(run-1));
+                runnable.setResume(checkpoints[run - 1]);
 
                 Thread th = new Thread(runnable);
                 th.start();
@@ -87,15 +112,28 @@ public class Simulator implements Runnable {
 
     /**
      * Runs <code>experiment.totalRuns</code> simulations of the experiment sequentially.
-     * @param agenda agenda
+     * @param agenda      agenda
+     * @param checkpoints checkpoint to resume each run from, or null
      */
-    private void sequential(Progress.Agenda agenda) {
+    private void sequential(Progress.Agenda agenda, Checkpoint[] checkpoints) {
         // Run the experiments
         for (int run = 1; run <= experiment.totalRuns; run++) {
+            if (isComplete(checkpoints[run - 1])) {
+                continue;
+            }
             Simulation runnable = this.simulationFactory.generate();
             runnable.setRun(run);
             runnable.setTask(agenda.task(run-1));
+            runnable.setResume(checkpoints[run - 1]);
             runnable.run();
         }
     }
+
+    /**
+     * @param checkpoint checkpoint of a run, or null
+     * @return True if the run had finished when it was checkpointed
+     */
+    private boolean isComplete(Checkpoint checkpoint) {
+        return checkpoint != null && checkpoint.complete(experiment);
+    }
 }
@@ -2,9 +2,28 @@ package org.madesimple.small.experiment;
 
 import org.madesimple.small.utility.Configuration;
 
+import java.io.File;
 import java.util.Map;
 
 /**
+ * <p>
+ * If <em>Experiment.Checkpoint.Directory</em> is set, runs are checkpointed into it every <em>Frequency</em> updates
+ * and, when <em>Resume</em> is set, carry on from their latest checkpoint there; see {@link Checkpoint}.
+ * </p>
+ * <pre>
+ * Experiment.Checkpoint.Directory = checkpoints
+ * Experiment.Checkpoint.Frequency = 100000
+ * Experiment.Checkpoint.Resume    = true
+ * </pre>
+ * <p>
+ * If <em>Experiment.AgentStreams</em> is set, each agent is initialised with a random stream of its own, split from
+ * that of the run, so that agents may act in parallel and still be reproducible. These streams are checkpointed along
+ * with that of the run.
+ * </p>
+ * <pre>
+ * Experiment.AgentStreams = true
+ * </pre>
+ *
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
 public class TurnBasedExperiment extends Experiment {
@@ -12,6 +31,10 @@ public class TurnBasedExperiment extends Experiment {
     public Map<String, String> properties;
     public int                 totalUpdates;
     public int                 observationFrequency;
+    public File                checkpointDirectory;
+    public int                 checkpointFrequency;
+    public boolean             checkpointResume;
+    public boolean             agentStreams;
 
 
     public TurnBasedExperiment(String name, Configuration cfg) {
@@ -24,5 +47,12 @@ public class TurnBasedExperiment extends Experiment {
         this.totalUpdates = cfg.getInteger("Experiment.TotalUpdates");
         this.observationFrequency = cfg.getInteger("Experiment.TotalUpdates") /
                                     cfg.getInteger("Experiment.ObservationCount");
+
+        this.checkpointDirectory = cfg.hasProperty("Experiment.Checkpoint.Directory") ?
+                                   new File(cfg.getString("Experiment.Checkpoint.Directory")) : null;
+        this.checkpointFrequency = cfg.getInteger("Experiment.Checkpoint.Frequency", observationFrequency);
+        this.checkpointResume = cfg.getBoolean("Experiment.Checkpoint.Resume", true);
+
+        this.agentStreams = cfg.getBoolean("Experiment.AgentStreams", false);
     }
 }
@@ -0,0 +1,50 @@
+package org.madesimple.small.experiment.observation;
+
+/**
+ * <p>
+ * The throughput, back-pressure and staleness of an actor-learner simulation at an observation point. It is printed
+ * as a tab separated line beginning with <code>#</code> so that it can be told apart from the rewards:
+ * </p>
+ * <pre>
+ * # run update steps waits idles queued mean-staleness max-staleness
+ * </pre>
+ * <ul>
+ * <li><em>steps</em> turns taken by the actors</li>
+ * <li><em>waits</em> times an actor found its queue full and had to wait for the learner</li>
+ * <li><em>idles</em> times the learner found every queue empty and had to wait for the actors</li>
+ * <li><em>queued</em> transitions waiting to be learnt from</li>
+ * <li><em>staleness</em> updates the learner had made between the snapshot that chose an action and learning from
+ * it</li>
+ * </ul>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class ActorLearnerObservation implements Observation {
+
+    private int    run;
+    private int    update;
+    private long   steps;
+    private long   waits;
+    private long   idles;
+    private int    queued;
+    private double meanStaleness;
+    private long   maxStaleness;
+
+    public ActorLearnerObservation(int run, int update, long steps, long waits, long idles, int queued,
+                                   double meanStaleness, long maxStaleness) {
+        this.run = run;
+        this.update = update;
+        this.steps = steps;
+        this.waits = waits;
+        this.idles = idles;
+        this.queued = queued;
+        this.meanStaleness = meanStaleness;
+        this.maxStaleness = maxStaleness;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("#\t%d\t%d\t%d\t%d\t%d\t%d\t%.2f\t%d", run, update, steps, waits, idles, queued,
+                             meanStaleness, maxStaleness);
+    }
+}
@@ -0,0 +1,11 @@
+package org.madesimple.small.experiment.observation;
+
+/**
+ * An Observation is something a {@link org.madesimple.small.experiment.Simulation} reports about a run, such as the
+ * rewards of an evaluation episode. Observers print or record it; its <code>toString()</code> is a line of output.
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public interface Observation {
+
+}
@@ -6,7 +6,7 @@ import org.madesimple.small.environment.Environment;
 /**
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
-public class TurnBasedRewardObservation {
+public class TurnBasedRewardObservation implements Observation {
 
     private int run;
     private int update;
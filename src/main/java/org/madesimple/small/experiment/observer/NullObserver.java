@@ -1,14 +1,13 @@
 package org.madesimple.small.experiment.observer;
 
-import java.util.Observable;
-import java.util.Observer;
+import org.madesimple.small.utility.EventBus;
 
 /**
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
-public class NullObserver implements Observer {
+public class NullObserver implements EventBus.Listener<Object> {
     @Override
-    public void update(Observable o, Object arg) {
+    public void on(Object event) {
         // do nothing
     }
 }
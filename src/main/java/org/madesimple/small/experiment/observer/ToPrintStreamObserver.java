@@ -1,13 +1,13 @@
 package org.madesimple.small.experiment.observer;
 
+import org.madesimple.small.utility.EventBus;
+
 import java.io.PrintStream;
-import java.util.Observable;
-import java.util.Observer;
 
 /**
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
-public class ToPrintStreamObserver implements Observer {
+public class ToPrintStreamObserver implements EventBus.Listener<Object> {
 
     protected PrintStream printStream;
 
@@ -16,9 +16,9 @@ public class ToPrintStreamObserver implements Observer {
     }
 
     @Override
-    public void update(Observable o, Object arg) {
+    public void on(Object event) {
         if (printStream != null) {
-            printStream.println(arg);
+            printStream.println(event);
         }
     }
 }
@@ -0,0 +1,467 @@
+package org.madesimple.small.experiment.simulation;
+
+import org.madesimple.small.agent.Agent;
+import org.madesimple.small.agent.Clock;
+import org.madesimple.small.agent.learning.DiscreteLearningAgent;
+import org.madesimple.small.agent.learning.LearningAlgorithm;
+import org.madesimple.small.environment.Environment;
+import org.madesimple.small.environment.State;
+import org.madesimple.small.environment.TurnBasedEnvironment;
+import org.madesimple.small.experiment.Checkpoint;
+import org.madesimple.small.experiment.Simulation;
+import org.madesimple.small.experiment.observation.ActorLearnerObservation;
+import org.madesimple.small.utility.Configurable;
+import org.madesimple.small.utility.Configuration;
+import org.madesimple.small.utility.RandomStream;
+import org.madesimple.small.utility.RingBuffer;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * Actor Learner separates acting from learning. <em>Actors</em> threads each play out episodes in their own copy of
+ * the environment, selecting actions with {@link LearningAlgorithm#snapshot() snapshots} of the agents' learning
+ * algorithms, and pass every transition they see to the learner, the thread running the simulation, through a
+ * {@link RingBuffer} of <em>QueueCapacity</em> transitions per actor. The learner takes up to <em>BatchSize</em>
+ * transitions from each queue in turn, updates the learning algorithms with them, advancing the clocks of the agents
+ * as they would have been had the agents learnt themselves, and, every <em>RefreshInterval</em> updates, gives the
+ * actors new snapshots. The agents must be {@link DiscreteLearningAgent}s whose algorithms support snapshots.
+ * </p>
+ * <p>
+ * Every refresh copies what each agent has learnt once for every actor, as snapshots share nothing and tables may
+ * change when read, so the interval should be long enough for the copies to cost little next to the updates made in
+ * between.
+ * </p>
+ * <p>
+ * An update is one transition learnt from, so <code>Experiment.TotalUpdates</code> and the observation points count
+ * the same thing as they do in {@link RollOut}. Evaluation episodes are played by the learner between updates. An
+ * actor whose queue is full waits for the learner rather than drop transitions, and the learner waits for the actors
+ * when every queue is empty; both are counted and reported, with how stale the transitions were, in an
+ * {@link ActorLearnerObservation} after each evaluation.
+ * </p>
+ * <p>
+ * The transitions of the actors are interleaved, so algorithms that carry something from one update to the next, such
+ * as SARSA's next action or eligibility traces, learn from a mix of episodes when there is more than one actor. The
+ * order of the updates depends on how the threads are scheduled, so a seeded run is not reproducible.
+ * </p>
+ * <p>
+ * Checkpoints are taken by the learner between updates rather than between episodes, and hold what the learner has
+ * learnt; the episodes the actors were part way through, and the transitions waiting in the queues, are not kept. A
+ * run resumed from a checkpoint gives its actors snapshots of what was restored and carries on learning from there.
+ * </p>
+ * <pre>
+ * Experiment.Simulation = org.madesimple.small.experiment.simulation.ActorLearner
+ * ActorLearner.Actors          = 2
+ * ActorLearner.QueueCapacity   = 64
+ * ActorLearner.BatchSize       = 16
+ * ActorLearner.RefreshInterval = 5000
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class ActorLearner extends Simulation implements Configurable {
+    /**
+     * How long a thread waiting for the other side of a queue sleeps before looking again.
+     */
+    private static final long WAIT_NANOS = 50_000L;
+
+    private Configuration cfg;
+    private int           nActors;
+    private int           queueCapacity;
+    private int           batchSize;
+    private int           refreshInterval;
+
+    private LearningAlgorithm[] learning;
+    private Clock[]             clocks;
+    private Actor[]             actors;
+    private Thread[]            threads;
+
+    private volatile boolean          running;
+    private volatile RuntimeException failure;
+
+    private long updates;
+    private long resumedEpisodes;
+    private long idles;
+    private long totalStaleness;
+    private long maxStaleness;
+
+    @Override
+    public void setConfiguration(Configuration cfg) {
+        this.cfg = cfg;
+        this.nActors = cfg.hasProperty("ActorLearner.Actors") ?
+                       cfg.getInteger("ActorLearner.Actors") : Runtime.getRuntime().availableProcessors();
+        this.nActors = Math.max(1, nActors);
+        this.queueCapacity = cfg.getInteger("ActorLearner.QueueCapacity");
+        this.batchSize = cfg.getInteger("ActorLearner.BatchSize");
+        this.refreshInterval = cfg.getInteger("ActorLearner.RefreshInterval");
+    }
+
+    @Override
+    public void run() {
+        // Seed the random stream of this run
+        seed();
+
+        // Initialise the environment and agents
+        environment.initialise();
+        initialiseAgents();
+
+        // Add the agents to the environment, which is only used to hand them over to the evaluation
+        for (Agent agent : agents) {
+            environment.add(agent);
+        }
+
+        // The learner updates the learning algorithms of the agents directly
+        learning = new LearningAlgorithm[agents.length];
+        clocks = new Clock[agents.length];
+        for (int i = 0; i < agents.length; i++) {
+            if (!(agents[i] instanceof DiscreteLearningAgent)) {
+                throw new RuntimeException("ActorLearner requires DiscreteLearningAgents");
+            }
+            learning[i] = ((DiscreteLearningAgent) agents[i]).getLearningAlgorithm();
+            clocks[i] = ((DiscreteLearningAgent) agents[i]).getClock();
+            learning[i].commence(environment);
+        }
+        updates = 0;
+        idles = 0;
+        totalStaleness = 0;
+        maxStaleness = 0;
+        actors = new Actor[nActors];
+        threads = new Thread[nActors];
+
+        try {
+            // Carry on from the checkpoint, if there is one, before the actors take their first snapshots
+            Checkpoint checkpoint = restore();
+            int        update     = checkpoint == null ? 1 : checkpoint.update + 1;
+            resumedEpisodes = checkpoint == null ? 0 : checkpoint.episode;
+
+            // Create the actors, each drawing from a stream of its own
+            RandomStream base = RandomStream.current();
+            try {
+                for (int i = 0; i < nActors; i++) {
+                    actors[i] = new Actor(base.split());
+                }
+            } finally {
+                RandomStream.bind(base);
+            }
+
+            // Start the actors
+            running = true;
+            for (int i = 0; i < nActors; i++) {
+                threads[i] = new Thread(actors[i], "actor-" + run + "-" + i);
+                threads[i].setDaemon(true);
+                threads[i].start();
+            }
+
+            // Learn from the transitions of the actors
+            while (update <= experiment.totalUpdates) {
+                if (failure != null) {
+                    throw new RuntimeException(failure.getMessage());
+                }
+
+                int learnt = 0;
+                for (Actor actor : actors) {
+                    Transition transition;
+                    for (int n = 0; n < batchSize && update <= experiment.totalUpdates
+                                    && (transition = actor.queue.peek()) != null; n++, update++, learnt++) {
+                        learn(transition);
+                        actor.queue.release();
+
+                        // Increment the task
+                        task.increment();
+
+                        // If evaluation point
+                        if (update % experiment.observationFrequency == 0) {
+                            evaluate(run, update, episodes());
+                            observe(update);
+                        }
+
+                        // If refresh point
+                        if (update % refreshInterval == 0) {
+                            refresh();
+                        }
+
+                        // Checkpoint the run if it is due
+                        checkpoint(update, episodes());
+                    }
+                }
+
+                if (learnt == 0) {
+                    idles++;
+                    LockSupport.parkNanos(WAIT_NANOS);
+                }
+            }
+            conclude(episodes());
+        } finally {
+            stop();
+            close();
+        }
+    }
+
+    /**
+     * Update the learning algorithm of the agent that made <em>transition</em> with it, and advance the agent's clock.
+     *
+     * @param transition Transition to learn from
+     */
+    private void learn(Transition transition) {
+        LearningAlgorithm algorithm = learning[transition.agent];
+        Clock             clock     = clocks[transition.agent];
+        algorithm.setTime(clock.time());
+        algorithm.update(transition.s, transition.a, transition.s_, transition.r);
+        clock.tick();
+        if (transition.terminal) {
+            algorithm.conclude();
+            clock.episode();
+        }
+
+        long staleness = updates - transition.version;
+        totalStaleness += staleness;
+        maxStaleness = Math.max(maxStaleness, staleness);
+        updates++;
+    }
+
+    /**
+     * Give every actor new snapshots of the learning algorithms. Each actor's snapshots are taken with its own stream
+     * bound, so their strategies draw from that stream.
+     */
+    private void refresh() {
+        RandomStream base = RandomStream.current();
+        try {
+            for (Actor actor : actors) {
+                RandomStream.bind(actor.stream);
+                actor.snapshot = new Snapshot(learning, clocks, updates);
+            }
+        } finally {
+            RandomStream.bind(base);
+        }
+    }
+
+    /**
+     * Tell the observers how the actors and the learner are keeping up with each other.
+     *
+     * @param update Update
+     */
+    private void observe(int update) {
+        if (!observations.isActive()) {
+            return;
+        }
+
+        long steps  = 0;
+        long waits  = 0;
+        int  queued = 0;
+        for (Actor actor : actors) {
+            steps += actor.steps;
+            waits += actor.waits;
+            queued += actor.queue.size();
+        }
+
+        observations.publish(new ActorLearnerObservation(run, update, steps, waits, idles, queued,
+                                                    (double) totalStaleness / Math.max(1, updates), maxStaleness));
+    }
+
+    /**
+     * @return Number of episodes the actors have started, counting those played before the run was resumed
+     */
+    private int episodes() {
+        long episodes = resumedEpisodes;
+        for (Actor actor : actors) {
+            episodes += actor.episodes;
+        }
+
+        return (int) episodes;
+    }
+
+    /**
+     * Stop the actors and wait for them to finish.
+     */
+    private void stop() {
+        running = false;
+        try {
+            for (Thread thread : threads) {
+                if (thread != null) {
+                    thread.join();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e.getMessage());
+        }
+    }
+
+    /**
+     * Close the actors' copies of the environment as well as the agents and environments of the run. Must be called
+     * after the actors have stopped.
+     */
+    @Override
+    protected void close() {
+        for (Actor actor : actors) {
+            if (actor != null) {
+                actor.copy.close();
+            }
+        }
+        super.close();
+    }
+
+    /**
+     * Snapshots of the learning algorithms of every agent, the times of their clocks and the number of updates made
+     * when they were taken.
+     */
+    private static class Snapshot {
+        final LearningAlgorithm[] policies;
+        final int[]               times;
+        final long                version;
+
+        Snapshot(LearningAlgorithm[] learning, Clock[] clocks, long version) {
+            this.policies = new LearningAlgorithm[learning.length];
+            this.times = new int[learning.length];
+            this.version = version;
+            for (int i = 0; i < learning.length; i++) {
+                policies[i] = learning[i].snapshot();
+                times[i] = clocks[i].time();
+            }
+        }
+    }
+
+    /**
+     * A transition made by an agent of an actor. The states are allocated the first time a slot is used and reused
+     * after that.
+     */
+    private static class Transition {
+        int     agent;
+        State   s;
+        int     a;
+        State   s_;
+        double  r;
+        boolean terminal;
+        long    version;
+    }
+
+    /**
+     * Plays out episodes in a copy of the environment, filling each agent slot with a proxy that acts with a snapshot
+     * and queues what it receives for the learner.
+     */
+    private class Actor implements Runnable {
+        final RandomStream           stream;
+        final TurnBasedEnvironment   copy;
+        final RingBuffer<Transition> queue;
+
+        volatile Snapshot snapshot;
+        volatile long     steps;
+        volatile long     waits;
+        volatile long     episodes;
+
+        /**
+         * Create the actor on the learner's thread, binding <em>stream</em> to it whilst its copy of the environment
+         * and its first snapshots are made.
+         */
+        Actor(RandomStream stream) {
+            this.stream = stream;
+            this.queue = new RingBuffer<>(queueCapacity, Transition::new);
+
+            RandomStream.bind(stream);
+            this.copy = (TurnBasedEnvironment) register.getEnvironment();
+            this.copy.setConfiguration(cfg);
+            this.copy.initialise();
+            for (int i = 0; i < agents.length; i++) {
+                copy.add(new Proxy(i));
+            }
+            this.snapshot = new Snapshot(learning, clocks, updates);
+        }
+
+        @Override
+        public void run() {
+            RandomStream.bind(stream);
+            try {
+                while (running) {
+                    copy.restart();
+                    episodes++;
+                    for (int turn = 1; running && !copy.isTerminal() && (copy.maxTurns() == 0 || turn <= copy.maxTurns()); turn++) {
+                        copy.performTurn();
+                        steps++;
+                    }
+                }
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        private class Proxy implements Agent {
+            private final int    agent;
+            private       State  actionState;
+            private       int    action;
+            private       long   version;
+            private       double accumulated;
+
+            Proxy(int agent) {
+                this.agent = agent;
+            }
+
+            @Override
+            public void setConfiguration(Configuration cfg) {
+            }
+
+            @Override
+            public void initialise() {
+            }
+
+            @Override
+            public void reset(Environment environment) {
+                accumulated = 0.0d;
+            }
+
+            @Override
+            public void add(Environment environment, State state) {
+                actionState = state.copy();
+            }
+
+            @Override
+            public void remove(Environment environment) {
+            }
+
+            @Override
+            public int act(Environment environment, State state) {
+                Snapshot current = snapshot;
+                actionState.set(state);
+                version = current.version;
+                action = current.policies[agent].select(state, current.times[agent]);
+                return action;
+            }
+
+            @Override
+            public void receive(Environment environment, State arrived, double reward) {
+                accumulated += reward;
+
+                // Wait for room in the queue, unless the learner has finished
+                Transition transition;
+                while ((transition = queue.claim()) == null) {
+                    if (!running) {
+                        return;
+                    }
+                    waits++;
+                    LockSupport.parkNanos(WAIT_NANOS);
+                }
+
+                transition.agent = agent;
+                transition.s = set(transition.s, actionState);
+                transition.a = action;
+                transition.s_ = set(transition.s_, arrived);
+                transition.r = reward;
+                transition.terminal = environment.isTerminal(this, arrived);
+                transition.version = version;
+                queue.publish();
+            }
+
+            @Override
+            public double accumulativeReward(Environment environment) {
+                return accumulated;
+            }
+
+            private State set(State slot, State state) {
+                if (slot == null) {
+                    return state.copy();
+                }
+                slot.set(state);
+                return slot;
+            }
+        }
+    }
+}
@@ -1,51 +1,64 @@
 package org.madesimple.small.experiment.simulation;
 
 import org.madesimple.small.agent.Agent;
+import org.madesimple.small.experiment.Checkpoint;
 import org.madesimple.small.experiment.Simulation;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 /**
+ * <p>
+ * Roll Out plays out episodes, the agents learning from every turn. Checkpoints are taken between episodes, so a run
+ * resumed from one starts a new episode and carries on exactly as it would have done.
+ * </p>
+ *
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
 public class RollOut extends Simulation {
 
     @Override
     public void run() {
-        // Seed the random singleton
-        if (experiment.randomSeed != -1) {
-            ThreadLocalRandom.current().setSeed(experiment.randomSeed);
-        }
+        // Seed the random stream of this run
+        seed();
 
         // Initialise the environment and agents
         environment.initialise();
-        for (Agent agent : agents) {
-            agent.initialise();
-        }
+        initialiseAgents();
 
         // Add the agents to the environment
         for (Agent agent : agents) {
             environment.add(agent);
         }
 
-        // Run the experiment
-        for (int update = 1, episode = 1; update <= experiment.totalUpdates; episode++) {
-            // Restart the environment at the beginning of an episode
-            environment.restart();
+        try {
+            // Carry on from the checkpoint, if there is one
+            Checkpoint checkpoint = restore();
+            int        update     = checkpoint == null ? 1 : checkpoint.update + 1;
+            int        episode    = checkpoint == null ? 1 : checkpoint.episode + 1;
+
+            // Run the experiment
+            for (; update <= experiment.totalUpdates; episode++) {
+                // Checkpoint the run between episodes
+                checkpoint(update - 1, episode - 1);
+
+                // Restart the environment at the beginning of an episode
+                environment.restart();
 
-            // Play out an episode
-            for (int turn = 1; !environment.isTerminal() && (environment.maxTurns() == 0 || turn <= environment.maxTurns()) && update <= experiment.totalUpdates; turn++, update++) {
-                // Perform the next turn
-                environment.performTurn();
+                // Play out an episode
+                for (int turn = 1; !environment.isTerminal() && (environment.maxTurns() == 0 || turn <= environment.maxTurns()) && update <= experiment.totalUpdates; turn++, update++) {
+                    // Perform the next turn
+                    environment.performTurn();
 
-                // Increment the task
-                task.increment();
+                    // Increment the task
+                    task.increment();
 
-                // If evaluation point
-                if (update % experiment.observationFrequency == 0) {
-                    evaluate(run, update, episode);
+                    // If evaluation point
+                    if (update % experiment.observationFrequency == 0) {
+                        evaluate(run, update, episode);
+                    }
                 }
             }
+            conclude(episode - 1);
+        } finally {
+            close();
         }
     }
 }
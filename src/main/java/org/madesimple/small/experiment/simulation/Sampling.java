@@ -1,10 +1,9 @@
 package org.madesimple.small.experiment.simulation;
 
 import org.madesimple.small.agent.Agent;
+import org.madesimple.small.experiment.Checkpoint;
 import org.madesimple.small.experiment.Simulation;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 /**
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
@@ -12,37 +11,44 @@ public class Sampling extends Simulation {
 
     @Override
     public void run() {
-        // Seed the random singleton
-        if (experiment.randomSeed != -1) {
-            ThreadLocalRandom.current().setSeed(experiment.randomSeed);
-        }
+        // Seed the random stream of this run
+        seed();
 
         // Initialise the environment and agents
         environment.initialise();
-        for (Agent agent : agents) {
-            agent.initialise();
-        }
+        initialiseAgents();
 
         // Add the agents to the environment
         for (Agent agent : agents) {
             environment.add(agent);
         }
 
-        // Run the experiment
-        for (int update = 1; update <= experiment.totalUpdates; update++) {
-            // Place the environment in a new random state
-            environment.reseed();
+        try {
+            // Carry on from the checkpoint, if there is one
+            Checkpoint checkpoint = restore();
+
+            // Run the experiment
+            for (int update = checkpoint == null ? 1 : checkpoint.update + 1; update <= experiment.totalUpdates; update++) {
+                // Every turn is an episode of its own, so the run can be checkpointed before any of them
+                checkpoint(update - 1, 0);
+
+                // Place the environment in a new random state
+                environment.reseed();
 
-            // Perform the next turn
-            environment.performTurn();
+                // Perform the next turn
+                environment.performTurn();
 
-            // Increment the task
-            task.increment();
+                // Increment the task
+                task.increment();
 
-            // If evaluation point
-            if (update % experiment.observationFrequency == 0) {
-                evaluate(run, update, 0);
+                // If evaluation point
+                if (update % experiment.observationFrequency == 0) {
+                    evaluate(run, update, 0);
+                }
             }
+            conclude(0);
+        } finally {
+            close();
         }
     }
 }
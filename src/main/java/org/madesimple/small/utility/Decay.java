@@ -7,6 +7,11 @@ package org.madesimple.small.utility;
  * decay function required. Please see the static methods to see which
  * parameters in the class instantiation affect the function.
  * </p>
+ * <p>
+ * An instance compiles its curve into a lookup table over the integer times up to the end of the decay, so
+ * {@link #decay(int)} is a single array read; after the end of the decay the value no longer changes. Curves too long
+ * to tabulate remember the last time they were evaluated at, so repeated lookups within a time step are free.
+ * </p>
  *
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
@@ -140,6 +145,11 @@ public class Decay {
         return Math.exp(-(t / L)) * Math.cos(k * 2 * Math.PI * (t / L));
     }
 
+    /**
+     * Largest number of entries in a compiled lookup table.
+     */
+    private static final int MAX_TABLE_SIZE = 1 << 16;
+
     private Type   type;
     private double L;
     private double k;
@@ -149,6 +159,11 @@ public class Decay {
     private double start;
     private double over;
 
+    private double[] table;
+    private double   tail;
+    private int      lastTime;
+    private double   lastValue;
+
     /**
      * @param type The type of decay function that should be used
      */
@@ -216,6 +231,54 @@ public class Decay {
         this.dif = max - min;
         this.start = start;
         this.over = over;
+        compile();
+    }
+
+    /**
+     * Tabulate the curve over the integer times up to the end of the decay.
+     */
+    private void compile() {
+        double end;
+        switch (type) {
+            case CONSTANT:
+                end = 0;
+                break;
+            case STEP:
+                end = start + L;
+                break;
+            default:
+                end = start + over;
+                break;
+        }
+
+        lastTime = Integer.MIN_VALUE;
+        if (end < 0 || end >= MAX_TABLE_SIZE - 1 || Double.isNaN(end)) {
+            table = null;
+            return;
+        }
+
+        table = new double[(int) Math.floor(end) + 2];
+        for (int t = 0; t < table.length; t++) {
+            table[t] = evaluate(t);
+        }
+        tail = evaluate(table.length);
+    }
+
+    /**
+     * @param t time step
+     * @return Amount at time step t
+     * @see Decay#decay(double)
+     */
+    public double decay(int t) {
+        if (table != null && t >= 0) {
+            return t < table.length ? table[t] : tail;
+        }
+        if (t != lastTime) {
+            lastTime = t;
+            lastValue = evaluate(t);
+        }
+
+        return lastValue;
     }
 
     /**
@@ -232,6 +295,10 @@ public class Decay {
      * @see Decay#dampedsine(double, double, double)
      */
     public double decay(double t) {
+        return evaluate(t);
+    }
+
+    private double evaluate(double t) {
         switch (type) {
             default:
             case CONSTANT:
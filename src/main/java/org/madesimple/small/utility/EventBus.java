@@ -0,0 +1,215 @@
+package org.madesimple.small.utility;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * <p>
+ * An Event Bus passes events of type <em>E</em> from the one thread that publishes them to the listeners subscribed to
+ * it. Publishers test the bus before they make an event, so that nothing is made, and nothing dispatched, when nobody
+ * is listening:
+ * </p>
+ * <pre>
+ * if (events.isActive()) {
+ *     events.publish(new Event(...));
+ * }
+ * if (events.isStepDue()) {
+ *     events.publishStep(new Event(...));
+ * }
+ * </pre>
+ * <p>
+ * Events published with {@link #publish(Object)}, such as the start of an episode, reach every listener. Events that
+ * happen every step are published with {@link #publishStep(Object)}; a listener subscribed with <em>every</em> set to
+ * <em>n</em> receives only every <em>n</em>th of them. Every step must be counted with {@link #isStepDue()}, whose
+ * answer says whether any listener wants it.
+ * </p>
+ * <p>
+ * A listener is called on the publishing thread unless it is subscribed asynchronously, in which case it is given its
+ * events, in order, by a thread of its own. The publisher never waits for an asynchronous listener: if the listener has
+ * fallen {@value #QUEUE_CAPACITY} events behind, further events are dropped and counted until it catches up. Events
+ * handed to asynchronous listeners must therefore not change after they are published.
+ * </p>
+ *
+ * @param <E> Type of event
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class EventBus<E> {
+    /**
+     * Most events an asynchronous listener may fall behind by.
+     */
+    public static final int QUEUE_CAPACITY = 1024;
+
+    /**
+     * Receives the events of a bus.
+     *
+     * @param <E> Type of event
+     */
+    public interface Listener<E> {
+        /**
+         * @param event Event published
+         */
+        void on(E event);
+    }
+
+    /**
+     * A listener's subscription to a bus.
+     *
+     * @param <E> Type of event
+     */
+    public static class Subscription<E> {
+        private final Listener<? super E> listener;
+        private final int                 every;
+        private final BlockingQueue<E>    queue;
+        private final Thread              thread;
+        private volatile long             dropped;
+
+        private Subscription(Listener<? super E> listener, int every, boolean async) {
+            this.listener = listener;
+            this.every = Math.max(1, every);
+            if (async) {
+                this.queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+                this.thread = new Thread(this::drain, "events");
+                this.thread.setDaemon(true);
+                this.thread.start();
+            } else {
+                this.queue = null;
+                this.thread = null;
+            }
+        }
+
+        /**
+         * @return Number of events an asynchronous listener has missed because it had fallen behind
+         */
+        public long dropped() {
+            return dropped;
+        }
+
+        private void deliver(E event) {
+            if (queue == null) {
+                listener.on(event);
+            } else if (!queue.offer(event)) {
+                dropped++;
+            }
+        }
+
+        private void drain() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    listener.on(queue.take());
+                }
+            } catch (InterruptedException e) {
+                // Unsubscribed
+            }
+        }
+
+        private void cancel() {
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private volatile Subscription<E>[] subscriptions = new Subscription[0];
+
+    /**
+     * Number of steps counted while there were listeners; only touched by the publishing thread.
+     */
+    private long steps;
+
+    /**
+     * Subscribe <em>listener</em> to every event, to be called on the publishing thread.
+     *
+     * @param listener Listener
+     * @return The subscription
+     */
+    public Subscription<E> subscribe(Listener<? super E> listener) {
+        return subscribe(listener, 1, false);
+    }
+
+    /**
+     * @param listener Listener
+     * @param every    Give the listener only every <em>every</em>th step
+     * @param async    Call the listener on a thread of its own
+     * @return The subscription
+     */
+    public synchronized Subscription<E> subscribe(Listener<? super E> listener, int every, boolean async) {
+        Subscription<E>   subscription = new Subscription<>(listener, every, async);
+        Subscription<E>[] current      = subscriptions;
+        Subscription<E>[] next         = Arrays.copyOf(current, current.length + 1);
+        next[current.length] = subscription;
+        subscriptions = next;
+        return subscription;
+    }
+
+    /**
+     * Stop giving events to the listener of <em>subscription</em>.
+     *
+     * @param subscription Subscription
+     */
+    public synchronized void unsubscribe(Subscription<E> subscription) {
+        Subscription<E>[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription<E>[] next = Arrays.copyOf(current, current.length - 1);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                subscriptions = next;
+                subscription.cancel();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return True if any listener is subscribed
+     */
+    public boolean isActive() {
+        return subscriptions.length > 0;
+    }
+
+    /**
+     * Count a step.
+     *
+     * @return True if any listener wants the step, which must then be published with {@link #publishStep(Object)}
+     */
+    public boolean isStepDue() {
+        Subscription<E>[] current = subscriptions;
+        if (current.length == 0) {
+            return false;
+        }
+
+        steps++;
+        for (Subscription<E> subscription : current) {
+            if (steps % subscription.every == 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Give <em>event</em> to every listener.
+     *
+     * @param event Event
+     */
+    public void publish(E event) {
+        for (Subscription<E> subscription : subscriptions) {
+            subscription.deliver(event);
+        }
+    }
+
+    /**
+     * Give the step last counted by {@link #isStepDue()} to the listeners that want it.
+     *
+     * @param event Event of the step
+     */
+    public void publishStep(E event) {
+        for (Subscription<E> subscription : subscriptions) {
+            if (steps % subscription.every == 0) {
+                subscription.deliver(event);
+            }
+        }
+    }
+}
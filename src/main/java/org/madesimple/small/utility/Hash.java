@@ -15,6 +15,33 @@ public class Hash {
         return ((x + y) * (x + y + 1) / 2) + y;
     }
 
+    /**
+     * Convert three integers into a single integer representation without allocating; equivalent to
+     * {@link #pair(int...)}.
+     *
+     * @param x integer
+     * @param y integer
+     * @param z integer
+     * @return integer representation
+     */
+    public static int pair(int x, int y, int z) {
+        return pair(pair(x, y), z);
+    }
+
+    /**
+     * Convert four integers into a single integer representation without allocating; equivalent to
+     * {@link #pair(int...)}.
+     *
+     * @param w integer
+     * @param x integer
+     * @param y integer
+     * @param z integer
+     * @return integer representation
+     */
+    public static int pair(int w, int x, int y, int z) {
+        return pair(pair(pair(w, x), y), z);
+    }
+
     /**
      * Convert an array of integers into a single integer representation.
      *
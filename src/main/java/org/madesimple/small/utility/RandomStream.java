@@ -0,0 +1,254 @@
+package org.madesimple.small.utility;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * RandomStream is a fast, seedable and splittable source of random numbers. It is not thread safe: every run of an
+ * experiment binds its own stream to the thread it runs on with {@link #bind(RandomStream)}, and the environments,
+ * strategies and storages created for that run take the stream with {@link #current()} when they are initialised and
+ * keep it, so draws in hot paths are plain method calls on a field.
+ * </p>
+ * <p>
+ * A run seeded with <code>Experiment.RandomSeed</code> receives the stream {@link #forRun(long, int)}, which depends
+ * only on the seed and the run number; concurrent runs are therefore reproducible.
+ * </p>
+ * <p>
+ * The generator is SplitMix64, as used by {@link java.util.SplittableRandom}, and draws exactly the same numbers from
+ * the same seed. Its whole state is two longs, which {@link #getState()} and {@link #setState(long[])} expose so that a
+ * checkpointed run can carry on with the numbers it would have drawn.
+ * </p>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class RandomStream {
+    private static final ThreadLocal<RandomStream> CURRENT = ThreadLocal.withInitial(RandomStream::new);
+
+    private static final long   GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT  = 0x1.0p-53;
+
+    /**
+     * Source of the seeds of unseeded streams.
+     */
+    private static final AtomicLong UNSEEDED = new AtomicLong(mix64(System.currentTimeMillis()) ^
+                                                              mix64(System.nanoTime()));
+
+    private long seed;
+    private long gamma;
+
+    /**
+     * Create an unseeded stream.
+     */
+    public RandomStream() {
+        long s = UNSEEDED.getAndAdd(2 * GOLDEN_GAMMA);
+        this.seed = mix64(s);
+        this.gamma = mixGamma(s + GOLDEN_GAMMA);
+    }
+
+    /**
+     * Create a stream from a seed.
+     *
+     * @param seed seed
+     */
+    public RandomStream(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private RandomStream(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * @return Stream bound to the current thread
+     */
+    public static RandomStream current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Bind <em>stream</em> to the current thread.
+     *
+     * @param stream stream
+     */
+    public static void bind(RandomStream stream) {
+        CURRENT.set(stream);
+    }
+
+    /**
+     * @param seed experiment seed
+     * @param run  run number, starting from 1
+     * @return Stream for the given run of an experiment seeded with <em>seed</em>
+     */
+    public static RandomStream forRun(long seed, int run) {
+        RandomStream root   = new RandomStream(seed);
+        RandomStream stream = root.split();
+        for (int i = 1; i < run; i++) {
+            stream = root.split();
+        }
+
+        return stream;
+    }
+
+    /**
+     * @return A new stream, statistically independent of this one, which advances this stream
+     */
+    public RandomStream split() {
+        return new RandomStream(nextLong(), mixGamma(nextSeed()));
+    }
+
+    /**
+     * @return State of the stream; a stream given it with {@link #setState(long[])} draws the same numbers from then on
+     */
+    public long[] getState() {
+        return new long[]{seed, gamma};
+    }
+
+    /**
+     * Restore a state returned by {@link #getState()}. Everything holding this stream draws from the restored state.
+     *
+     * @param state state
+     */
+    public void setState(long[] state) {
+        this.seed = state[0];
+        this.gamma = state[1];
+    }
+
+    public int nextInt() {
+        return mix32(nextSeed());
+    }
+
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound must be positive");
+        }
+        int r = mix32(nextSeed());
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            return r & m;
+        }
+        for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(nextSeed()) >>> 1) {
+            // Reject draws from the incomplete last block of bound values
+        }
+        return r;
+    }
+
+    public int nextInt(int origin, int bound) {
+        if (origin >= bound) {
+            throw new IllegalArgumentException("bound must be greater than origin");
+        }
+        int r = mix32(nextSeed());
+        int n = bound - origin;
+        int m = n - 1;
+        if ((n & m) == 0) {
+            return (r & m) + origin;
+        }
+        if (n > 0) {
+            for (int u = r >>> 1; u + m - (r = u % n) < 0; u = mix32(nextSeed()) >>> 1) {
+                // Reject draws from the incomplete last block of n values
+            }
+            return r + origin;
+        }
+        while (r < origin || r >= bound) {
+            r = mix32(nextSeed());
+        }
+        return r;
+    }
+
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    public double nextDouble() {
+        return (mix64(nextSeed()) >>> 11) * DOUBLE_UNIT;
+    }
+
+    public double nextDouble(double origin, double bound) {
+        if (!(origin < bound)) {
+            throw new IllegalArgumentException("bound must be greater than origin");
+        }
+        double r = nextDouble() * (bound - origin) + origin;
+        return r < bound ? r : Double.longBitsToDouble(Double.doubleToLongBits(bound) - 1);
+    }
+
+    public boolean nextBoolean() {
+        return mix32(nextSeed()) < 0;
+    }
+
+    /**
+     * Fill <em>buffer</em> with uniform doubles in [0, 1).
+     *
+     * @param buffer buffer
+     */
+    public void fill(double[] buffer) {
+        fill(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Fill <em>buffer[from, to)</em> with uniform doubles in [0, 1).
+     *
+     * @param buffer buffer
+     * @param from   first index, inclusive
+     * @param to     last index, exclusive
+     */
+    public void fill(double[] buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            buffer[i] = nextDouble();
+        }
+    }
+
+    /**
+     * Fill <em>buffer[from, to)</em> with uniform doubles in [origin, bound).
+     *
+     * @param buffer buffer
+     * @param from   first index, inclusive
+     * @param to     last index, exclusive
+     * @param origin least value
+     * @param bound  upper bound, exclusive
+     */
+    public void fill(double[] buffer, int from, int to, double origin, double bound) {
+        for (int i = from; i < to; i++) {
+            buffer[i] = nextDouble(origin, bound);
+        }
+    }
+
+    /**
+     * Fill <em>buffer[from, to)</em> with uniform integers in [0, bound).
+     *
+     * @param buffer buffer
+     * @param from   first index, inclusive
+     * @param to     last index, exclusive
+     * @param bound  upper bound, exclusive
+     */
+    public void fill(int[] buffer, int from, int to, int bound) {
+        for (int i = from; i < to; i++) {
+            buffer[i] = nextInt(bound);
+        }
+    }
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    /**
+     * @return An odd gamma with enough bit transitions to mix well
+     */
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -0,0 +1,148 @@
+package org.madesimple.small.utility;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * A bounded, lock free queue between exactly one producer thread and one consumer thread. The slots are created once,
+ * when the buffer is, and are reused: the producer {@link #claim() claims} the next free slot, fills it in and
+ * {@link #publish() publishes} it; the consumer {@link #peek() peeks} at the oldest published slot, reads it and
+ * {@link #release() releases} it back to the producer. Nothing is allocated once the buffer is created.
+ * </p>
+ * <p>
+ * Each side keeps a cached copy of the other side's position and only reads the shared position when the cache says
+ * the buffer is full (or empty). A side's position and its cache are padded onto a cache line of their own, so in the
+ * common case neither side touches the cache line the other writes.
+ * </p>
+ *
+ * @param <T> Type of the slots
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class RingBuffer<T> {
+    private final Object[] slots;
+    private final int      mask;
+
+    /**
+     * Position of the next slot to be read, and the consumer's copy of the tail; written only by the consumer.
+     */
+    private final Cursor head = new Cursor();
+
+    /**
+     * Position of the next slot to be written, and the producer's copy of the head; written only by the producer.
+     */
+    private final Cursor tail = new Cursor();
+
+    /**
+     * @param capacity Minimum number of slots, rounded up to a power of two
+     * @param factory  Creates the slots
+     */
+    public RingBuffer(int capacity, Supplier<T> factory) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.slots = new Object[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = factory.get();
+        }
+    }
+
+    /**
+     * Called by the producer only.
+     *
+     * @return The next free slot, or null if the buffer is full
+     */
+    @SuppressWarnings("unchecked")
+    public T claim() {
+        long position = tail.position;
+        if (position - tail.cache >= slots.length) {
+            tail.cache = head.position;
+            if (position - tail.cache >= slots.length) {
+                return null;
+            }
+        }
+
+        return (T) slots[(int) position & mask];
+    }
+
+    /**
+     * Make the slot last claimed visible to the consumer. Called by the producer only.
+     */
+    public void publish() {
+        tail.advance();
+    }
+
+    /**
+     * Called by the consumer only.
+     *
+     * @return The oldest published slot, or null if the buffer is empty
+     */
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        long position = head.position;
+        if (position >= head.cache) {
+            head.cache = tail.position;
+            if (position >= head.cache) {
+                return null;
+            }
+        }
+
+        return (T) slots[(int) position & mask];
+    }
+
+    /**
+     * Return the slot last peeked at to the producer. Called by the consumer only.
+     */
+    public void release() {
+        head.advance();
+    }
+
+    /**
+     * @return Number of published slots not yet released; exact only when neither side is active
+     */
+    public int size() {
+        return (int) (tail.position - head.position);
+    }
+
+    /**
+     * @return Number of slots
+     */
+    public int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * Padding before a cursor; the fields of a superclass are laid out before those of its subclasses.
+     */
+    private abstract static class LeftPadding {
+        protected long p01, p02, p03, p04, p05, p06, p07;
+    }
+
+    private abstract static class Position extends LeftPadding {
+        private static final AtomicLongFieldUpdater<Position> POSITION =
+                AtomicLongFieldUpdater.newUpdater(Position.class, "position");
+
+        /**
+         * Position of one side; written only by that side.
+         */
+        protected volatile long position;
+
+        /**
+         * That side's copy of the other side's position, as last read.
+         */
+        protected long cache;
+
+        /**
+         * Move on to the next slot, making the slots before it visible to the other side.
+         */
+        void advance() {
+            POSITION.lazySet(this, position + 1);
+        }
+    }
+
+    /**
+     * A position with its cache, padded after as well as before.
+     */
+    private static final class Cursor extends Position {
+        protected long p11, p12, p13, p14, p15, p16, p17;
+    }
+}
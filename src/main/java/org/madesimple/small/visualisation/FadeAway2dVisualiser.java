@@ -3,6 +3,7 @@ package org.madesimple.small.visualisation;
 import org.madesimple.small.environment.*;
 import org.madesimple.small.utility.Configurable;
 import org.madesimple.small.utility.Configuration;
+import org.madesimple.small.utility.EventBus;
 
 import javax.swing.*;
 import java.awt.*;
@@ -40,8 +41,8 @@ public class FadeAway2dVisualiser extends JLayeredPane implements Visualiser {
     }
 
     @Override
-    public void update(Observable o, Object arg) {
-        fadeAwayPane.update(o, arg);
+    public void on(EnvironmentEvent event) {
+        fadeAwayPane.on(event);
     }
 
     static class GridPane extends JPanel implements Configurable {
@@ -109,7 +110,7 @@ public class FadeAway2dVisualiser extends JLayeredPane implements Visualiser {
         }
     }
 
-    static class FadeAwayPane extends JPanel implements Configurable, Observer {
+    static class FadeAwayPane extends JPanel implements Configurable, EventBus.Listener<EnvironmentEvent> {
 
         private int         total;
         private int[][]     counters;
@@ -138,19 +139,19 @@ public class FadeAway2dVisualiser extends JLayeredPane implements Visualiser {
         }
 
         @Override
-        public synchronized void update(Observable o, Object arg) {
+        public synchronized void on(EnvironmentEvent event) {
 
-            if (o instanceof Environment && arg == null) {
+            if (event.type != EnvironmentEvent.Type.MOVED) {
                 total = 0;
                 counters = new int[yDivisions][xDivisions];
                 queue.clear();
             }
 
-            if (arg instanceof DiscreteState) {
-                add(convert((DiscreteEnvironment) o, (DiscreteState) arg));
+            if (event.source instanceof DiscreteEnvironment && event.state instanceof DiscreteState) {
+                add(convert((DiscreteEnvironment) event.source, (DiscreteState) event.state));
             }
-            if (o instanceof ContinuousEnvironment && arg instanceof ContinuousState) {
-                add(convert((ContinuousEnvironment) o, (ContinuousState) arg));
+            if (event.source instanceof ContinuousEnvironment && event.state instanceof ContinuousState) {
+                add(convert((ContinuousEnvironment) event.source, (ContinuousState) event.state));
             }
         }
 
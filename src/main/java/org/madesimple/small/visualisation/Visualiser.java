@@ -1,12 +1,14 @@
 package org.madesimple.small.visualisation;
 
+import org.madesimple.small.environment.EnvironmentEvent;
 import org.madesimple.small.utility.Configurable;
-
-import java.util.Observer;
+import org.madesimple.small.utility.EventBus;
 
 /**
+ * A Visualiser draws what happens in an environment from the events it {@link EventBus subscribes} to.
+ *
  * @author Peter Scopes (peter.scopes@gmail.com)
  */
-public interface Visualiser extends Configurable, Observer {
+public interface Visualiser extends Configurable, EventBus.Listener<EnvironmentEvent> {
 
 }
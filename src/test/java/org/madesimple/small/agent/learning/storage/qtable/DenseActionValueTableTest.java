@@ -0,0 +1,203 @@
+package org.madesimple.small.agent.learning.storage.qtable;
+
+import org.junit.Test;
+import org.madesimple.small.agent.Agent;
+import org.madesimple.small.environment.DiscreteEnvironment;
+import org.madesimple.small.environment.Environment;
+import org.madesimple.small.environment.State;
+import org.madesimple.small.environment.gridworld2d.GridWorld2dState;
+import org.madesimple.small.utility.Configuration;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class DenseActionValueTableTest {
+    private static final double DELTA = 1e-12;
+
+    @Test
+    public void discreteEnvironmentIsIndexedByMixedRadix() {
+        DenseActionValueTable table = new DenseActionValueTable();
+        table.initialise(new Grid(new int[]{1, 2}, new int[]{4, 6}));
+
+        assertTrue(table.isDense());
+        assertEquals(0, table.key(new GridWorld2dState(1, 2)));
+        assertEquals(1, table.key(new GridWorld2dState(1, 3)));
+        assertEquals(4, table.key(new GridWorld2dState(2, 2)));
+        assertEquals(11, table.key(new GridWorld2dState(3, 5)));
+    }
+
+    @Test
+    public void environmentWithoutBoundsFallsBackToHashing() {
+        DenseActionValueTable table = new DenseActionValueTable();
+        table.initialise(new Unbounded());
+
+        assertFalse(table.isDense());
+        GridWorld2dState state = new GridWorld2dState(3, 5);
+        assertEquals(state.hashCode(), table.key(state));
+    }
+
+    @Test
+    public void stateSpaceTooLargeToIndexFallsBackToHashing() {
+        DenseActionValueTable table = new DenseActionValueTable();
+        table.initialise(new Grid(new int[]{0, 0}, new int[]{1 << 16, 1 << 16}));
+
+        assertFalse(table.isDense());
+    }
+
+    @Test
+    public void useBeforeInitialiseFixesTheTableAsHashed() {
+        DenseActionValueTable table = new DenseActionValueTable();
+        GridWorld2dState      state = new GridWorld2dState(1, 1);
+        table.key(state);
+        table.initialise(new Grid(new int[]{0, 0}, new int[]{4, 4}));
+
+        assertFalse(table.isDense());
+        assertEquals(state.hashCode(), table.key(state));
+    }
+
+    @Test
+    public void resetAllowsTheTableToBeBoundAgain() {
+        DenseActionValueTable table = new DenseActionValueTable();
+        table.initialise(new Unbounded());
+        assertFalse(table.isDense());
+
+        table.reset();
+        table.initialise(new Grid(new int[]{0, 0}, new int[]{4, 4}));
+        assertTrue(table.isDense());
+    }
+
+    @Test
+    public void denseRowsAreLiveAndDistinct() {
+        DenseActionValueTable table = new DenseActionValueTable();
+        table.setInitialValue(0.5d);
+        table.initialise(new Grid(new int[]{0, 0}, new int[]{3, 3}));
+
+        double[] row = table.get(4, 2);
+        assertArrayEquals(new double[]{0.5d, 0.5d}, row, DELTA);
+        assertSame(row, table.get(4, 2));
+        assertNotSame(row, table.get(5, 2));
+
+        row[1] = 2.0d;
+        table.put(5, 0, -1.0d, 2);
+        assertEquals(2.0d, table.value(4, 1), DELTA);
+        assertEquals(-1.0d, table.value(5, 0), DELTA);
+        assertEquals(0.5d, table.value(5, 1), DELTA);
+    }
+
+    @Test
+    public void denseRowsGrowWithTheNumberOfActions() {
+        DenseActionValueTable table = new DenseActionValueTable();
+        table.setInitialValue(0.5d);
+        table.initialise(new Grid(new int[]{0, 0}, new int[]{2, 2}));
+
+        table.put(3, 1, 1.0d, 2);
+        assertEquals(0.5d, table.value(3, 3), DELTA);
+        assertArrayEquals(new double[]{0.5d, 1.0d, 0.5d, 0.5d}, table.get(3, 4), DELTA);
+    }
+
+    @Test
+    public void hashedValuesOfUnseenStatesAreTheInitialValue() {
+        DenseActionValueTable table = new DenseActionValueTable();
+        table.setInitialValue(0.5d);
+        table.initialise(new Unbounded());
+
+        int key = table.key(new GridWorld2dState(3, 5));
+        assertEquals(0.5d, table.value(key, 1), DELTA);
+
+        table.put(key, 1, 2.0d, 4);
+        assertEquals(2.0d, table.value(key, 1), DELTA);
+        assertEquals(0.5d, table.value(key, 0), DELTA);
+    }
+
+    @Test
+    public void copyDoesNotShareRows() {
+        DenseActionValueTable table = new DenseActionValueTable();
+        table.initialise(new Grid(new int[]{0, 0}, new int[]{2, 2}));
+        table.put(1, 0, 1.0d, 2);
+
+        DenseActionValueTable copy = table.copy();
+        table.put(1, 0, 2.0d, 2);
+
+        assertTrue(copy.isDense());
+        assertEquals(1.0d, copy.value(1, 0), DELTA);
+        assertEquals(2.0d, table.value(1, 0), DELTA);
+    }
+
+    /**
+     * An environment with no bounds of its states.
+     */
+    private static class Unbounded implements Environment {
+        @Override
+        public void setConfiguration(Configuration cfg) {
+        }
+
+        @Override
+        public void initialise() {
+        }
+
+        @Override
+        public boolean add(Agent agent) {
+            return false;
+        }
+
+        @Override
+        public boolean remove(Agent agent) {
+            return false;
+        }
+
+        @Override
+        public int agentCount() {
+            return 0;
+        }
+
+        @Override
+        public int requiredAgentCount() {
+            return 1;
+        }
+
+        @Override
+        public boolean isTerminal(Agent agent, State state) {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminal() {
+            return false;
+        }
+    }
+
+    /**
+     * An environment of two features within the given bounds.
+     */
+    private static class Grid extends Unbounded implements DiscreteEnvironment {
+        private final int[] lower;
+        private final int[] upper;
+
+        Grid(int[] lower, int[] upper) {
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        @Override
+        public int countBounds() {
+            return lower.length;
+        }
+
+        @Override
+        public int[] lowerBounds() {
+            return lower;
+        }
+
+        @Override
+        public int[] upperBounds() {
+            return upper;
+        }
+    }
+}
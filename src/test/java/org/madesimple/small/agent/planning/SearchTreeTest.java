@@ -0,0 +1,112 @@
+package org.madesimple.small.agent.planning;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class SearchTreeTest {
+    private static final double DELTA = 1e-12;
+
+    /**
+     * <pre>
+     * 0 -0-> 1 -0-> 3 -1-> 6
+     *          -1-> 5
+     *   -1-> 2 -0-> 4
+     * </pre>
+     */
+    private SearchTree build() {
+        SearchTree tree = new SearchTree(8, 2);
+        int        root = tree.root();
+        int        n1   = tree.expand(root, 0);
+        int        n2   = tree.expand(root, 1);
+        int        n3   = tree.expand(n1, 0);
+        int        n4   = tree.expand(n2, 0);
+        int        n5   = tree.expand(n1, 1);
+        int        n6   = tree.expand(n3, 1);
+        assertEquals(6, n6);
+
+        tree.update(root, 0, 1.0d);
+        tree.update(root, 1, 2.0d);
+        tree.update(n1, 0, 3.0d);
+        tree.update(n1, 0, 4.0d);
+        tree.update(n1, 1, 5.0d);
+        tree.update(n3, 1, 6.0d);
+        tree.update(n4, 0, 7.0d);
+        tree.update(n5, 1, 8.0d);
+        tree.update(n6, 0, 9.0d);
+        return tree;
+    }
+
+    @Test
+    public void rerootKeepsTheSubtreeCompactedToTheFront() {
+        SearchTree tree = build();
+
+        tree.reroot(0);
+
+        assertEquals(4, tree.size());
+        int root = tree.root();
+        assertEquals(0, root);
+        assertEquals(1, tree.child(root, 0));
+        assertEquals(2, tree.child(root, 1));
+        assertEquals(SearchTree.NONE, tree.child(1, 0));
+        assertEquals(3, tree.child(1, 1));
+        assertEquals(SearchTree.NONE, tree.child(2, 0));
+        assertEquals(SearchTree.NONE, tree.child(2, 1));
+        assertEquals(SearchTree.NONE, tree.child(3, 0));
+        assertEquals(SearchTree.NONE, tree.child(3, 1));
+    }
+
+    @Test
+    public void rerootKeepsTheStatisticsOfTheKeptNodes() {
+        SearchTree tree = build();
+
+        tree.reroot(0);
+
+        assertEquals(3, tree.visits(0));
+        assertEquals(2, tree.count(0, 0));
+        assertEquals(7.0d, tree.total(0, 0), DELTA);
+        assertEquals(1, tree.count(0, 1));
+        assertEquals(5.0d, tree.total(0, 1), DELTA);
+        assertEquals(1, tree.visits(1));
+        assertEquals(6.0d, tree.total(1, 1), DELTA);
+        assertEquals(1, tree.visits(2));
+        assertEquals(8.0d, tree.total(2, 1), DELTA);
+        assertEquals(1, tree.visits(3));
+        assertEquals(9.0d, tree.total(3, 0), DELTA);
+    }
+
+    @Test
+    public void rerootFreesTheDiscardedNodes() {
+        SearchTree tree = build();
+        tree.expand(6, 0);
+        assertEquals(SearchTree.NONE, tree.expand(6, 1));
+
+        tree.reroot(1);
+
+        assertEquals(2, tree.size());
+        assertEquals(1, tree.child(tree.root(), 0));
+        assertEquals(7.0d, tree.total(1, 0), DELTA);
+        assertEquals(2, tree.expand(1, 1));
+        assertEquals(0, tree.visits(2));
+        assertEquals(SearchTree.NONE, tree.child(2, 0));
+    }
+
+    @Test
+    public void rerootToAnUnexpandedActionClearsTheTree() {
+        SearchTree tree = new SearchTree(4, 3);
+        tree.expand(tree.root(), 0);
+        tree.update(tree.root(), 0, 1.0d);
+
+        tree.reroot(2);
+
+        assertEquals(1, tree.size());
+        assertEquals(0, tree.visits(tree.root()));
+        for (int a = 0; a < tree.countActions(); a++) {
+            assertEquals(SearchTree.NONE, tree.child(tree.root(), a));
+            assertEquals(0, tree.count(tree.root(), a));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.madesimple.small.agent.strategy;
+
+import org.madesimple.small.utility.Decay;
+import org.madesimple.small.utility.RandomStream;
+
+/**
+ * <p>
+ * Boltzmann Benchmark times {@link Boltzmann#select(double[], int)} against the selection it replaced, which looked
+ * the temperature up and took the exponential of every value twice per selection, on the same seeded rows of action
+ * values. The sums of the selected actions are printed alongside so that runs can be compared.
+ * </p>
+ * <pre>
+ * java -cp target/classes:target/test-classes org.madesimple.small.agent.strategy.BoltzmannBenchmark \
+ *     [actions...]
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class BoltzmannBenchmark {
+    private static final double TAU     = 0.4;
+    private static final double OVER    = 300;
+    private static final double MINIMUM = 0.05;
+
+    /**
+     * Time a million selections from rows of each number of actions given.
+     *
+     * @param args Numbers of actions, 4, 8 and 32 if none are given
+     */
+    public static void main(String[] args) {
+        String[] sizes      = args.length > 0 ? args : new String[]{"4", "8", "32"};
+        int      selections = 1_000_000;
+        int      nRows      = 1024;
+
+        System.out.printf("Actions\tOld ns\tNew ns\tOld sum\tNew sum\n");
+        for (String size : sizes) {
+            int        nActions = Integer.parseInt(size);
+            double[][] rows     = new double[nRows][nActions];
+            RandomStream values = new RandomStream(1);
+            for (double[] row : rows) {
+                values.fill(row, 0, nActions, -1.0d, 1.0d);
+            }
+
+            for (int round = 0; round < 3; round++) {
+                RandomStream.bind(new RandomStream(2));
+                Boltzmann boltzmann = new Boltzmann(TAU, true, Decay.Type.LINEAR, OVER, MINIMUM, 0);
+                Legacy    legacy    = new Legacy(new RandomStream(2));
+
+                long start  = System.nanoTime();
+                long oldSum = 0;
+                for (int i = 0; i < selections; i++) {
+                    oldSum += legacy.select(rows[i & (nRows - 1)], i & 255);
+                }
+                double oldNs = (double) (System.nanoTime() - start) / selections;
+
+                start = System.nanoTime();
+                long newSum = 0;
+                for (int i = 0; i < selections; i++) {
+                    newSum += boltzmann.select(rows[i & (nRows - 1)], i & 255);
+                }
+                double newNs = (double) (System.nanoTime() - start) / selections;
+
+                System.out.printf("%d\t%.1f\t%.1f\t%d\t%d\n", nActions, oldNs, newNs, oldSum, newSum);
+            }
+        }
+    }
+
+    /**
+     * The selection as it was before it was made single-pass, drawing from a seeded stream rather than the thread's.
+     */
+    private static class Legacy {
+        private final RandomStream random;
+        private final Decay        tau;
+
+        Legacy(RandomStream random) {
+            this.random = random;
+            this.tau = new Decay(Decay.Type.LINEAR, OVER, 1.0d, MINIMUM, TAU, 0, OVER);
+        }
+
+        int select(double[] actionValuePairs, int time) {
+            double random     = this.random.nextDouble();
+            double lowerBound;
+            double upperBound = 0.0;
+            double sumExp     = sumExponent(actionValuePairs, time);
+
+            for (int i = 0; i < actionValuePairs.length; i++) {
+                lowerBound = upperBound;
+                upperBound += getExponent(actionValuePairs[i], time) / sumExp;
+                if (random >= lowerBound && random < upperBound) {
+                    return i;
+                }
+            }
+
+            return 0;
+        }
+
+        private double sumExponent(double[] actionValuePairs, int time) {
+            double sum = 0.0;
+            for (double value : actionValuePairs) {
+                sum += getExponent(value, time);
+            }
+
+            return sum;
+        }
+
+        private double getExponent(double value, int time) {
+            if (value == 0.0) {
+                return Math.exp(0.0);
+            } else {
+                return Math.exp(value / tau.decay(time));
+            }
+        }
+    }
+}
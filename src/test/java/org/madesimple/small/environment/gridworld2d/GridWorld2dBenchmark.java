@@ -0,0 +1,120 @@
+package org.madesimple.small.environment.gridworld2d;
+
+import org.madesimple.small.agent.Agent;
+import org.madesimple.small.environment.Environment;
+import org.madesimple.small.environment.State;
+import org.madesimple.small.utility.Configuration;
+import org.madesimple.small.utility.RandomStream;
+
+import java.nio.file.Paths;
+
+/**
+ * <p>
+ * Grid World 2d Benchmark times the turns of a {@link GridWorld2dEnvironment} and the single moves simulated on it.
+ * </p>
+ * <pre>
+ * java -cp target/classes:target/test-classes org.madesimple.small.environment.gridworld2d.GridWorld2dBenchmark \
+ *     [layout file] [turns]
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class GridWorld2dBenchmark {
+
+    /**
+     * Time the turns of agents walking at random about a layout file, and single moves simulated on it, and report the
+     * time taken by each along with the time taken to compile the layout.
+     *
+     * @param args Layout file, <code>layoutMazeMultiAgent.map</code> if none is given, and number of turns, a million
+     *             if none is given
+     */
+    public static void main(String[] args) {
+        String path  = args.length > 0 ? args[0] : "src/main/resources/environment/gridworld2d/layoutMazeMultiAgent.map";
+        int    turns = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        Configuration cfg = new Configuration();
+        cfg.setProperty("Environment.GridWorld2d.LayoutFilePath", path);
+        cfg.setProperty("Environment.GridWorld2d.AvailableActions", "cardinal");
+        cfg.setProperty("Environment.GridWorld2d.MaxTurns", "0");
+        cfg.setProperty("Environment.GridWorld2d.NumAgents", "0");
+
+        RandomStream.bind(new RandomStream(1));
+        GridWorld2dEnvironment environment = new GridWorld2dEnvironment();
+        environment.setConfiguration(cfg);
+        environment.initialise();
+        int nAgents = environment.availableTuples.size();
+        for (int i = 0; i < nAgents; i++) {
+            environment.add(new Walker());
+        }
+
+        System.out.printf("Layout\tAgents\tLoad ms\tns/turn\tns/move\n");
+        for (int round = 0; round < 3; round++) {
+            // Play turns, restarting whenever every agent has arrived
+            environment.restart();
+            long start = System.nanoTime();
+            for (int i = 0; i < turns; i++) {
+                environment.performTurn();
+                if (environment.isTerminal()) {
+                    environment.restart();
+                }
+            }
+            double perTurn = (double) (System.nanoTime() - start) / turns;
+
+            // Simulate single moves from the first start
+            RandomStream     random = RandomStream.current();
+            GridWorld2dState state  = environment.layout.starts.get(0).copy();
+            start = System.nanoTime();
+            for (int i = 0; i < turns; i++) {
+                environment.simulate(state, random.nextInt(4), state, random);
+                if (environment.isTerminal(state)) {
+                    state.set(environment.layout.starts.get(0));
+                }
+            }
+            double perMove = (double) (System.nanoTime() - start) / turns;
+
+            System.out.printf("%s\t%d\t%d\t%.1f\t%.1f\n", Paths.get(path).getFileName(), nAgents,
+                              environment.layout.getLoadMillis(), perTurn, perMove);
+        }
+    }
+
+    /**
+     * Agent that walks at random, for {@link #main(String[])}.
+     */
+    private static class Walker implements Agent {
+        private final RandomStream random = RandomStream.current();
+
+        @Override
+        public void setConfiguration(Configuration cfg) {
+        }
+
+        @Override
+        public void initialise() {
+        }
+
+        @Override
+        public void reset(Environment environment) {
+        }
+
+        @Override
+        public void add(Environment environment, State state) {
+        }
+
+        @Override
+        public void remove(Environment environment) {
+        }
+
+        @Override
+        public int act(Environment environment, State state) {
+            return random.nextInt(state.availableActions());
+        }
+
+        @Override
+        public void receive(Environment environment, State arrived, double reward) {
+        }
+
+        @Override
+        public double accumulativeReward(Environment environment) {
+            return 0.0d;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.madesimple.small.environment.gridworld2d;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class GridWorld2dFileReaderTest {
+    private static final byte W = GridWorld2dLayout.MAP_WALL;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GridWorld2dFileReader read(String contents) throws IOException {
+        Path path = folder.newFile("layout.map").toPath();
+        Files.write(path, contents.getBytes(StandardCharsets.UTF_8));
+
+        GridWorld2dFileReader reader = new GridWorld2dFileReader();
+        reader.parse(path);
+        return reader;
+    }
+
+    @Test
+    public void wallsAreDecodedFromTheirThreeBytes() throws IOException {
+        GridWorld2dFileReader reader = read("[1,1]\n>‡‡‡\n>‡S‡\n>‡#‡\n");
+
+        byte[][] layout = reader.getLayout();
+        assertEquals(3, reader.getLayoutWidth());
+        assertEquals(3, reader.getLayoutHeight());
+        assertArrayEquals(new byte[]{W, '#', W}, layout[0]);
+        assertArrayEquals(new byte[]{W, 'S', W}, layout[1]);
+        assertArrayEquals(new byte[]{W, W, W}, layout[2]);
+    }
+
+    @Test
+    public void shortSegmentsArePaddedWithSpaces() throws IOException {
+        GridWorld2dFileReader reader = read("[2,1]\n>‡.\n>\n>x‡\n");
+
+        byte[][] layout = reader.getLayout();
+        assertArrayEquals(new byte[]{'x', W, ' ', ' ', ' '}, layout[0]);
+        assertArrayEquals(new byte[]{W, '.', ' ', ' ', ' '}, layout[2]);
+    }
+
+    @Test
+    public void symbolsBeyondTheWidthAreIgnored() throws IOException {
+        GridWorld2dFileReader reader = read("[1,1]\n>‡‡‡‡‡\n>...\n>###..\n");
+
+        byte[][] layout = reader.getLayout();
+        assertArrayEquals(new byte[]{'#', '#', '#'}, layout[0]);
+        assertArrayEquals(new byte[]{W, W, W}, layout[2]);
+    }
+
+    @Test
+    public void carriageReturnsAndCommentsAreSkipped() throws IOException {
+        GridWorld2dFileReader reader = read("; Wall (‡)\r\n[1,1]\r\n>‡.‡\r\n\r\n>.S.\r\n>‡.‡\r\nx a0.25\r\n");
+
+        byte[][] layout = reader.getLayout();
+        assertArrayEquals(new byte[]{W, '.', W}, layout[0]);
+        assertArrayEquals(new byte[]{'.', 'S', '.'}, layout[1]);
+        assertArrayEquals(new byte[]{W, '.', W}, layout[2]);
+
+        assertEquals(1, reader.getProbabilities().size());
+        Map<Character, Double> gate = reader.getProbabilities().get(0);
+        assertEquals(0.25d, gate.get('a'), 0.0d);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void otherThreeByteSymbolsAreRejected() throws IOException {
+        read("[1,1]\n>‡€‡\n>...\n>...\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fourByteSymbolsAreRejected() throws IOException {
+        read("[1,1]\n>😀..\n>...\n>...\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void segmentsMustFollowTheSize() throws IOException {
+        read(">...\n[1,1]\n");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void segmentsMustFitTheHeight() throws IOException {
+        read("[1,1]\n>...\n>...\n>...\n>...\n");
+    }
+}
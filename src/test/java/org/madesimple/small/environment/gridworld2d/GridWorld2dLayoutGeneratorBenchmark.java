@@ -0,0 +1,70 @@
+package org.madesimple.small.environment.gridworld2d;
+
+import org.madesimple.small.utility.Configuration;
+import org.madesimple.small.utility.RandomStream;
+
+/**
+ * <p>
+ * Grid World 2d Layout Generator Benchmark generates every kind of layout at each of the sizes given on the command
+ * line and reports, for each, the time taken to generate it, the memory it takes and how many moves a second can be
+ * simulated on it.
+ * </p>
+ * <pre>
+ * java -cp target/classes:target/test-classes \
+ *     org.madesimple.small.environment.gridworld2d.GridWorld2dLayoutGeneratorBenchmark [size...]
+ * </pre>
+ *
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class GridWorld2dLayoutGeneratorBenchmark {
+
+    /**
+     * Generate every kind of layout at each size given, in cells along a side, and report on it.
+     *
+     * @param args Sizes, 100 and 1000 if none are given
+     */
+    public static void main(String[] args) {
+        String[]     sizes  = args.length > 0 ? args : new String[]{"100", "1000"};
+        RandomStream random = new RandomStream(1);
+        Runtime      rt     = Runtime.getRuntime();
+
+        System.out.printf("Kind\tSize\tms\tMB\tMoves/s\n");
+        for (String size : sizes) {
+            for (GridWorld2dLayoutGenerator.Kind kind : GridWorld2dLayoutGenerator.Kind.values()) {
+                Configuration cfg = new Configuration();
+                cfg.setProperty("Environment.GridWorld2d.Generator", kind.name());
+                cfg.setProperty("Environment.GridWorld2d.Generator.Width", size);
+                cfg.setProperty("Environment.GridWorld2d.Generator.Height", size);
+                cfg.setProperty("Environment.GridWorld2d.AvailableActions", "cardinal");
+                cfg.setProperty("Environment.GridWorld2d.MaxTurns", "0");
+                cfg.setProperty("Environment.GridWorld2d.NumAgents", "1");
+
+                // Generate the layout
+                GridWorld2dLayoutGenerator.forget();
+                System.gc();
+                long memory = rt.totalMemory() - rt.freeMemory();
+                long start  = System.nanoTime();
+                GridWorld2dLayout layout = GridWorld2dLayoutGenerator.generate(cfg);
+                long ms = (System.nanoTime() - start) / 1_000_000;
+                System.gc();
+                memory = rt.totalMemory() - rt.freeMemory() - memory;
+
+                // Walk about it at random
+                GridWorld2dEnvironment environment = new GridWorld2dEnvironment();
+                environment.setConfiguration(cfg);
+                GridWorld2dState state = layout.starts.get(0).copy();
+                int              moves = 1_000_000;
+                start = System.nanoTime();
+                for (int i = 0; i < moves; i++) {
+                    environment.simulate(state, random.nextInt(4), state, random);
+                    if (environment.isTerminal(state)) {
+                        state.set(layout.starts.get(0));
+                    }
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                System.out.printf("%s\t%s\t%d\t%d\t%.0f\n", kind, size, ms, Math.max(0, memory) >> 20, moves / seconds);
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.madesimple.small.experiment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.madesimple.small.agent.Agent;
+import org.madesimple.small.agent.learning.DiscreteLearningAgent;
+import org.madesimple.small.agent.learning.LearningAlgorithm;
+import org.madesimple.small.environment.gridworld2d.GridWorld2dState;
+import org.madesimple.small.utility.Configuration;
+import org.madesimple.small.utility.RandomStream;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class CheckpointTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Configuration cfg;
+    private File          directory;
+    private RandomStream  previous;
+
+    @Before
+    public void setUp() throws IOException {
+        cfg = new Configuration();
+        try (InputStream in = new FileInputStream(Paths.get("src/main/resources/experiment", "default.properties")
+                                                       .toFile())) {
+            cfg.load(in);
+        }
+        cfg.setProperty("Agent.LearningAlgorithm", "org.madesimple.small.agent.learning.algorithm.Q");
+        directory = folder.newFolder("checkpoints");
+        previous = RandomStream.current();
+    }
+
+    @After
+    public void tearDown() {
+        RandomStream.bind(previous);
+    }
+
+    private DiscreteLearningAgent newAgent() {
+        DiscreteLearningAgent agent = new DiscreteLearningAgent();
+        agent.setConfiguration(cfg);
+        agent.initialise();
+        return agent;
+    }
+
+    private static void train(DiscreteLearningAgent agent, int x) {
+        LearningAlgorithm learning = agent.getLearningAlgorithm();
+        for (int i = 0; i < 10; i++) {
+            learning.update(new GridWorld2dState(x, i), i % 4, new GridWorld2dState(x, i + 1), -1.0d);
+        }
+    }
+
+    private File policy(DiscreteLearningAgent agent, String name) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        assertTrue(agent.getLearningAlgorithm().savePolicy(file));
+        return file;
+    }
+
+    private static void assertSameContents(File expected, File actual) throws IOException {
+        assertArrayEquals(Files.readAllBytes(expected.toPath()), Files.readAllBytes(actual.toPath()));
+    }
+
+    @Test
+    public void readWithoutACheckpointIsNull() {
+        assertNull(Checkpoint.read(directory, 1));
+    }
+
+    @Test
+    public void writtenCheckpointIsReadBack() {
+        RandomStream.bind(new RandomStream(7));
+        RandomStream.current().nextLong();
+        RandomStream[]        streams = {RandomStream.current().split(), RandomStream.current().split()};
+        DiscreteLearningAgent agent   = newAgent();
+        train(agent, 1);
+        agent.getClock().set(120, 4, 20);
+        Progress.Task task = new Progress.Task(1000, 250);
+
+        Checkpoint captured = Checkpoint.capture(directory, 3, 500, 4, task, new Agent[]{agent}, streams);
+        captured.write(directory);
+        Checkpoint read = Checkpoint.read(directory, 3);
+
+        assertEquals(3, read.run);
+        assertEquals(500, read.update);
+        assertEquals(4, read.episode);
+        assertEquals(250, read.progress);
+        assertArrayEquals(captured.random, read.random);
+        assertEquals(2, read.streams.length);
+        assertArrayEquals(streams[0].getState(), read.streams[0]);
+        assertArrayEquals(streams[1].getState(), read.streams[1]);
+        assertArrayEquals(new int[]{120, 4, 20}, read.clocks[0]);
+        assertEquals("run-3-500-agent-0.policy", read.policies[0]);
+        assertTrue(new File(directory, read.policies[0]).isFile());
+    }
+
+    @Test
+    public void restoreCarriesOnAsIfTheRunHadNotStopped() throws IOException {
+        RandomStream.bind(new RandomStream(7));
+        RandomStream[]        streams = {RandomStream.current().split()};
+        DiscreteLearningAgent agent   = newAgent();
+        train(agent, 1);
+        agent.getClock().set(120, 4, 20);
+        Checkpoint.capture(directory, 1, 500, 4, new Progress.Task(1000, 250), new Agent[]{agent}, streams)
+                  .write(directory);
+        File   expected = policy(agent, "expected.policy");
+        long   next     = RandomStream.current().nextLong();
+        double stream   = streams[0].nextDouble();
+
+        // A new run, with different streams and a newly initialised agent
+        RandomStream.bind(new RandomStream(8));
+        RandomStream[]        restoredStreams = {RandomStream.current().split()};
+        DiscreteLearningAgent restored        = newAgent();
+        Progress.Task         task            = new Progress.Task(1000);
+
+        Checkpoint.read(directory, 1).restore(directory, task, new Agent[]{restored}, restoredStreams);
+
+        assertEquals(250, task.amount());
+        assertEquals(next, RandomStream.current().nextLong());
+        assertEquals(stream, restoredStreams[0].nextDouble(), 0.0d);
+        assertEquals(120, restored.getClock().steps());
+        assertEquals(4, restored.getClock().episodes());
+        assertEquals(20, restored.getClock().episodeSteps());
+        assertSameContents(expected, policy(restored, "restored.policy"));
+    }
+
+    @Test
+    public void laterCheckpointReplacesTheEarlierOne() {
+        RandomStream.bind(new RandomStream(7));
+        DiscreteLearningAgent agent  = newAgent();
+        Agent[]               agents = {agent};
+        train(agent, 1);
+        Checkpoint.capture(directory, 1, 500, 4, new Progress.Task(1000), agents, new RandomStream[0])
+                  .write(directory);
+        train(agent, 2);
+        Checkpoint.capture(directory, 1, 1000, 8, new Progress.Task(1000), agents, new RandomStream[0])
+                  .write(directory);
+
+        assertEquals(1000, Checkpoint.read(directory, 1).update);
+        assertFalse(new File(directory, "run-1-500-agent-0.policy").exists());
+        assertTrue(new File(directory, "run-1-1000-agent-0.policy").exists());
+        assertFalse(new File(directory, "run-1.checkpoint.tmp").exists());
+    }
+
+    @Test
+    public void writerWritesOnItsOwnThread() {
+        RandomStream.bind(new RandomStream(7));
+        DiscreteLearningAgent agent  = newAgent();
+        Checkpoint.Writer     writer = new Checkpoint.Writer(directory, 2);
+        train(agent, 1);
+
+        assertTrue(writer.isIdle());
+        writer.write(Checkpoint.capture(directory, 2, 100, 1, new Progress.Task(1000), new Agent[]{agent},
+                                        new RandomStream[0]));
+        writer.close();
+
+        assertEquals(100, Checkpoint.read(directory, 2).update);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void restoreRefusesADifferentNumberOfStreams() {
+        RandomStream.bind(new RandomStream(7));
+        Agent[] agents = {newAgent()};
+        Checkpoint.capture(directory, 1, 500, 4, new Progress.Task(1000), agents,
+                           new RandomStream[]{RandomStream.current().split()}).write(directory);
+
+        Checkpoint.read(directory, 1).restore(directory, new Progress.Task(1000), agents, new RandomStream[0]);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void restoreRefusesADifferentNumberOfAgents() {
+        RandomStream.bind(new RandomStream(7));
+        Checkpoint.capture(directory, 1, 500, 4, new Progress.Task(1000), new Agent[]{newAgent()},
+                           new RandomStream[0]).write(directory);
+
+        Checkpoint.read(directory, 1).restore(directory, new Progress.Task(1000),
+                                              new Agent[]{newAgent(), newAgent()}, new RandomStream[0]);
+    }
+}
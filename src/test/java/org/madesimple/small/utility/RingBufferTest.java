@@ -0,0 +1,107 @@
+package org.madesimple.small.utility;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Peter Scopes (peter.scopes@gmail.com)
+ */
+public class RingBufferTest {
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(2, new RingBuffer<>(1, () -> new int[1]).capacity());
+        assertEquals(4, new RingBuffer<>(4, () -> new int[1]).capacity());
+        assertEquals(8, new RingBuffer<>(5, () -> new int[1]).capacity());
+    }
+
+    @Test
+    public void emptyBufferHasNothingToPeek() {
+        RingBuffer<int[]> buffer = new RingBuffer<>(4, () -> new int[1]);
+
+        assertNull(buffer.peek());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void fullBufferHasNothingToClaim() {
+        RingBuffer<int[]> buffer = new RingBuffer<>(4, () -> new int[1]);
+        for (int i = 0; i < buffer.capacity(); i++) {
+            assertNotNull(buffer.claim());
+            buffer.publish();
+        }
+
+        assertNull(buffer.claim());
+        assertEquals(4, buffer.size());
+
+        buffer.peek();
+        buffer.release();
+        assertNotNull(buffer.claim());
+    }
+
+    @Test
+    public void slotsAreReusedInOrderAcrossWraparound() {
+        RingBuffer<int[]> buffer = new RingBuffer<>(4, () -> new int[1]);
+        int[][]           slots  = new int[buffer.capacity()][];
+        int               next   = 0;
+        int               read   = 0;
+
+        // Three in, three out, so that the positions wrap past the end of the slots at a different place each round
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 3; i++) {
+                int[] slot = buffer.claim();
+                assertNotNull(slot);
+                if (slots[next & 3] == null) {
+                    slots[next & 3] = slot;
+                }
+                assertSame(slots[next & 3], slot);
+
+                slot[0] = next++;
+                buffer.publish();
+            }
+            assertEquals(3, buffer.size());
+
+            for (int i = 0; i < 3; i++) {
+                int[] slot = buffer.peek();
+                assertNotNull(slot);
+                assertEquals(read++, slot[0]);
+                buffer.release();
+            }
+            assertNull(buffer.peek());
+        }
+    }
+
+    @Test
+    public void consumerSeesEveryValueInOrder() throws InterruptedException {
+        final RingBuffer<long[]> buffer = new RingBuffer<>(8, () -> new long[1]);
+        final long               count  = 200_000;
+
+        Thread producer = new Thread(() -> {
+            for (long i = 0; i < count; i++) {
+                long[] slot;
+                while ((slot = buffer.claim()) == null) {
+                    Thread.yield();
+                }
+                slot[0] = i;
+                buffer.publish();
+            }
+        });
+        producer.start();
+
+        for (long i = 0; i < count; i++) {
+            long[] slot;
+            while ((slot = buffer.peek()) == null) {
+                Thread.yield();
+            }
+            assertEquals(i, slot[0]);
+            buffer.release();
+        }
+
+        producer.join();
+        assertEquals(0, buffer.size());
+    }
+}